@@ -0,0 +1,31 @@
+package nl.trifork.healthcheck.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Runs the benchmarks and reports the throughput, which is the mode of all benchmarks, together with the
+ * allocation rate as measured by the gc profiler. The results are also written to <em>benchmark-results.json</em>,
+ * keep that file to compare the results of one release with the next.</p>
+ * <p>All command line options of JMH are supported, for instance to only run the servlet benchmarks:</p>
+ * <pre>
+ * java -jar benchmarks/target/benchmarks.jar PingRequestBenchmark -rff servlet-results.json
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        Options options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(commandLineOptions.getResultFormat().orElse(ResultFormatType.JSON))
+                .result(commandLineOptions.getResult().orElse("benchmark-results.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,60 @@
+package nl.trifork.healthcheck.benchmarks;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpSession;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GET request with fixed parameters and headers and without a session. The request can be reused for every
+ * invocation of a benchmark.
+ */
+public class StubHttpServletRequest extends HttpServletRequestWrapper {
+    private final Map<String, String> parameters = new HashMap<String, String>();
+    private final Map<String, String> headers = new HashMap<String, String>();
+
+    public StubHttpServletRequest() {
+        super(Stubs.defaultValues(HttpServletRequest.class));
+    }
+
+    public StubHttpServletRequest setParameter(String name, String value) {
+        parameters.put(name, value);
+        return this;
+    }
+
+    public StubHttpServletRequest setHeader(String name, String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    @Override
+    public String getMethod() {
+        return "GET";
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public String getParameter(String name) {
+        return parameters.get(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        return -1;
+    }
+
+    @Override
+    public HttpSession getSession(boolean create) {
+        return null;
+    }
+}
@@ -0,0 +1,86 @@
+package nl.trifork.healthcheck.benchmarks;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * Response that discards the headers and the body. Only the status and the number of written bytes are kept, the
+ * benchmarks return them to prevent the JIT from removing the work.
+ */
+public class StubHttpServletResponse extends HttpServletResponseWrapper {
+    private int status;
+    private long bytesWritten;
+
+    private final ServletOutputStream outputStream = new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+            bytesWritten++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            bytesWritten += len;
+        }
+    };
+
+    private final PrintWriter writer = new PrintWriter(new Writer() {
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            bytesWritten += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    });
+
+    public StubHttpServletResponse() {
+        super(Stubs.defaultValues(HttpServletResponse.class));
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+    }
+
+    @Override
+    public void setContentType(String type) {
+    }
+
+    @Override
+    public void setContentLength(int len) {
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        return writer;
+    }
+}
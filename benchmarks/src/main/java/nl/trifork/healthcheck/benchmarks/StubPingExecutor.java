@@ -0,0 +1,46 @@
+package nl.trifork.healthcheck.benchmarks;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.PingExecutorAdapter;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ping executor without a backend, it creates a new result for every execution. Thorough results contain the
+ * configured number of extra values. When errorEvery is larger than 0, every so many executions return an error.
+ */
+public class StubPingExecutor extends PingExecutorAdapter {
+    private final Map<String, String> thoroughExtraValues;
+    private final int errorEvery;
+    private int numberOfExecutions;
+
+    public StubPingExecutor(int numberOfExtraValues, int errorEvery) {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for (int i = 0; i < numberOfExtraValues; i++) {
+            values.put("value_" + i, "Value number " + i + " of the \"stub\" executor");
+        }
+        this.thoroughExtraValues = Collections.unmodifiableMap(values);
+        this.errorEvery = errorEvery;
+    }
+
+    @Override
+    public String getName() {
+        return "Stub ping executor";
+    }
+
+    @Override
+    public PingResult execute(PingLevel pingLevel) {
+        if (errorEvery > 0 && ++numberOfExecutions % errorEvery == 0) {
+            return new PingResult(getName(), SystemStatus.ERROR, "FAILURE - The stub is down.");
+        }
+        if (pingLevel == PingLevel.THOROUGH) {
+            return new ThoroughPingResult(getName(), SystemStatus.OK, "OK - The stub is fine.", thoroughExtraValues);
+        }
+        return new PingResult(getName(), SystemStatus.OK, "OK - The stub is fine.");
+    }
+}
@@ -0,0 +1,41 @@
+package nl.trifork.healthcheck.benchmarks;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * ServletConfig with the provided init parameters and a servlet context without any parameters or attributes.
+ */
+public class StubServletConfig implements ServletConfig {
+    private final Map<String, String> initParameters = new HashMap<String, String>();
+    private final ServletContext servletContext = Stubs.defaultValues(ServletContext.class);
+
+    public StubServletConfig setInitParameter(String name, String value) {
+        initParameters.put(name, value);
+        return this;
+    }
+
+    @Override
+    public String getServletName() {
+        return "benchmark";
+    }
+
+    @Override
+    public ServletContext getServletContext() {
+        return servletContext;
+    }
+
+    @Override
+    public String getInitParameter(String name) {
+        return initParameters.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getInitParameterNames() {
+        return Collections.enumeration(initParameters.keySet());
+    }
+}
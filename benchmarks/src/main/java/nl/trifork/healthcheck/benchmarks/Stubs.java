@@ -0,0 +1,33 @@
+package nl.trifork.healthcheck.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Creates implementations of the large servlet interfaces that return the default value for every method. The stub
+ * request and response classes wrap them and only implement the methods that are used by the ping servlets.
+ */
+final class Stubs {
+    private static final InvocationHandler DEFAULT_VALUES = new InvocationHandler() {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return Boolean.FALSE;
+            } else if (returnType == int.class) {
+                return 0;
+            } else if (returnType == long.class) {
+                return 0L;
+            }
+            return null;
+        }
+    };
+
+    private Stubs() {
+    }
+
+    static <T> T defaultValues(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class<?>[]{type}, DEFAULT_VALUES));
+    }
+}
@@ -0,0 +1,79 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.benchmarks.StubPingExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link HistoricalPingExecutorWrapper#execute(PingLevel)} for different window sizes, with only successful
+ * results and with an error for every tenth execution. The window is filled before the measurement starts. The
+ * shared variant lets 8 threads execute pings through the same wrapper.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HistoricalPingExecutorBenchmark {
+    @Param({"10", "100", "1000"})
+    int numberOfItemsToKeep;
+
+    @Param({"0", "10"})
+    int errorEvery;
+
+    HistoricalPingExecutorWrapper wrapper;
+
+    @Setup
+    public void setUp() {
+        wrapper = createWrapper(numberOfItemsToKeep, errorEvery);
+    }
+
+    /**
+     * Wrapper that is shared by all benchmark threads. The stub executor of this wrapper never fails, it keeps a
+     * counter that is not thread safe.
+     */
+    @State(Scope.Benchmark)
+    public static class SharedWrapper {
+        HistoricalPingExecutorWrapper wrapper;
+
+        @Setup
+        public void setUp(HistoricalPingExecutorBenchmark benchmark) {
+            wrapper = createWrapper(benchmark.numberOfItemsToKeep, 0);
+        }
+    }
+
+    @Benchmark
+    public PingResult execute() {
+        return wrapper.execute(PingLevel.BASIC);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public PingResult executeShared_8(SharedWrapper sharedWrapper) {
+        return sharedWrapper.wrapper.execute(PingLevel.BASIC);
+    }
+
+    private static HistoricalPingExecutorWrapper createWrapper(int numberOfItemsToKeep, int errorEvery) {
+        HistoricalPingExecutorWrapper wrapper =
+                new HistoricalPingExecutorWrapper(new StubPingExecutor(0, errorEvery), numberOfItemsToKeep);
+        for (int i = 0; i < numberOfItemsToKeep; i++) {
+            wrapper.execute(PingLevel.BASIC);
+        }
+        return wrapper;
+    }
+}
@@ -0,0 +1,120 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.benchmarks.StubHttpServletRequest;
+import nl.trifork.healthcheck.benchmarks.StubHttpServletResponse;
+import nl.trifork.healthcheck.benchmarks.StubPingExecutor;
+import nl.trifork.healthcheck.benchmarks.StubServletConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the request path of the {@link BasePingServlet} with 1, 8 and 64 threads that share one servlet. The
+ * ping executor does not do any work, so the benchmark shows the cost of the servlet itself: obtaining the level,
+ * the result and writing the response.</p>
+ * <p>With a maxAge of 0 every request executes a ping, concurrent requests share the running ping. With a maxAge of
+ * 1000 almost all requests are served from the cache.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PingRequestBenchmark {
+    @Param({"basic", "thorough"})
+    String level;
+
+    @Param({"html", "json"})
+    String type;
+
+    @Param({"0", "1000"})
+    long maxAge;
+
+    BasePingServlet servlet;
+
+    @Setup
+    public void setUp() throws ServletException {
+        servlet = new BasePingServlet() {
+            @Override
+            protected PingExecutor obtainExecutor(ServletConfig servletConfig) {
+                return new StubPingExecutor(20, 0);
+            }
+        };
+        servlet.init(new StubServletConfig().setInitParameter(BasePingServlet.PARAM_MAXAGE, Long.toString(maxAge)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        servlet.destroy();
+    }
+
+    /**
+     * Request and response of one benchmark thread, they are reused for all invocations.
+     */
+    @State(Scope.Thread)
+    public static class Exchange {
+        StubHttpServletRequest request;
+        StubHttpServletResponse response;
+
+        @Setup
+        public void setUp(PingRequestBenchmark benchmark) {
+            request = new StubHttpServletRequest()
+                    .setParameter(BasePingServlet.PARAM_PINGLEVEL, benchmark.level)
+                    .setParameter("type", benchmark.type);
+            response = new StubHttpServletResponse();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public int service_1(Exchange exchange) throws ServletException, IOException {
+        return service(exchange);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int service_8(Exchange exchange) throws ServletException, IOException {
+        return service(exchange);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public int service_64(Exchange exchange) throws ServletException, IOException {
+        return service(exchange);
+    }
+
+    @Benchmark
+    public PingLevel obtainPingLevel() {
+        return servlet.obtainPingLevel(level, PingLevel.BASIC);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public PingResult obtainPingResult_8() {
+        return servlet.obtainPingResult(PingLevel.BASIC);
+    }
+
+    private int service(Exchange exchange) throws ServletException, IOException {
+        servlet.service(exchange.request, exchange.response);
+        return exchange.response.getStatus();
+    }
+}
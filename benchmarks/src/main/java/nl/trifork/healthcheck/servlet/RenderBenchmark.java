@@ -0,0 +1,89 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.benchmarks.StubPingExecutor;
+import nl.trifork.healthcheck.benchmarks.StubServletConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering a thorough result with a growing number of extra values as json and html, and rendering both
+ * representations including the entity tags as is done for every new result that is returned by the servlet.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderBenchmark {
+    @Param({"0", "10", "100"})
+    int numberOfExtraValues;
+
+    PingExecutor pingExecutor;
+    PingResult pingResult;
+    BasePingServlet servlet;
+    ByteArrayOutputStream bytes;
+    PrintWriter writer;
+
+    @Setup
+    public void setUp() throws ServletException, IOException {
+        pingExecutor = new StubPingExecutor(numberOfExtraValues, 0);
+        pingResult = pingExecutor.execute(PingLevel.THOROUGH);
+        servlet = new BasePingServlet() {
+            @Override
+            protected PingExecutor obtainExecutor(ServletConfig servletConfig) {
+                return pingExecutor;
+            }
+        };
+        servlet.init(new StubServletConfig());
+        bytes = new ByteArrayOutputStream(4096);
+        writer = new PrintWriter(new OutputStreamWriter(bytes, "UTF-8"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        servlet.destroy();
+    }
+
+    @Benchmark
+    public int renderJson() throws IOException {
+        bytes.reset();
+        servlet.renderJson(writer, pingResult);
+        writer.flush();
+        return bytes.size();
+    }
+
+    @Benchmark
+    public int renderHtml() {
+        bytes.reset();
+        servlet.renderHtml(writer, pingResult);
+        writer.flush();
+        return bytes.size();
+    }
+
+    @Benchmark
+    public RenderedPingResult renderNewResult() throws IOException {
+        return servlet.obtainRenderedPingResult(PingLevel.THOROUGH, pingExecutor.execute(PingLevel.THOROUGH));
+    }
+}
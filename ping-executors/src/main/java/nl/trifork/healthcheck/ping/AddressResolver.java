@@ -0,0 +1,85 @@
+package nl.trifork.healthcheck.ping;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Keeps the resolved addresses of the hosts that a ping executor connects to. A host name is looked up again when
+ * its address is older than the refresh interval, so the pings in between do not wait for a DNS lookup and a changed
+ * address is still picked up. A host that could not be resolved is not kept, the next ping looks it up again.</p>
+ * <p>The resolver can be used by multiple threads. A lookup blocks the calling thread, with a refresh interval of 0
+ * every call looks up the host.</p>
+ */
+public class AddressResolver {
+    public static final long DEFAULT_REFRESH_INTERVAL = 60000;
+
+    private final long refreshIntervalNanos;
+    private final Map<String, ResolvedAddress> addresses = new HashMap<String, ResolvedAddress>();
+
+    /**
+     * Creates a resolver that looks up a host again after {@value #DEFAULT_REFRESH_INTERVAL} milliseconds.
+     */
+    public AddressResolver() {
+        this(DEFAULT_REFRESH_INTERVAL);
+    }
+
+    /**
+     * @param refreshIntervalMillis number of milliseconds a resolved address is used before the host is looked up
+     *                              again
+     */
+    public AddressResolver(long refreshIntervalMillis) {
+        this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshIntervalMillis);
+    }
+
+    /**
+     * Returns the address of the host and port, the host is only looked up if it is not known or its address is older
+     * than the refresh interval.
+     *
+     * @param host name or ip address of the host
+     * @param port port to connect to
+     * @return the resolved address, or an unresolved address if the host is unknown
+     */
+    public synchronized InetSocketAddress resolve(String host, int port) {
+        String key = host + ":" + port;
+        long now = currentTimeNanos();
+        ResolvedAddress resolved = addresses.get(key);
+        if (resolved != null && now - resolved.resolvedAtNanos < refreshIntervalNanos) {
+            return resolved.address;
+        }
+        InetSocketAddress address = lookup(host, port);
+        if (address.isUnresolved()) {
+            addresses.remove(key);
+        } else {
+            addresses.put(key, new ResolvedAddress(address, now));
+        }
+        return address;
+    }
+
+    /**
+     * Looks up the host, can be overridden in tests.
+     */
+    protected InetSocketAddress lookup(String host, int port) {
+        return new InetSocketAddress(host, port);
+    }
+
+    /**
+     * Returns the value of the monotonic clock, can be overridden in tests.
+     *
+     * @return current value of the clock in nanoseconds
+     */
+    protected long currentTimeNanos() {
+        return System.nanoTime();
+    }
+
+    private static class ResolvedAddress {
+        private final InetSocketAddress address;
+        private final long resolvedAtNanos;
+
+        private ResolvedAddress(InetSocketAddress address, long resolvedAtNanos) {
+            this.address = address;
+            this.resolvedAtNanos = resolvedAtNanos;
+        }
+    }
+}
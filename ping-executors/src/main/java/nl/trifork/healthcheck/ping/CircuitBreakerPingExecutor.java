@@ -0,0 +1,290 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>This wrapper for {@link PingExecutor}s stops calling a backend that keeps failing. It works like a circuit
+ * breaker with three states:</p>
+ * <ul>
+ * <li><strong>CLOSED</strong>: every ping is passed to the delegate. After the configured number of consecutive
+ * failures the circuit opens.</li>
+ * <li><strong>OPEN</strong>: pings are answered immediately with the status of the last failure, the delegate is not
+ * called. After the open duration the next ping becomes a probe.</li>
+ * <li><strong>HALF_OPEN</strong>: one probe is passed to the delegate, all other pings are still answered
+ * immediately. A successful probe closes the circuit, a failing probe opens it again for the open duration. A probe
+ * that does not return within the probe timeout counts as a failure, its outcome is ignored when it returns later.</li>
+ * </ul>
+ * <p>A result with status {@link SystemStatus#ERROR}, {@link SystemStatus#TIMEOUT_ERROR} or
+ * {@link SystemStatus#AUTHENTICATION_ERROR} is a failure, just like a missing result or an exception or error thrown
+ * by the delegate. The number of
+ * transitions, the time spent open and the number of pings that were answered without the delegate are available
+ * through the getters and are added to the result of the THOROUGH level.</p>
+ */
+public class CircuitBreakerPingExecutor extends PingExecutorAdapter implements PingExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreakerPingExecutor.class);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // Values returned by startProbe when the delegate must not be called, or must be called as a normal ping
+    private static final long NOT_ALLOWED = -1;
+    private static final long NO_PROBE = 0;
+
+    private final PingExecutor delegate;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final long probeTimeoutNanos;
+
+    // Transitions are done while holding the lock of this object, reading the state is not
+    private volatile State state = State.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAtNanos;
+    private long lastTransitionMillis;
+    private PingResult lastFailure;
+    private long probeId = NO_PROBE;
+    private long probeStartedAtNanos;
+
+    private final AtomicLong openCount = new AtomicLong();
+    private final AtomicLong halfOpenCount = new AtomicLong();
+    private final AtomicLong closeCount = new AtomicLong();
+    private final AtomicLong shortCircuitCount = new AtomicLong();
+    private final AtomicLong totalOpenNanos = new AtomicLong();
+
+    /**
+     * Creates the circuit breaker, a probe may take as long as the open duration.
+     *
+     * @param delegate           PingExecutor to protect
+     * @param failureThreshold   number of consecutive failures that opens the circuit
+     * @param openDurationMillis number of milliseconds the circuit stays open before a probe is sent
+     */
+    public CircuitBreakerPingExecutor(PingExecutor delegate, int failureThreshold, long openDurationMillis) {
+        this(delegate, failureThreshold, openDurationMillis, openDurationMillis);
+    }
+
+    /**
+     * Creates the circuit breaker.
+     *
+     * @param delegate            PingExecutor to protect
+     * @param failureThreshold    number of consecutive failures that opens the circuit
+     * @param openDurationMillis  number of milliseconds the circuit stays open before a probe is sent
+     * @param probeTimeoutMillis  number of milliseconds after which a probe that did not return opens the circuit again
+     */
+    public CircuitBreakerPingExecutor(PingExecutor delegate, int failureThreshold, long openDurationMillis,
+                                      long probeTimeoutMillis) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("The failure threshold must be at least 1");
+        }
+        this.delegate = delegate;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.probeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(probeTimeoutMillis);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public PingResult execute(PingLevel pingLevel) {
+        PingResult result;
+        long probe = state == State.CLOSED ? NO_PROBE : startProbe();
+        if (probe != NOT_ALLOWED) {
+            result = executeDelegate(pingLevel, probe);
+        } else {
+            shortCircuitCount.incrementAndGet();
+            result = shortCircuitResult();
+        }
+        if (pingLevel == PingLevel.THOROUGH) {
+            result = addCircuitValues(result);
+        }
+        return result;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getOpenCount() {
+        return openCount.get();
+    }
+
+    public long getHalfOpenCount() {
+        return halfOpenCount.get();
+    }
+
+    public long getCloseCount() {
+        return closeCount.get();
+    }
+
+    /**
+     * @return the number of pings that were answered without calling the delegate
+     */
+    public long getShortCircuitCount() {
+        return shortCircuitCount.get();
+    }
+
+    /**
+     * @return the number of milliseconds the circuit was open or half open, including the current period
+     */
+    public synchronized long getTotalOpenMillis() {
+        long total = totalOpenNanos.get();
+        if (state != State.CLOSED) {
+            total += currentTimeNanos() - openedAtNanos;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    /**
+     * @return the moment of the last transition in milliseconds since the epoch, 0 if the state never changed
+     */
+    public synchronized long getLastTransitionMillis() {
+        return lastTransitionMillis;
+    }
+
+    private PingResult executeDelegate(PingLevel pingLevel, long probe) {
+        PingResult result;
+        try {
+            result = delegate.execute(pingLevel);
+        } catch (RuntimeException e) {
+            recordOutcome(failureOf(e), probe);
+            throw e;
+        } catch (Error e) {
+            recordOutcome(failureOf(e), probe);
+            throw e;
+        }
+        recordOutcome(result, probe);
+        return result;
+    }
+
+    /**
+     * Moves an open circuit to half open when the open duration has passed. Only one thread can start the probe. A
+     * probe that did not return within the probe timeout opens the circuit again.
+     *
+     * @return the id of the probe to execute, NO_PROBE if the circuit is closed or NOT_ALLOWED if the delegate must
+     * not be called
+     */
+    private synchronized long startProbe() {
+        long now = currentTimeNanos();
+        if (state == State.HALF_OPEN && now - probeStartedAtNanos >= probeTimeoutNanos) {
+            lastFailure = new PingResult(getName(), SystemStatus.TIMEOUT_ERROR,
+                    "FAILURE - The probe did not return within "
+                            + TimeUnit.NANOSECONDS.toMillis(probeTimeoutNanos) + " ms.");
+            transitionTo(State.OPEN);
+        }
+        if (state == State.CLOSED) {
+            return NO_PROBE;
+        }
+        if (state == State.OPEN && now - openedAtNanos >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+            probeId++;
+            probeStartedAtNanos = now;
+            return probeId;
+        }
+        return NOT_ALLOWED;
+    }
+
+    private synchronized void recordOutcome(PingResult result, long probe) {
+        if (probe != NO_PROBE && (state != State.HALF_OPEN || probe != probeId)) {
+            logger.debug("Ignoring the outcome of a probe of {} that returned after its timeout", getName());
+            return;
+        }
+        if (result == null || isFailure(result)) {
+            lastFailure = result != null ? result
+                    : new PingResult(getName(), SystemStatus.ERROR, "FAILURE - The check did not return a result.");
+            consecutiveFailures++;
+            if (probe != NO_PROBE || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                transitionTo(State.OPEN);
+            }
+        } else {
+            consecutiveFailures = 0;
+            if (probe != NO_PROBE) {
+                transitionTo(State.CLOSED);
+            }
+        }
+    }
+
+    private PingResult failureOf(Throwable cause) {
+        return new PingResult(getName(), SystemStatus.ERROR,
+                "FAILURE - " + cause.getClass().getName() + ": " + cause.getMessage());
+    }
+
+    private void transitionTo(State newState) {
+        logger.info("Circuit of {} changes from {} to {}", new Object[]{getName(), state, newState});
+        long now = currentTimeNanos();
+        switch (newState) {
+            case OPEN:
+                if (state == State.CLOSED) {
+                    openedAtNanos = now;
+                } else {
+                    // A failing probe starts a new open period, the time open so far is kept
+                    totalOpenNanos.addAndGet(now - openedAtNanos);
+                    openedAtNanos = now;
+                }
+                openCount.incrementAndGet();
+                break;
+            case HALF_OPEN:
+                halfOpenCount.incrementAndGet();
+                break;
+            case CLOSED:
+                totalOpenNanos.addAndGet(now - openedAtNanos);
+                consecutiveFailures = 0;
+                closeCount.incrementAndGet();
+                break;
+        }
+        state = newState;
+        lastTransitionMillis = currentTimeMillis();
+    }
+
+    private synchronized PingResult shortCircuitResult() {
+        SystemStatus status = lastFailure != null ? lastFailure.getSystemStatus() : SystemStatus.ERROR;
+        String lastMessage = lastFailure != null ? lastFailure.getMessage() : "";
+        return new PingResult(getName(), status, "FAILURE - The backend is not called after " + failureThreshold
+                + " failed pings, the last failure was: " + lastMessage);
+    }
+
+    private PingResult addCircuitValues(PingResult result) {
+        Map<String, String> extraValues = new LinkedHashMap<String, String>();
+        extraValues.put("circuit.state", state.name());
+        extraValues.put("circuit.opened", String.valueOf(getOpenCount()));
+        extraValues.put("circuit.closed", String.valueOf(getCloseCount()));
+        extraValues.put("circuit.short_circuited", String.valueOf(getShortCircuitCount()));
+        extraValues.put("circuit.open_ms", String.valueOf(getTotalOpenMillis()));
+        return addThoroughExtraValues(result, extraValues);
+    }
+
+    private static boolean isFailure(PingResult result) {
+        SystemStatus status = result.getSystemStatus();
+        return status == SystemStatus.ERROR || status == SystemStatus.TIMEOUT_ERROR
+                || status == SystemStatus.AUTHENTICATION_ERROR;
+    }
+
+    /**
+     * Returns the value of the monotonic clock, can be overridden in tests.
+     *
+     * @return current value of the clock in nanoseconds
+     */
+    protected long currentTimeNanos() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Returns the current time, can be overridden in tests.
+     *
+     * @return current time in milliseconds since the epoch
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,172 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>{@link PingExecutor} that executes a number of child executors in parallel and combines their results into one
+ * {@link ThoroughPingResult}. The result contains the status, message and latency of every child. At the THOROUGH
+ * level the extra values of the children are added as well, prefixed with the name of the child.</p>
+ * <p>Every child is executed through its own {@link TimeoutPingExecutorWrapper}, which gives the child its own timeout
+ * and threads. A child that does not answer in time gets the status {@link SystemStatus#TIMEOUT_ERROR}. A child that
+ * hangs keeps its thread until it returns, therefore the number of executions per child that can be running at the
+ * same time is limited. When that limit is reached, the child is not called and reported as TIMEOUT_ERROR.</p>
+ * <p>The status of the composite is determined by the {@link AggregationPolicy}. Use the
+ * {@link CompositePingExecutorBuilder} to create the executor and call {@link #shutdown()} when it is not used anymore.</p>
+ */
+public class CompositePingExecutor extends PingExecutorAdapter implements PingExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(CompositePingExecutor.class);
+
+    /**
+     * The ways the statuses of the children can be combined into the status of the composite.
+     */
+    public enum AggregationPolicy {
+        /**
+         * The most severe status of all children is the status of the composite.
+         */
+        WORST_OF,
+        /**
+         * The most severe status of the critical children is the status of the composite. An optional child that
+         * reports a problem results in at most a WARNING.
+         */
+        CRITICAL_VS_OPTIONAL
+    }
+
+    private final String name;
+    private final AggregationPolicy aggregationPolicy;
+    private final List<Child> children;
+
+    CompositePingExecutor(String name, AggregationPolicy aggregationPolicy, List<Child> children) {
+        this.name = name;
+        this.aggregationPolicy = aggregationPolicy;
+        this.children = children;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ThoroughPingResult execute(PingLevel pingLevel) {
+        // Start all children before waiting for the first one, so they are executed in parallel
+        List<TimeoutPingExecutorWrapper.PendingPing> pendingPings =
+                new ArrayList<TimeoutPingExecutorWrapper.PendingPing>(children.size());
+        for (Child child : children) {
+            pendingPings.add(child.wrapper.start(pingLevel));
+        }
+
+        Map<String, String> extraValues = new LinkedHashMap<String, String>();
+        List<String> problems = new ArrayList<String>();
+        SystemStatus status = SystemStatus.OK;
+        for (int i = 0; i < children.size(); i++) {
+            Child child = children.get(i);
+            TimeoutPingExecutorWrapper.PendingPing pendingPing = pendingPings.get(i);
+            PingResult childResult = obtainChildResult(child, pendingPing);
+
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(pendingPing.getLatencyNanos());
+            extraValues.put(child.key + ".status", childResult.getSystemStatus().name());
+            extraValues.put(child.key + ".message", childResult.getMessage());
+            extraValues.put(child.key + ".latency_ms", String.valueOf(latencyMillis));
+            extraValues.put(child.key + ".critical", String.valueOf(child.critical));
+            if (pingLevel == PingLevel.THOROUGH && childResult instanceof ThoroughPingResult) {
+                Map<String, String> childValues = ((ThoroughPingResult) childResult).getThoroughExtraValues();
+                if (childValues != null) {
+                    for (Map.Entry<String, String> childValue : childValues.entrySet()) {
+                        extraValues.put(child.key + "." + childValue.getKey(), childValue.getValue());
+                    }
+                }
+            }
+
+            if (childResult.getSystemStatus() != SystemStatus.OK) {
+                problems.add(child.key + " (" + childResult.getSystemStatus().name() + ")");
+            }
+            status = aggregate(status, childResult.getSystemStatus(), child.critical);
+        }
+
+        String message;
+        if (problems.isEmpty()) {
+            message = "OK - All " + children.size() + " checks are fine.";
+        } else {
+            message = problems.size() + " of " + children.size() + " checks report a problem: " + join(problems);
+        }
+        return new ThoroughPingResult(getName(), status, message, extraValues);
+    }
+
+    /**
+     * Stops the threads of this executor. Running executions of the children are interrupted.
+     */
+    public void shutdown() {
+        for (Child child : children) {
+            child.wrapper.shutdown();
+        }
+    }
+
+    /**
+     * Combines the status found so far with the status of a child, according to the aggregation policy.
+     */
+    SystemStatus aggregate(SystemStatus current, SystemStatus childStatus, boolean critical) {
+        SystemStatus contribution = childStatus;
+        if (aggregationPolicy == AggregationPolicy.CRITICAL_VS_OPTIONAL && !critical && childStatus != SystemStatus.OK) {
+            contribution = SystemStatus.WARNING;
+        }
+        return ProblemReport.mostSevere(current, contribution);
+    }
+
+    private PingResult obtainChildResult(Child child, TimeoutPingExecutorWrapper.PendingPing pendingPing) {
+        try {
+            PingResult result = child.wrapper.await(pendingPing);
+            if (result == null) {
+                return new PingResult(child.key, SystemStatus.ERROR, "FAILURE - The check did not return a result.");
+            }
+            return result;
+        } catch (RuntimeException e) {
+            return failedChildResult(child, e);
+        } catch (Error e) {
+            return failedChildResult(child, e);
+        }
+    }
+
+    private static PingResult failedChildResult(Child child, Throwable cause) {
+        logger.error("Problem while executing child " + child.key, cause);
+        return new PingResult(child.key, SystemStatus.ERROR,
+                "FAILURE - " + cause.getClass().getName() + ": " + cause.getMessage());
+    }
+
+    private static String join(List<String> items) {
+        StringBuilder sb = new StringBuilder();
+        for (String item : items) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(item);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Configuration of one child executor, the executor is wrapped to limit the time it can take.
+     */
+    static class Child {
+        private final TimeoutPingExecutorWrapper wrapper;
+        private final String key;
+        private final boolean critical;
+
+        Child(PingExecutor executor, String key, boolean critical, long timeoutMillis, int maxPendingExecutions) {
+            this.wrapper = new TimeoutPingExecutorWrapper(executor, timeoutMillis, maxPendingExecutions);
+            this.key = key;
+            this.critical = critical;
+        }
+    }
+}
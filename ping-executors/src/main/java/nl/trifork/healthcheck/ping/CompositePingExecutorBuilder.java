@@ -0,0 +1,110 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>Special builder class to create a {@link CompositePingExecutor}. Start the creation by calling the create method
+ * with the name of the composite. Add the children with the add methods, override the defaults with the setters and
+ * call build to actually construct the object.</p>
+ * <p>The timeout and the maximum number of pending executions are used for the children that are added after setting
+ * them, unless the child is added with its own timeout.</p>
+ * <p>The threads of the children are created by build, every composite that is built has its own threads.</p>
+ */
+public class CompositePingExecutorBuilder {
+    private final String name;
+    private CompositePingExecutor.AggregationPolicy aggregationPolicy = CompositePingExecutor.AggregationPolicy.WORST_OF;
+    private long timeoutMillis = 5000;
+    private int maxPendingExecutions = 2;
+    private final List<ChildSettings> children = new ArrayList<ChildSettings>();
+    private final Set<String> keys = new HashSet<String>();
+
+    private CompositePingExecutorBuilder(String name) {
+        this.name = name;
+    }
+
+    public static CompositePingExecutorBuilder create(String name) {
+        return new CompositePingExecutorBuilder(name);
+    }
+
+    public CompositePingExecutor build() {
+        List<CompositePingExecutor.Child> builtChildren = new ArrayList<CompositePingExecutor.Child>(children.size());
+        for (ChildSettings child : children) {
+            builtChildren.add(new CompositePingExecutor.Child(child.pingExecutor, child.key, child.critical,
+                    child.timeoutMillis, child.maxPendingExecutions));
+        }
+        return new CompositePingExecutor(name, aggregationPolicy, builtChildren);
+    }
+
+    public CompositePingExecutorBuilder addCritical(PingExecutor pingExecutor) {
+        return addCritical(pingExecutor, timeoutMillis);
+    }
+
+    public CompositePingExecutorBuilder addCritical(PingExecutor pingExecutor, long timeoutMillis) {
+        return addChild(pingExecutor, true, timeoutMillis);
+    }
+
+    public CompositePingExecutorBuilder addOptional(PingExecutor pingExecutor) {
+        return addOptional(pingExecutor, timeoutMillis);
+    }
+
+    public CompositePingExecutorBuilder addOptional(PingExecutor pingExecutor, long timeoutMillis) {
+        return addChild(pingExecutor, false, timeoutMillis);
+    }
+
+    public CompositePingExecutorBuilder setAggregationPolicy(CompositePingExecutor.AggregationPolicy aggregationPolicy) {
+        this.aggregationPolicy = aggregationPolicy;
+        return this;
+    }
+
+    public CompositePingExecutorBuilder setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    public CompositePingExecutorBuilder setMaxPendingExecutions(int maxPendingExecutions) {
+        if (maxPendingExecutions < 1) {
+            throw new IllegalArgumentException("The maximum number of pending executions must be at least 1");
+        }
+        this.maxPendingExecutions = maxPendingExecutions;
+        return this;
+    }
+
+    /**
+     * Adds the child using its name as the key in the result. Children with the same name get a sequence number.
+     */
+    private CompositePingExecutorBuilder addChild(PingExecutor pingExecutor, boolean critical, long timeoutMillis) {
+        String key = pingExecutor.getName();
+        int sequence = 2;
+        while (keys.contains(key)) {
+            key = pingExecutor.getName() + " " + sequence++;
+        }
+        keys.add(key);
+        children.add(new ChildSettings(pingExecutor, key, critical, timeoutMillis, maxPendingExecutions));
+        return this;
+    }
+
+    /**
+     * Settings of a child that was added, the child itself is created when the composite is built.
+     */
+    private static class ChildSettings {
+        private final PingExecutor pingExecutor;
+        private final String key;
+        private final boolean critical;
+        private final long timeoutMillis;
+        private final int maxPendingExecutions;
+
+        ChildSettings(PingExecutor pingExecutor, String key, boolean critical, long timeoutMillis,
+                      int maxPendingExecutions) {
+            this.pingExecutor = pingExecutor;
+            this.key = key;
+            this.critical = critical;
+            this.timeoutMillis = timeoutMillis;
+            this.maxPendingExecutions = maxPendingExecutions;
+        }
+    }
+}
@@ -4,24 +4,63 @@ import nl.trifork.healthcheck.api.PingExecutor;
 import nl.trifork.healthcheck.api.PingLevel;
 import nl.trifork.healthcheck.api.PingResult;
 import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.ping.history.PingHistoryRecord;
+import nl.trifork.healthcheck.ping.history.PingHistoryStore;
 
-import java.util.*;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * This wrapper for {@link PingExecutor}s keeps track of the previous results of the ping executors.
+ * <p>This wrapper for {@link PingExecutor}s keeps track of the previous results of the ping executors.</p>
+ * <p>The results are kept in a ring buffer with a fixed number of slots. Next to the buffer the wrapper keeps a
+ * counter per {@link SystemStatus}, the counters are updated when a result replaces an older one. Determining the
+ * error percentage therefore does not depend on the number of results to keep. The wrapper can be used by multiple
+ * threads at the same time, reading the history never blocks threads that execute a ping.</p>
+ * <p>Optionally the results are also appended to a {@link PingHistoryStore}. The history is restored from the store
+ * when the wrapper is created, so it survives a restart of the application. The store does not keep the messages,
+ * restored results get the message {@value #RESTORED_MESSAGE}.</p>
  *
  * @author Jettro Coenradie
  */
 public class HistoricalPingExecutorWrapper extends PingExecutorAdapter implements PingExecutor {
+    private static final int MAX_SNAPSHOT_ATTEMPTS = 10;
+    static final String RESTORED_MESSAGE = "Result from before the restart, the message is not available.";
+
     private PingExecutor delegate;
     private int numberOfItemsToKeep;
-    private Deque<PingResult> items;
+    private final AtomicReferenceArray<Item> items;
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicIntegerArray statusCounts = new AtomicIntegerArray(SystemStatus.values().length);
+    private final AtomicReference<Item> lastProblem = new AtomicReference<Item>();
+    private final PingHistoryStore historyStore;
 
     public HistoricalPingExecutorWrapper(PingExecutor delegate, int numberOfItemsToKeep) {
+        this(delegate, numberOfItemsToKeep, null);
+    }
+
+    /**
+     * Creates the wrapper and restores the last results from the store.
+     *
+     * @param delegate            PingExecutor to keep the history of
+     * @param numberOfItemsToKeep number of results to keep
+     * @param historyStore        PingHistoryStore to append the results to, can be null
+     */
+    public HistoricalPingExecutorWrapper(PingExecutor delegate, int numberOfItemsToKeep, PingHistoryStore historyStore) {
+        if (numberOfItemsToKeep < 1) {
+            throw new IllegalArgumentException("The number of items to keep must be at least 1");
+        }
         this.delegate = delegate;
         this.numberOfItemsToKeep = numberOfItemsToKeep;
-        items = new LinkedList<PingResult>();
+        this.historyStore = historyStore;
+        items = new AtomicReferenceArray<Item>(numberOfItemsToKeep);
+        if (historyStore != null) {
+            for (PingHistoryRecord record : historyStore.load(numberOfItemsToKeep)) {
+                PingResult restored = new PingResult(delegate.getName(), record.getSystemStatus(), RESTORED_MESSAGE);
+                store(new Item(sequence.getAndIncrement(), record.getTimestamp(), restored));
+            }
+        }
     }
 
     @Override
@@ -29,38 +68,142 @@ public class HistoricalPingExecutorWrapper extends PingExecutorAdapter implement
         return delegate.getName();
     }
 
+    /**
+     * Returns the results in the history, the most recent result first.
+     *
+     * @return PingResult array with at most the number of items to keep
+     */
     public PingResult[] getItems() {
-        return items.toArray(new PingResult[items.size()]);
+        Item[] history = getHistory();
+        PingResult[] results = new PingResult[history.length];
+        for (int i = 0; i < history.length; i++) {
+            results[i] = history[i].getPingResult();
+        }
+        return results;
+    }
+
+    /**
+     * Returns the items in the history, the most recent item first. The copy is taken without locking, if a ping
+     * finishes while copying, the copy is taken again. That way the copy contains consecutive results.
+     *
+     * @return Item array with at most the number of items to keep
+     */
+    public Item[] getHistory() {
+        for (int attempt = 1; ; attempt++) {
+            long next = sequence.get();
+            int size = (int) Math.min(next, numberOfItemsToKeep);
+            Item[] history = new Item[size];
+            int found = 0;
+            for (long itemSequence = next - 1; itemSequence >= next - size; itemSequence--) {
+                Item item = items.get(slot(itemSequence));
+                if (item != null && item.sequence == itemSequence) {
+                    history[found++] = item;
+                }
+            }
+            if (found == size) {
+                return history;
+            }
+            if (attempt == MAX_SNAPSHOT_ATTEMPTS) {
+                // Give up on consecutive results when pings keep finishing, return what we found
+                Item[] partial = new Item[found];
+                System.arraycopy(history, 0, partial, 0, found);
+                return partial;
+            }
+        }
     }
 
     @Override
     public PingResult execute(PingLevel pingLevel) {
+        long startNanos = System.nanoTime();
         PingResult result = delegate.execute(pingLevel);
-
-        while (items.size() >= numberOfItemsToKeep) {
-            items.pollLast();
+        long timestamp = System.currentTimeMillis();
+        store(new Item(sequence.getAndIncrement(), timestamp, result));
+        if (historyStore != null) {
+            int messageHash = result.getMessage() == null ? 0 : result.getMessage().hashCode();
+            historyStore.append(new PingHistoryRecord(timestamp, pingLevel, result.getSystemStatus(),
+                    System.nanoTime() - startNanos, messageHash));
         }
-        items.addFirst(result);
 
         if (result.getSystemStatus() == SystemStatus.ERROR) {
             return result;
         }
 
         int numErrors = 0;
-        String lastErrorMessage = "";
-        for (PingResult pingResult : items) {
-            if (pingResult.getSystemStatus() != SystemStatus.OK) {
-                numErrors += 1;
-                lastErrorMessage = pingResult.getMessage();
+        for (SystemStatus status : SystemStatus.values()) {
+            if (status != SystemStatus.OK) {
+                numErrors += statusCounts.get(status.ordinal());
             }
         }
 
-        if (numErrors > 0) {
+        Item problem = lastProblem.get();
+        if (numErrors > 0 && problem != null) {
             int errorPercentage = (numErrors * 100) / numberOfItemsToKeep;
-            String message = "There was an error percentage of " + errorPercentage + " in the last runs: " + lastErrorMessage;
+            String message = "There was an error percentage of " + errorPercentage + " in the last runs: "
+                    + problem.getPingResult().getMessage();
             return new PingResult(getName(), SystemStatus.WARNING, message);
         } else {
             return result;
         }
     }
+
+    /**
+     * Puts the item in its slot and updates the counters. When a thread with a newer item for the same slot was
+     * faster, the item is not stored because it would already have been replaced.
+     */
+    private void store(Item item) {
+        int slot = slot(item.sequence);
+        while (true) {
+            Item replaced = items.get(slot);
+            if (replaced != null && replaced.sequence > item.sequence) {
+                return;
+            }
+            if (items.compareAndSet(slot, replaced, item)) {
+                statusCounts.incrementAndGet(item.status.ordinal());
+                if (replaced != null) {
+                    statusCounts.decrementAndGet(replaced.status.ordinal());
+                }
+                break;
+            }
+        }
+        if (item.status != SystemStatus.OK) {
+            while (true) {
+                Item problem = lastProblem.get();
+                if ((problem != null && problem.sequence > item.sequence) || lastProblem.compareAndSet(problem, item)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private int slot(long itemSequence) {
+        return (int) (itemSequence % numberOfItemsToKeep);
+    }
+
+    /**
+     * One result in the history together with the moment it was stored.
+     */
+    public static class Item {
+        private final long sequence;
+        private final long timestamp;
+        private final SystemStatus status;
+        private final PingResult pingResult;
+
+        Item(long sequence, long timestamp, PingResult pingResult) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.status = pingResult.getSystemStatus();
+            this.pingResult = pingResult;
+        }
+
+        /**
+         * @return the moment the result was stored in milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public PingResult getPingResult() {
+            return pingResult;
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>This wrapper for {@link PingExecutor}s measures the time every execution of the delegate takes. The latencies are
+ * recorded in a {@link LatencyHistogram} per {@link PingLevel}, also when the delegate throws an exception. Use
+ * {@link #getSnapshot(PingLevel)} to read them.</p>
+ * <p>The THOROUGH level returns a {@link ThoroughPingResult} that contains the extra values of the delegate together
+ * with the statistics of every level that was executed at least once, like:</p>
+ * <pre>
+ * basic.latency_count    = 1200
+ * basic.latency_p50_ms   = 1.310
+ * basic.latency_p90_ms   = 2.621
+ * basic.latency_p99_ms   = 7.340
+ * basic.latency_max_ms   = 12.016
+ * </pre>
+ */
+public class InstrumentedPingExecutorWrapper extends PingExecutorAdapter implements PingExecutor {
+    private final PingExecutor delegate;
+    private final Map<PingLevel, LatencyHistogram> histograms =
+            new EnumMap<PingLevel, LatencyHistogram>(PingLevel.class);
+
+    public InstrumentedPingExecutorWrapper(PingExecutor delegate) {
+        this.delegate = delegate;
+        for (PingLevel pingLevel : PingLevel.values()) {
+            histograms.put(pingLevel, new LatencyHistogram());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    /**
+     * Returns a copy of the latencies recorded for the level.
+     *
+     * @param pingLevel PingLevel to obtain the latencies for
+     * @return Snapshot of the histogram of the level
+     */
+    public LatencyHistogram.Snapshot getSnapshot(PingLevel pingLevel) {
+        return histograms.get(pingLevel).getSnapshot();
+    }
+
+    @Override
+    public PingResult execute(PingLevel pingLevel) {
+        PingResult result;
+        long startNanos = System.nanoTime();
+        try {
+            result = delegate.execute(pingLevel);
+        } finally {
+            histograms.get(pingLevel).record(System.nanoTime() - startNanos);
+        }
+
+        if (pingLevel != PingLevel.THOROUGH) {
+            return result;
+        }
+        Map<String, String> extraValues = new LinkedHashMap<String, String>();
+        for (PingLevel level : PingLevel.values()) {
+            LatencyHistogram.Snapshot snapshot = getSnapshot(level);
+            if (snapshot.getCount() > 0) {
+                String prefix = level.name().toLowerCase() + ".latency_";
+                extraValues.put(prefix + "count", String.valueOf(snapshot.getCount()));
+                extraValues.put(prefix + "p50_ms", formatMillis(snapshot.getPercentileNanos(50)));
+                extraValues.put(prefix + "p90_ms", formatMillis(snapshot.getPercentileNanos(90)));
+                extraValues.put(prefix + "p99_ms", formatMillis(snapshot.getPercentileNanos(99)));
+                extraValues.put(prefix + "max_ms", formatMillis(snapshot.getMaxNanos()));
+            }
+        }
+        return addThoroughExtraValues(result, extraValues);
+    }
+
+    /**
+     * Formats nanoseconds as milliseconds with three decimals, independent of the locale.
+     */
+    static String formatMillis(long nanos) {
+        long micros = nanos / 1000;
+        String fraction = String.valueOf(micros % 1000);
+        return (micros / 1000) + "." + "000".substring(fraction.length()) + fraction;
+    }
+}
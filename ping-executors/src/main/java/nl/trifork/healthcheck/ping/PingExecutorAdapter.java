@@ -8,6 +8,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * @author Jettro Coenradie
@@ -30,8 +32,31 @@ public abstract class PingExecutorAdapter implements PingExecutor {
     public ThoroughPingResult executeThorough() {
         logger.debug("Execute the thorough ping.");
         PingResult pingResult = execute(PingLevel.THOROUGH);
+        if (pingResult instanceof ThoroughPingResult) {
+            return (ThoroughPingResult) pingResult;
+        }
         return new ThoroughPingResult(pingResult.getPingExecutorName(), pingResult.getSystemStatus(), pingResult.getMessage(),
                 new HashMap<String, String>());
     }
 
+    /**
+     * Adds extra values to the result of a delegate, used by wrappers for the THOROUGH level. The extra values of the
+     * result come first, followed by the provided values. A missing result is returned unchanged.
+     *
+     * @param result      PingResult of the delegate, can be null
+     * @param extraValues values to add to the result
+     * @return ThoroughPingResult with the status and message of the result and the combined extra values
+     */
+    protected static PingResult addThoroughExtraValues(PingResult result, Map<String, String> extraValues) {
+        if (result == null) {
+            return null;
+        }
+        Map<String, String> combined = new LinkedHashMap<String, String>();
+        if (result instanceof ThoroughPingResult && ((ThoroughPingResult) result).getThoroughExtraValues() != null) {
+            combined.putAll(((ThoroughPingResult) result).getThoroughExtraValues());
+        }
+        combined.putAll(extraValues);
+        return new ThoroughPingResult(result.getPingExecutorName(), result.getSystemStatus(), result.getMessage(),
+                combined);
+    }
 }
@@ -0,0 +1,80 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.SystemStatus;
+
+/**
+ * <p>Collects the problems that a ping executor finds while checking multiple things. The status of the report is the
+ * most severe status of the reported problems, see {@link #mostSevere(SystemStatus, SystemStatus)}. Without problems
+ * the status is OK.</p>
+ */
+public class ProblemReport {
+    private SystemStatus status = SystemStatus.OK;
+    private final StringBuilder problems = new StringBuilder();
+
+    /**
+     * Adds a problem, the status of the report becomes the status of the problem if that is more severe.
+     *
+     * @param problemStatus status of the problem
+     * @param problem       description of the problem
+     */
+    public void report(SystemStatus problemStatus, String problem) {
+        status = mostSevere(status, problemStatus);
+        problems.append(problems.length() == 0 ? "" : ", ").append(problem);
+    }
+
+    /**
+     * Returns the most severe of the two statuses. The statuses are ordered OK, WARNING, MAINTENANCE, TIMEOUT_ERROR,
+     * AUTHENTICATION_ERROR and ERROR. MAINTENANCE is a planned state, it is considered less severe than an unexpected
+     * failure.
+     *
+     * @param first  a status
+     * @param second another status
+     * @return the second status if it is more severe than the first, otherwise the first
+     */
+    public static SystemStatus mostSevere(SystemStatus first, SystemStatus second) {
+        return severity(second) > severity(first) ? second : first;
+    }
+
+    private static int severity(SystemStatus status) {
+        switch (status) {
+            case OK:
+                return 0;
+            case WARNING:
+                return 1;
+            case MAINTENANCE:
+                return 2;
+            case TIMEOUT_ERROR:
+                return 3;
+            case AUTHENTICATION_ERROR:
+                return 4;
+            default:
+                return 5;
+        }
+    }
+
+    public SystemStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the descriptions of all reported problems, separated by a comma
+     */
+    public String getProblems() {
+        return problems.toString();
+    }
+
+    /**
+     * Creates the message of the ping result, the problems are prefixed with WARNING or FAILURE.
+     *
+     * @param okMessage message to return when no problems are reported, without the OK prefix
+     * @return the message for the status of the report
+     */
+    public String createMessage(String okMessage) {
+        if (status == SystemStatus.OK) {
+            return "OK - " + okMessage;
+        } else if (status == SystemStatus.WARNING) {
+            return "WARNING - " + problems;
+        }
+        return "FAILURE - " + problems;
+    }
+}
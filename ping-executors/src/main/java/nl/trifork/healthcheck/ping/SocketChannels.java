@@ -0,0 +1,63 @@
+package nl.trifork.healthcheck.ping;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.util.List;
+
+/**
+ * Helpers for the ping executors that handle many connections with non-blocking sockets and one selector.
+ */
+public final class SocketChannels {
+    private static final Logger logger = LoggerFactory.getLogger(SocketChannels.class);
+
+    private SocketChannels() {
+    }
+
+    /**
+     * The work for one connection during a ping, like a request or a connect.
+     */
+    public interface Task {
+        /**
+         * @return true if the task succeeded or failed, false if it still waits for its connection
+         */
+        boolean isDone();
+    }
+
+    /**
+     * @param tasks List of the tasks of a ping
+     * @return the number of tasks that are not done yet
+     */
+    public static int countPending(List<? extends Task> tasks) {
+        int pending = 0;
+        for (Task task : tasks) {
+            if (!task.isDone()) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Closes the channel, a problem while closing is only logged.
+     *
+     * @param channel Channel to close
+     */
+    public static void closeQuietly(Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Problem while closing a connection of a ping.", e);
+        }
+    }
+
+    /**
+     * @param e IOException thrown by a channel
+     * @return the message of the exception, or its class name if it has no message
+     */
+    public static String describe(IOException e) {
+        return e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+    }
+}
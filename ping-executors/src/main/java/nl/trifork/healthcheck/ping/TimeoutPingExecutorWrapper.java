@@ -0,0 +1,218 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>This wrapper for {@link PingExecutor}s limits the time a ping can take. The delegate is executed on a dedicated
+ * pool of daemon threads. If the delegate does not return within the timeout, a result with status
+ * {@link SystemStatus#TIMEOUT_ERROR} is returned and the thread executing the delegate is interrupted.</p>
+ * <p>A delegate that hangs does not always respond to the interrupt, the thread stays occupied until the delegate
+ * returns. To prevent a stuck backend from taking more and more threads, the number of executions that are still
+ * running is limited. When the limit is reached, a TIMEOUT_ERROR is returned without calling the delegate.</p>
+ * <p>Call {@link #shutdown()} when the wrapper is not used anymore to stop the threads. The wrapper is also used by the
+ * {@link CompositePingExecutor} to execute its children in parallel.</p>
+ */
+public class TimeoutPingExecutorWrapper extends PingExecutorAdapter implements PingExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(TimeoutPingExecutorWrapper.class);
+
+    private final PingExecutor delegate;
+    private final long timeoutMillis;
+    private final int maxPendingExecutions;
+    private final ThreadPoolExecutor executorService;
+    private final AtomicInteger pendingExecutions = new AtomicInteger();
+
+    /**
+     * Creates the wrapper.
+     *
+     * @param delegate             PingExecutor to execute within the timeout
+     * @param timeoutMillis        Maximum number of milliseconds to wait for the delegate
+     * @param maxPendingExecutions Maximum number of executions of the delegate that can run at the same time, this is
+     *                             also the maximum number of threads in the pool
+     */
+    public TimeoutPingExecutorWrapper(PingExecutor delegate, long timeoutMillis, int maxPendingExecutions) {
+        if (maxPendingExecutions < 1) {
+            throw new IllegalArgumentException("The maximum number of pending executions must be at least 1");
+        }
+        this.delegate = delegate;
+        this.timeoutMillis = timeoutMillis;
+        this.maxPendingExecutions = maxPendingExecutions;
+
+        final String threadName = "ping-timeout-" + delegate.getName();
+        this.executorService = new ThreadPoolExecutor(maxPendingExecutions, maxPendingExecutions, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executorService.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    /**
+     * Returns the number of executions of the delegate that have not finished yet, including the ones that timed out.
+     *
+     * @return int containing the number of pending executions
+     */
+    public int getPendingExecutions() {
+        return pendingExecutions.get();
+    }
+
+    @Override
+    public PingResult execute(PingLevel pingLevel) {
+        return await(start(pingLevel));
+    }
+
+    /**
+     * Starts the execution of the delegate without waiting for it, the result is obtained with
+     * {@link #await(PendingPing)}. This way one thread can start the executions of multiple wrappers in parallel.
+     *
+     * @param pingLevel PingLevel to execute the delegate with
+     * @return PendingPing to wait for
+     */
+    PendingPing start(PingLevel pingLevel) {
+        if (pendingExecutions.incrementAndGet() > maxPendingExecutions) {
+            pendingExecutions.decrementAndGet();
+            return new PendingPing(pingLevel, null, null);
+        }
+
+        PingCall pingCall = new PingCall(pingLevel);
+        try {
+            return new PendingPing(pingLevel, pingCall, executorService.submit(pingCall));
+        } catch (RejectedExecutionException e) {
+            pendingExecutions.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the execution until the timeout, counted from the moment it was started, has passed.
+     *
+     * @param pendingPing PendingPing returned by {@link #start(PingLevel)}
+     * @return PingResult of the delegate or a result with status TIMEOUT_ERROR
+     */
+    PingResult await(PendingPing pendingPing) {
+        PingLevel pingLevel = pendingPing.pingLevel;
+        if (pendingPing.future == null) {
+            logger.warn("Not executing the ping, {} executions are still running", maxPendingExecutions);
+            return new PingResult(getName(), SystemStatus.TIMEOUT_ERROR, "FAILURE - " + maxPendingExecutions
+                    + " previous executions of the ping are still running, the backend does not respond.");
+        }
+
+        long remainingNanos = pendingPing.startedAtNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) - System.nanoTime();
+        try {
+            return pendingPing.future.get(Math.max(0, remainingNanos), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("The ping with level {} did not finish within {} ms", pingLevel.name(), timeoutMillis);
+            abandon(pendingPing);
+            return new PingResult(getName(), SystemStatus.TIMEOUT_ERROR, "FAILURE - The ping with level "
+                    + pingLevel.name() + " did not finish within " + timeoutMillis + " ms.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(pendingPing);
+            return new PingResult(getName(), SystemStatus.TIMEOUT_ERROR,
+                    "FAILURE - Interrupted while waiting for the ping with level " + pingLevel.name() + ".");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unexpected checked exception from the ping executor", cause);
+        }
+    }
+
+    /**
+     * Stops the threads of this wrapper. Running executions are interrupted.
+     */
+    public void shutdown() {
+        executorService.shutdownNow();
+    }
+
+    /**
+     * Interrupts the execution. If the execution did not start yet, it never will and we release its pending slot.
+     * Otherwise the slot is released when the delegate returns.
+     */
+    private void abandon(PendingPing pendingPing) {
+        if (pendingPing.pingCall.started.compareAndSet(false, true)) {
+            pendingExecutions.decrementAndGet();
+        }
+        pendingPing.future.cancel(true);
+    }
+
+    /**
+     * An execution of the delegate that was started, but not waited for yet.
+     */
+    static class PendingPing {
+        private final PingLevel pingLevel;
+        private final PingCall pingCall;
+        private final Future<PingResult> future;
+        private final long startedAtNanos = System.nanoTime();
+
+        private PendingPing(PingLevel pingLevel, PingCall pingCall, Future<PingResult> future) {
+            this.pingLevel = pingLevel;
+            this.pingCall = pingCall;
+            this.future = future;
+        }
+
+        /**
+         * @return nanoseconds from the start until the delegate returned, or until now if it did not return yet
+         */
+        long getLatencyNanos() {
+            long finished = pingCall == null ? 0 : pingCall.finishedAtNanos;
+            return (finished == 0 ? System.nanoTime() : finished) - startedAtNanos;
+        }
+    }
+
+    /**
+     * Executes the delegate and releases the pending slot when it returns.
+     */
+    private class PingCall implements Callable<PingResult> {
+        private final PingLevel pingLevel;
+        private final AtomicBoolean started = new AtomicBoolean(false);
+        private volatile long finishedAtNanos;
+
+        PingCall(PingLevel pingLevel) {
+            this.pingLevel = pingLevel;
+        }
+
+        @Override
+        public PingResult call() {
+            if (!started.compareAndSet(false, true)) {
+                // Abandoned before we started, nobody is waiting for the result anymore
+                return null;
+            }
+            try {
+                return delegate.execute(pingLevel);
+            } finally {
+                finishedAtNanos = System.nanoTime();
+                pendingExecutions.decrementAndGet();
+            }
+        }
+    }
+}
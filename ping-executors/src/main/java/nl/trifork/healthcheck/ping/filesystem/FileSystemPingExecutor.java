@@ -0,0 +1,157 @@
+package nl.trifork.healthcheck.ping.filesystem;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.PingExecutorAdapter;
+import nl.trifork.healthcheck.ping.ProblemReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Implementation for the {@link PingExecutor} that checks the file systems of a list of directories, for instance
+ * the directory of the lucene index of the repository and the log directory.</p>
+ * <ul>
+ * <li>Basic - Checks the usable space of every directory against the warning and error percentages.</li>
+ * <li>Extended - The same as the basic check plus it writes a block to a probe file in every directory and forces it
+ * to the disk. A write that takes longer than the warning latency returns a WARNING, a write that fails an ERROR.</li>
+ * <li>Thorough - The same as the extended check plus it adds the space and the write latency of every directory to
+ * the result.</li>
+ * </ul>
+ * <p>The probe file is created once with the size of the block and overwritten by every ping, so the write does not
+ * need to allocate space. A disk that slows down therefore shows in the latency before it fills up or hangs.</p>
+ * <p>A special builder is available {@link FileSystemPingExecutorBuilder} to make creating the executor easier.</p>
+ */
+public class FileSystemPingExecutor extends PingExecutorAdapter implements PingExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(FileSystemPingExecutor.class);
+    private static final int PROBE_BLOCK_SIZE = 4096;
+
+    private final String name;
+    private final List<File> directories;
+    private final String probeFileName;
+    private final int warningFreePercentage;
+    private final int errorFreePercentage;
+    private final long warningLatencyMillis;
+    private final ByteBuffer probeBlock = ByteBuffer.allocate(PROBE_BLOCK_SIZE);
+
+    public FileSystemPingExecutor(String name, List<File> directories, String probeFileName,
+                                  int warningFreePercentage, int errorFreePercentage, long warningLatencyMillis) {
+        if (directories == null || directories.isEmpty()) {
+            throw new IllegalArgumentException("At least one directory is required");
+        }
+        if (errorFreePercentage > warningFreePercentage) {
+            throw new IllegalArgumentException("The error percentage cannot be higher than the warning percentage");
+        }
+        this.name = name;
+        this.directories = new ArrayList<File>(directories);
+        this.probeFileName = probeFileName;
+        this.warningFreePercentage = warningFreePercentage;
+        this.errorFreePercentage = errorFreePercentage;
+        this.warningLatencyMillis = warningLatencyMillis;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized PingResult execute(PingLevel pingLevel) {
+        Map<String, String> extraValues = new LinkedHashMap<String, String>();
+        ProblemReport report = new ProblemReport();
+        for (File directory : directories) {
+            String prefix = directory.getPath() + ".";
+            if (!directory.isDirectory()) {
+                report.report(SystemStatus.ERROR, directory.getPath() + " is not an existing directory");
+                continue;
+            }
+            checkSpace(directory, prefix, report, extraValues);
+            if (pingLevel != PingLevel.BASIC) {
+                checkWrite(directory, prefix, report, extraValues);
+            }
+        }
+
+        String message = report.createMessage("The file systems of all " + directories.size()
+                + " directories are fine.");
+        if (pingLevel == PingLevel.THOROUGH) {
+            return new ThoroughPingResult(name, report.getStatus(), message, extraValues);
+        }
+        return new PingResult(name, report.getStatus(), message);
+    }
+
+    private void checkSpace(File directory, String prefix, ProblemReport report, Map<String, String> extraValues) {
+        long total = directory.getTotalSpace();
+        long usable = directory.getUsableSpace();
+        extraValues.put(prefix + "total_bytes", String.valueOf(total));
+        extraValues.put(prefix + "usable_bytes", String.valueOf(usable));
+        if (total <= 0) {
+            return;
+        }
+        int freePercentage = (int) (usable * 100 / total);
+        extraValues.put(prefix + "free_percentage", String.valueOf(freePercentage));
+        if (freePercentage < errorFreePercentage) {
+            report.report(SystemStatus.ERROR, directory.getPath() + " has " + freePercentage + "% free space");
+        } else if (freePercentage < warningFreePercentage) {
+            report.report(SystemStatus.WARNING, directory.getPath() + " has " + freePercentage + "% free space");
+        }
+    }
+
+    private void checkWrite(File directory, String prefix, ProblemReport report, Map<String, String> extraValues) {
+        long startNanos = currentTimeNanos();
+        try {
+            writeProbe(new File(directory, probeFileName));
+        } catch (IOException e) {
+            logger.error("Problem while writing the probe file in " + directory.getPath(), e);
+            report.report(SystemStatus.ERROR, "could not write to " + directory.getPath() + ": " + e.getMessage());
+            return;
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(currentTimeNanos() - startNanos);
+        extraValues.put(prefix + "write_ms", String.valueOf(elapsedMillis));
+        if (warningLatencyMillis > 0 && elapsedMillis > warningLatencyMillis) {
+            report.report(SystemStatus.WARNING, "writing to " + directory.getPath() + " took " + elapsedMillis
+                    + " ms, more than " + warningLatencyMillis + " ms");
+        }
+    }
+
+    /**
+     * Overwrites the block of the probe file and forces it to the disk. The file is extended to the size of the block
+     * the first time.
+     */
+    void writeProbe(File probeFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(probeFile, "rw");
+        try {
+            FileChannel channel = file.getChannel();
+            probeBlock.clear();
+            probeBlock.putLong(0, System.currentTimeMillis());
+            int position = 0;
+            while (probeBlock.hasRemaining()) {
+                position += channel.write(probeBlock, position);
+            }
+            channel.force(true);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Returns the value of the monotonic clock, can be overridden in tests.
+     *
+     * @return current value of the clock in nanoseconds
+     */
+    protected long currentTimeNanos() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,68 @@
+package nl.trifork.healthcheck.ping.filesystem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Special builder class to create a {@link FileSystemPingExecutor}. The defaults are a WARNING below 10% and an
+ * ERROR below 5% of usable space and a WARNING when writing the probe file takes more than 500 milliseconds.</p>
+ * <p>Start the creation by calling the create method. Override values with the setters and call build to actually
+ * construct the object.</p>
+ */
+public class FileSystemPingExecutorBuilder {
+    private String name = "File system ping executor";
+    private String probeFileName = ".healthcheck-probe";
+    private int warningFreePercentage = 10;
+    private int errorFreePercentage = 5;
+    private long warningLatency = 500;
+    private List<File> directories = new ArrayList<File>();
+
+    public static FileSystemPingExecutorBuilder create() {
+        return new FileSystemPingExecutorBuilder();
+    }
+
+    public FileSystemPingExecutor build() {
+        return new FileSystemPingExecutor(name, directories, probeFileName, warningFreePercentage,
+                errorFreePercentage, warningLatency);
+    }
+
+    public FileSystemPingExecutorBuilder setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public FileSystemPingExecutorBuilder addDirectory(String directory) {
+        directories.add(new File(directory));
+        return this;
+    }
+
+    public FileSystemPingExecutorBuilder addDirectory(File directory) {
+        directories.add(directory);
+        return this;
+    }
+
+    public FileSystemPingExecutorBuilder setProbeFileName(String probeFileName) {
+        this.probeFileName = probeFileName;
+        return this;
+    }
+
+    public FileSystemPingExecutorBuilder setWarningFreePercentage(int warningFreePercentage) {
+        this.warningFreePercentage = warningFreePercentage;
+        return this;
+    }
+
+    public FileSystemPingExecutorBuilder setErrorFreePercentage(int errorFreePercentage) {
+        this.errorFreePercentage = errorFreePercentage;
+        return this;
+    }
+
+    /**
+     * @param warningLatency number of milliseconds writing the probe file may take, 0 to disable the warning
+     * @return this builder
+     */
+    public FileSystemPingExecutorBuilder setWarningLatency(long warningLatency) {
+        this.warningLatency = warningLatency;
+        return this;
+    }
+}
@@ -7,9 +7,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jcr.*;
+import java.rmi.RemoteException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
  * <p>Implementation for the {@link nl.trifork.healthcheck.api.PingExecutor} that connects to a hippo repository. The PingExecutor interface specifies
@@ -22,6 +31,20 @@ import java.util.Map;
  * <p>A special builder is available {@link HippoRepositoryPingExecutorBuilder} to make creating the executor easier.</p>
  * <p>The ping executor provides a number of configuration parameters. Most of them are self explanatory. An important
  * one is the customMessage. If you provide a custom message, the status of the returned ping is MAINTENANCE.</p>
+ * <p>By default every ping connects to the repository and logs in. With reuseConnections the repository connection is
+ * kept and a small pool of sessions is reused by the next pings. A pooled session is checked with
+ * {@link Session#isLive()} and {@link Session#refresh(boolean)} before it is used. When the repository, the login or
+ * a remote call fails, the session and the repository connection are thrown away and the next ping creates new ones.
+ * A missing check node or a warning keeps them. Call {@link #close()} to release them when the executor is no longer
+ * used.</p>
+ * <p>The write test stores the lastcheck property of the cluster node. With a writeInterval the write is done at most
+ * once per interval, the pings in between report the outcome of the last write. Before writing, the persisted
+ * lastcheck is read, so processes that share the cluster node id also share the interval. The duration of the last
+ * write is added to the result of the THOROUGH level.</p>
+ * <p>Every cluster node leaves its lastcheck under the writeTestPath. The THOROUGH level reads them all and adds the
+ * last write and the lag of every cluster node to the result. A cluster node whose last write is older than the
+ * staleClusterNodeThreshold is stale, stale cluster nodes turn an OK result into a WARNING. Choose a threshold well
+ * above the interval at which the cluster nodes are pinged and the writeInterval.</p>
  * <p>A lot of the code is based on the PingServlet as provided by Hippo.</p>
  *
  * @author Jettro Coenradie
@@ -35,15 +58,38 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
     private String checkNode;
     private String customMessage;
     private String writeTestPath;
+    private boolean reuseConnections;
+    private long writeIntervalMillis;
+    private long staleClusterNodeMillis;
+
+    private final Object repositoryLock = new Object();
+    private volatile HippoRepository cachedRepository;
+    private final BlockingQueue<Session> sessionPool;
+
+    private final Object writeLock = new Object();
+    private volatile WriteOutcome lastWrite;
 
     public HippoRepositoryPingExecutor(String repositoryLocation, String username, String password, String checkNode,
                                        String customMessage, String writeTestPath) {
+        this(repositoryLocation, username, password, checkNode, customMessage, writeTestPath, false, 1, 0, 0);
+    }
+
+    public HippoRepositoryPingExecutor(String repositoryLocation, String username, String password, String checkNode,
+                                       String customMessage, String writeTestPath, boolean reuseConnections,
+                                       int sessionPoolSize, long writeIntervalMillis, long staleClusterNodeMillis) {
+        if (sessionPoolSize < 1) {
+            throw new IllegalArgumentException("The session pool size must be at least 1");
+        }
         this.repositoryLocation = repositoryLocation;
         this.username = username;
         this.password = password;
         this.checkNode = checkNode;
         this.customMessage = customMessage;
         this.writeTestPath = writeTestPath;
+        this.reuseConnections = reuseConnections;
+        this.writeIntervalMillis = writeIntervalMillis;
+        this.staleClusterNodeMillis = staleClusterNodeMillis;
+        this.sessionPool = new ArrayBlockingQueue<Session>(sessionPoolSize);
     }
 
     @Override
@@ -67,6 +113,9 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
     public ThoroughPingResult executeThorough() {
         logger.debug("Execute the thorough ping.");
         PingResult pingResult = execute(PingLevel.THOROUGH);
+        if (pingResult instanceof ThoroughPingResult) {
+            return (ThoroughPingResult) pingResult;
+        }
         return new ThoroughPingResult(pingResult.getPingExecutorName(), pingResult.getSystemStatus(), pingResult.getMessage(),
                 new HashMap<String, String>());
     }
@@ -75,13 +124,14 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
     public PingResult execute(PingLevel pingLevel) {
         SystemStatus status = SystemStatus.OK;
         String resultMessage = "OK - Repository online and accessible.";
+        Map<String, Long> clusterLastChecks = null;
         if (hasCustomMessage()) {
             logger.info("Returning the default message for the ping: " + customMessage);
             resultMessage = customMessage;
             status = SystemStatus.MAINTENANCE;
         } else {
             try {
-                doRepositoryChecks(pingLevel);
+                clusterLastChecks = doRepositoryChecks(pingLevel);
                 logger.debug("Ping executed is fine.");
             } catch (HippoPingException e) {
                 status = e.getProposedStatus();
@@ -97,7 +147,7 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
         }
         PingResult pingResult = new PingResult(getName(), status, resultMessage);
         if (pingLevel == PingLevel.THOROUGH) {
-            pingResult = obtainAdditionalInformationThoroughPing(pingResult);
+            pingResult = obtainAdditionalInformationThoroughPing(pingResult, clusterLastChecks);
         }
         return pingResult;
     }
@@ -106,29 +156,106 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
      * This method determines which checks to execute based on the provided PingLevel.
      *
      * @param pingLevel PingLevel determining the checks to perform
+     * @return the last write of every cluster node for the THOROUGH level, null for the other levels
      * @throws HippoPingException thrown by the called functions when something goes wrong.
      */
-    void doRepositoryChecks(PingLevel pingLevel) throws HippoPingException {
+    Map<String, Long> doRepositoryChecks(PingLevel pingLevel) throws HippoPingException {
         Session session = null;
+        boolean evict = true;
         try {
             HippoRepository repository = obtainRepository();
             session = obtainSession(repository);
             doReadTest(session);
             if (pingLevel != PingLevel.BASIC) {
-                doWriteTest(session);
+                doThrottledWriteTest(session);
+            }
+            Map<String, Long> clusterLastChecks = null;
+            if (pingLevel == PingLevel.THOROUGH) {
+                clusterLastChecks = readClusterLastChecks(session);
             }
+            evict = false;
+            return clusterLastChecks;
+        } catch (HippoPingException e) {
+            evict = isConnectionFailure(e);
+            throw e;
+        } catch (RuntimeException e) {
+            evict = isConnectionFailure(e);
+            throw e;
         } finally {
-            closeSession(session);
+            if (!reuseConnections) {
+                closeSession(session);
+            } else if (evict) {
+                closeSession(session);
+                evictConnections();
+            } else if (session == null || !sessionPool.offer(session)) {
+                closeSession(session);
+            }
+        }
+    }
+
+    /**
+     * Only a failure of the repository or the login points at a broken connection. A missing check node, a warning
+     * about the cluster nodes or the reported outcome of an earlier write test leave the connections in place.
+     */
+    private static boolean isConnectionFailure(HippoPingException e) {
+        if (e.getProposedStatus() == SystemStatus.WARNING) {
+            return false;
+        }
+        Throwable cause = e.getCause();
+        return (cause instanceof RepositoryException && !(cause instanceof PathNotFoundException))
+                || isConnectionFailure(cause);
+    }
+
+    /**
+     * An unexpected exception only points at a broken connection when it is caused by a remote call.
+     */
+    private static boolean isConnectionFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RemoteException) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
-     * Return the available repository based on the configured location.
+     * Closes the pooled sessions and the cached repository connection. The next ping creates new ones.
+     */
+    public void close() {
+        evictConnections();
+    }
+
+    /**
+     * Return the available repository based on the configured location. When connections are reused, the repository
+     * is only created the first time and after a failed ping.
      *
      * @return HippoRepository connected to the configured url.
      * @throws HippoPingException thrown if obtaining the repository is not possible
      */
     HippoRepository obtainRepository() throws HippoPingException {
+        if (!reuseConnections) {
+            return createRepository();
+        }
+        HippoRepository repository = cachedRepository;
+        if (repository == null) {
+            synchronized (repositoryLock) {
+                repository = cachedRepository;
+                if (repository == null) {
+                    repository = createRepository();
+                    cachedRepository = repository;
+                }
+            }
+        }
+        return repository;
+    }
+
+    /**
+     * Connects to the repository at the configured location.
+     *
+     * @return HippoRepository connected to the configured url.
+     * @throws HippoPingException thrown if obtaining the repository is not possible
+     */
+    HippoRepository createRepository() throws HippoPingException {
         HippoRepository repository;
         try {
             repository = HippoRepositoryFactory.getHippoRepository(repositoryLocation);
@@ -140,13 +267,23 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
     }
 
     /**
-     * Returns a new session obtained through the provided repository and the configured username and password.
+     * Returns a session obtained through the provided repository and the configured username and password. When
+     * connections are reused, a live session from the pool is returned if there is one.
      *
      * @param repository HippoRepository to obtain a Session to.
      * @return Session connected to the provided repository.
      * @throws HippoPingException thrown if the credentials are wrong or if we cannot obtain a session to the repository
      */
     Session obtainSession(HippoRepository repository) throws HippoPingException {
+        if (reuseConnections) {
+            Session pooled;
+            while ((pooled = sessionPool.poll()) != null) {
+                if (isUsable(pooled)) {
+                    return pooled;
+                }
+                closeSession(pooled);
+            }
+        }
         try {
             return repository.login(username, password.toCharArray());
         } catch (LoginException e) {
@@ -202,8 +339,139 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
         }
     }
 
-    private PingResult obtainAdditionalInformationThoroughPing(PingResult pingResult) {
-        Map<String, String> thoroughExtraValues = new HashMap<String, String>();
+    /**
+     * Executes the write test if the last write is at least writeInterval ago, otherwise the outcome of the last write
+     * is reported again.
+     *
+     * @param session Session to use for writing the node.
+     * @throws HippoPingException Thrown if the write test, or the last write test, failed.
+     */
+    void doThrottledWriteTest(Session session) throws HippoPingException {
+        if (writeIntervalMillis <= 0) {
+            // Without throttling concurrent pings write concurrently, only the outcome is recorded
+            timedWriteTest(session, currentTimeMillis());
+            return;
+        }
+        if (reportLastWrite(currentTimeMillis())) {
+            return;
+        }
+        synchronized (writeLock) {
+            long now = currentTimeMillis();
+            if (reportLastWrite(now)) {
+                return;
+            }
+            long persisted = readLastCheck(session);
+            if (now - persisted < writeIntervalMillis) {
+                logger.debug("The write test is skipped, it was done by another process at {}", persisted);
+                lastWrite = new WriteOutcome(persisted, -1, null);
+                return;
+            }
+            timedWriteTest(session, now);
+        }
+    }
+
+    /**
+     * Executes the write test and records its outcome, also when it fails with an unexpected exception.
+     */
+    private void timedWriteTest(Session session, long now) {
+        long startNanos = System.nanoTime();
+        try {
+            doWriteTest(session);
+            lastWrite = new WriteOutcome(now, System.nanoTime() - startNanos, null);
+        } catch (HippoPingException e) {
+            lastWrite = new WriteOutcome(now, System.nanoTime() - startNanos, e);
+            throw e;
+        } catch (RuntimeException e) {
+            String msg = "FAILURE - Error during write test: " + e.getClass().getName() + ": " + e.getMessage();
+            lastWrite = new WriteOutcome(now, System.nanoTime() - startNanos,
+                    new HippoPingException(msg, e, SystemStatus.ERROR));
+            throw e;
+        }
+    }
+
+    /**
+     * Returns true if the last write is recent enough to report its outcome, a failed write is thrown again.
+     */
+    private boolean reportLastWrite(long now) {
+        WriteOutcome outcome = lastWrite;
+        if (outcome == null || now - outcome.timestamp >= writeIntervalMillis) {
+            return false;
+        }
+        if (outcome.failure != null) {
+            throw new HippoPingException(outcome.failure.getMessage(), outcome.failure,
+                    outcome.failure.getProposedStatus());
+        }
+        return true;
+    }
+
+    /**
+     * Reads the lastcheck property of the cluster node without creating the node, creating it is part of the write
+     * test. When the lastcheck cannot be read the write test is executed, so a problem is recorded as its outcome.
+     *
+     * @return the moment of the last write in milliseconds since the epoch, 0 if it is not available
+     */
+    private long readLastCheck(Session session) {
+        String clusterId = getClusterNodeId();
+        try {
+            Node root = session.getRootNode();
+            if (root.hasNode(writeTestPath)) {
+                Node path = root.getNode(writeTestPath);
+                if (path.hasNode(clusterId)) {
+                    Node node = path.getNode(clusterId);
+                    if (node.hasProperty("lastcheck")) {
+                        return node.getProperty("lastcheck").getDate().getTimeInMillis();
+                    }
+                }
+            }
+        } catch (RepositoryException e) {
+            logger.debug("Could not read the last check, the write test is executed.", e);
+        } catch (RuntimeException e) {
+            logger.debug("Could not read the last check, the write test is executed.", e);
+        }
+        return 0;
+    }
+
+    /**
+     * Reads the lastcheck of every cluster node in one pass over the children of the writeTestPath.
+     *
+     * @param session Session to use for reading the nodes.
+     * @return the last write in milliseconds since the epoch by cluster node id, sorted by id
+     * @throws HippoPingException Thrown if the nodes could not be read.
+     */
+    Map<String, Long> readClusterLastChecks(Session session) throws HippoPingException {
+        Map<String, Long> lastChecks = new TreeMap<String, Long>();
+        try {
+            Node root = session.getRootNode();
+            if (!root.hasNode(writeTestPath)) {
+                return lastChecks;
+            }
+            NodeIterator clusterNodes = root.getNode(writeTestPath).getNodes();
+            while (clusterNodes.hasNext()) {
+                Node clusterNode = clusterNodes.nextNode();
+                if (clusterNode.hasProperty("lastcheck")) {
+                    lastChecks.put(clusterNode.getName(),
+                            clusterNode.getProperty("lastcheck").getDate().getTimeInMillis());
+                }
+            }
+        } catch (RepositoryException e) {
+            String msg = "WARNING - Could not read the last check of the cluster nodes under '" + writeTestPath + "'.";
+            throw new HippoPingException(msg, e, SystemStatus.WARNING);
+        }
+        return lastChecks;
+    }
+
+    /**
+     * Returns the current time, can be overridden in tests.
+     *
+     * @return current time in milliseconds since the epoch
+     */
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private PingResult obtainAdditionalInformationThoroughPing(PingResult pingResult, Map<String, Long> clusterLastChecks) {
+        // Keeps the order of the values, the cluster nodes are reported sorted by id
+        Map<String, String> thoroughExtraValues = new LinkedHashMap<String, String>();
         int megaBytes = 1024 * 1024;
         Runtime runtime = Runtime.getRuntime();
         thoroughExtraValues.put("used_memory", String.valueOf((runtime.totalMemory() - runtime.freeMemory()) / megaBytes) + " Mb");
@@ -211,9 +479,50 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
         thoroughExtraValues.put("total_memory", String.valueOf(runtime.totalMemory() / megaBytes) + " Mb");
         thoroughExtraValues.put("max_memory", String.valueOf(runtime.maxMemory() / megaBytes) + " Mb");
         thoroughExtraValues.put("number_of_processors", String.valueOf(runtime.availableProcessors()));
+        WriteOutcome outcome = lastWrite;
+        if (outcome != null) {
+            thoroughExtraValues.put("write_test.status", outcome.failure == null ? "OK" : "FAILURE");
+            thoroughExtraValues.put("write_test.age_ms", String.valueOf(currentTimeMillis() - outcome.timestamp));
+            if (outcome.latencyNanos >= 0) {
+                thoroughExtraValues.put("write_test.latency_ms", String.valueOf(outcome.latencyNanos / 1000000));
+            }
+        }
 
-        pingResult = new ThoroughPingResult(pingResult, thoroughExtraValues);
-        return pingResult;
+        SystemStatus status = pingResult.getSystemStatus();
+        String message = pingResult.getMessage();
+        if (clusterLastChecks != null) {
+            long now = currentTimeMillis();
+            DateFormat timestampFormat = createTimestampFormat();
+            StringBuilder staleNodes = new StringBuilder();
+            int numberOfStaleNodes = 0;
+            for (Map.Entry<String, Long> lastCheck : clusterLastChecks.entrySet()) {
+                long lag = now - lastCheck.getValue();
+                thoroughExtraValues.put("cluster." + lastCheck.getKey() + ".lastcheck",
+                        timestampFormat.format(new Date(lastCheck.getValue())));
+                thoroughExtraValues.put("cluster." + lastCheck.getKey() + ".lag_ms", String.valueOf(lag));
+                if (staleClusterNodeMillis > 0 && lag > staleClusterNodeMillis) {
+                    staleNodes.append(numberOfStaleNodes++ == 0 ? "" : ", ").append(lastCheck.getKey());
+                }
+            }
+            thoroughExtraValues.put("cluster.members", String.valueOf(clusterLastChecks.size()));
+            thoroughExtraValues.put("cluster.stale", String.valueOf(numberOfStaleNodes));
+            if (numberOfStaleNodes > 0 && status == SystemStatus.OK) {
+                status = SystemStatus.WARNING;
+                message = "WARNING - No write test within " + staleClusterNodeMillis + " ms by cluster nodes: "
+                        + staleNodes;
+            }
+        }
+
+        return new ThoroughPingResult(pingResult.getPingExecutorName(), status, message, thoroughExtraValues);
+    }
+
+    /**
+     * Formats timestamps as ISO-8601 in UTC. A SimpleDateFormat is not thread safe, every ping creates its own.
+     */
+    private static DateFormat createTimestampFormat() {
+        DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format;
     }
 
     private boolean hasCustomMessage() {
@@ -221,8 +530,51 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
     }
 
     private void closeSession(Session session) {
-        if (session != null && session.isLive()) {
-            session.logout();
+        try {
+            if (session != null && session.isLive()) {
+                session.logout();
+            }
+        } catch (RuntimeException e) {
+            logger.debug("Problem while closing a session, the session is dropped.", e);
+        }
+    }
+
+    /**
+     * A pooled session is usable if it is live and can throw away its changes, refreshing also makes the session see
+     * the latest state of the repository.
+     */
+    private boolean isUsable(Session session) {
+        try {
+            if (!session.isLive()) {
+                return false;
+            }
+            session.refresh(false);
+            return true;
+        } catch (RepositoryException e) {
+            logger.info("Pooled session cannot be refreshed, a new session is obtained.", e);
+            return false;
+        } catch (RuntimeException e) {
+            logger.info("Pooled session cannot be refreshed, a new session is obtained.", e);
+            return false;
+        }
+    }
+
+    private void evictConnections() {
+        Session pooled;
+        while ((pooled = sessionPool.poll()) != null) {
+            closeSession(pooled);
+        }
+        HippoRepository repository;
+        synchronized (repositoryLock) {
+            repository = cachedRepository;
+            cachedRepository = null;
+        }
+        if (repository != null) {
+            try {
+                repository.close();
+            } catch (RuntimeException e) {
+                logger.debug("Problem while closing the repository connection.", e);
+            }
         }
     }
 
@@ -267,4 +619,18 @@ public class HippoRepositoryPingExecutor implements PingExecutor {
         return id;
     }
 
+    /**
+     * Outcome of the last write test, the latency is -1 if the write was done by another process.
+     */
+    private static class WriteOutcome {
+        private final long timestamp;
+        private final long latencyNanos;
+        private final HippoPingException failure;
+
+        private WriteOutcome(long timestamp, long latencyNanos, HippoPingException failure) {
+            this.timestamp = timestamp;
+            this.latencyNanos = latencyNanos;
+            this.failure = failure;
+        }
+    }
 }
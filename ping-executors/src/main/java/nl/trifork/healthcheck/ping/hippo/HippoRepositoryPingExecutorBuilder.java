@@ -15,13 +15,18 @@ public class HippoRepositoryPingExecutorBuilder {
     private String nodeToUse = "content/documents";
     private String writePath = "pingcheck";
     private String customMessage = null;
+    private boolean reuseConnections = false;
+    private int sessionPoolSize = 2;
+    private long writeInterval = 0;
+    private long staleClusterNodeThreshold = 0;
 
     public static HippoRepositoryPingExecutorBuilder create() {
         return new HippoRepositoryPingExecutorBuilder();
     }
 
     public HippoRepositoryPingExecutor build() {
-        return new HippoRepositoryPingExecutor(repositoryAddress, username, password, nodeToUse, customMessage, writePath);
+        return new HippoRepositoryPingExecutor(repositoryAddress, username, password, nodeToUse, customMessage, writePath,
+                reuseConnections, sessionPoolSize, writeInterval, staleClusterNodeThreshold);
     }
 
     public HippoRepositoryPingExecutorBuilder setNodeToUse(String nodeToUse) {
@@ -53,4 +58,36 @@ public class HippoRepositoryPingExecutorBuilder {
         this.customMessage = customMessage;
         return this;
     }
+
+    public HippoRepositoryPingExecutorBuilder setReuseConnections(boolean reuseConnections) {
+        this.reuseConnections = reuseConnections;
+        return this;
+    }
+
+    public HippoRepositoryPingExecutorBuilder setSessionPoolSize(int sessionPoolSize) {
+        this.sessionPoolSize = sessionPoolSize;
+        return this;
+    }
+
+    /**
+     * Sets the minimum time between two write tests of the cluster node, 0 writes on every EXTENDED and THOROUGH ping.
+     *
+     * @param writeInterval interval in milliseconds
+     * @return this builder
+     */
+    public HippoRepositoryPingExecutorBuilder setWriteInterval(long writeInterval) {
+        this.writeInterval = writeInterval;
+        return this;
+    }
+
+    /**
+     * Sets the age of the last write test after which a cluster node is stale, 0 never reports stale cluster nodes.
+     *
+     * @param staleClusterNodeThreshold threshold in milliseconds
+     * @return this builder
+     */
+    public HippoRepositoryPingExecutorBuilder setStaleClusterNodeThreshold(long staleClusterNodeThreshold) {
+        this.staleClusterNodeThreshold = staleClusterNodeThreshold;
+        return this;
+    }
 }
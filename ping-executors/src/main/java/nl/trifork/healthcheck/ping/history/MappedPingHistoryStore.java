@@ -0,0 +1,214 @@
+package nl.trifork.healthcheck.ping.history;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>{@link PingHistoryStore} that keeps the records in a memory mapped file with a fixed number of slots. Appending a
+ * record writes a few values into the mapped memory, the operating system writes them to disk. That makes appending
+ * about as cheap as keeping the records in memory, and the records survive a restart or a crash of the
+ * application.</p>
+ * <p>The file starts with a header of {@value #HEADER_SIZE} bytes containing a magic number, the version, the record
+ * size, the number of slots and the next sequence number. It is followed by the slots of {@value #RECORD_SIZE} bytes:</p>
+ * <pre>
+ *  0 sequence      long
+ *  8 timestamp     long
+ * 16 latencyNanos  long
+ * 24 messageHash   int
+ * 28 level         byte (ordinal)
+ * 29 status        byte (ordinal)
+ * 32 checksum      int
+ * </pre>
+ * <p>The record with sequence number n is stored in slot n modulo the number of slots, the checksum is written last.
+ * When the file is opened, a record is only used if its checksum is correct and its sequence number belongs to its
+ * slot. A record that was only partly written when the application stopped is therefore skipped. A file with
+ * another layout or number of slots is started again.</p>
+ * <p>Records that are not yet written to disk by the operating system can be lost when the machine itself crashes,
+ * {@link #close()} forces the records to disk.</p>
+ */
+public class MappedPingHistoryStore implements PingHistoryStore {
+    private static final Logger logger = LoggerFactory.getLogger(MappedPingHistoryStore.class);
+
+    static final int MAGIC = 0x50485354; // PHST
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 40;
+
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_RECORD_SIZE = 8;
+    private static final int HEADER_CAPACITY = 12;
+    private static final int HEADER_NEXT_SEQUENCE = 16;
+
+    private static final int RECORD_SEQUENCE = 0;
+    private static final int RECORD_TIMESTAMP = 8;
+    private static final int RECORD_LATENCY = 16;
+    private static final int RECORD_MESSAGE_HASH = 24;
+    private static final int RECORD_LEVEL = 28;
+    private static final int RECORD_STATUS = 29;
+    private static final int RECORD_CHECKSUM = 32;
+
+    private final int capacity;
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private long nextSequence;
+    private boolean closed = false;
+
+    /**
+     * Opens the store, the file is created if it does not exist.
+     *
+     * @param path     File to keep the records in
+     * @param capacity number of records to keep
+     * @throws IOException thrown when the file cannot be created or mapped
+     */
+    public MappedPingHistoryStore(File path, int capacity) throws IOException {
+        if (capacity < 1 || capacity > (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE) {
+            throw new IllegalArgumentException("The capacity must be at least 1 and the file cannot exceed 2 Gb");
+        }
+        this.capacity = capacity;
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        boolean existing = path.exists() && path.length() == size;
+        file = new RandomAccessFile(path, "rw");
+        file.setLength(size);
+        channel = file.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+        if (existing && hasValidHeader()) {
+            nextSequence = recoverNextSequence();
+            logger.info("Opened ping history {}, the next record is number {}", path, nextSequence);
+        } else {
+            logger.info("Starting a new ping history in {} with room for {} records", path, capacity);
+            initialize();
+        }
+    }
+
+    @Override
+    public synchronized void append(PingHistoryRecord record) {
+        if (closed) {
+            return;
+        }
+        long sequence = nextSequence++;
+        int offset = offset(sequence);
+        // Invalidate the slot first, a crash while writing then leaves a record that is skipped
+        buffer.putInt(offset + RECORD_CHECKSUM, 0);
+        buffer.putLong(offset + RECORD_SEQUENCE, sequence);
+        buffer.putLong(offset + RECORD_TIMESTAMP, record.getTimestamp());
+        buffer.putLong(offset + RECORD_LATENCY, record.getLatencyNanos());
+        buffer.putInt(offset + RECORD_MESSAGE_HASH, record.getMessageHash());
+        buffer.put(offset + RECORD_LEVEL, (byte) record.getPingLevel().ordinal());
+        buffer.put(offset + RECORD_STATUS, (byte) record.getSystemStatus().ordinal());
+        buffer.putInt(offset + RECORD_CHECKSUM, checksum(offset));
+        buffer.putLong(HEADER_NEXT_SEQUENCE, nextSequence);
+    }
+
+    @Override
+    public synchronized List<PingHistoryRecord> load(int maxRecords) {
+        List<PingHistoryRecord> records = new ArrayList<PingHistoryRecord>();
+        long first = Math.max(0, nextSequence - Math.min(maxRecords, capacity));
+        for (long sequence = first; sequence < nextSequence; sequence++) {
+            PingHistoryRecord record = readRecord(sequence);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        buffer.force();
+        try {
+            channel.close();
+            file.close();
+        } catch (IOException e) {
+            logger.warn("Problem while closing the ping history", e);
+        }
+    }
+
+    private boolean hasValidHeader() {
+        return buffer.getInt(HEADER_MAGIC) == MAGIC && buffer.getInt(HEADER_VERSION) == VERSION
+                && buffer.getInt(HEADER_RECORD_SIZE) == RECORD_SIZE && buffer.getInt(HEADER_CAPACITY) == capacity;
+    }
+
+    private void initialize() {
+        for (int i = 0; i < capacity; i++) {
+            buffer.putInt(HEADER_SIZE + i * RECORD_SIZE + RECORD_CHECKSUM, 0);
+            buffer.putLong(HEADER_SIZE + i * RECORD_SIZE + RECORD_SEQUENCE, -1);
+        }
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+        buffer.putInt(HEADER_VERSION, VERSION);
+        buffer.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+        buffer.putInt(HEADER_CAPACITY, capacity);
+        buffer.putLong(HEADER_NEXT_SEQUENCE, 0);
+        nextSequence = 0;
+    }
+
+    /**
+     * The next sequence in the header is written after the record, so it can be behind. The valid records determine
+     * the next sequence.
+     */
+    private long recoverNextSequence() {
+        long next = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = HEADER_SIZE + slot * RECORD_SIZE;
+            long sequence = buffer.getLong(offset + RECORD_SEQUENCE);
+            if (sequence >= 0 && offset(sequence) == offset && checksum(offset) == buffer.getInt(offset + RECORD_CHECKSUM)) {
+                next = Math.max(next, sequence + 1);
+            }
+        }
+        return next;
+    }
+
+    private PingHistoryRecord readRecord(long sequence) {
+        int offset = offset(sequence);
+        if (buffer.getLong(offset + RECORD_SEQUENCE) != sequence
+                || buffer.getInt(offset + RECORD_CHECKSUM) != checksum(offset)) {
+            return null;
+        }
+        int level = buffer.get(offset + RECORD_LEVEL);
+        int status = buffer.get(offset + RECORD_STATUS);
+        if (level < 0 || level >= PingLevel.values().length || status < 0 || status >= SystemStatus.values().length) {
+            return null;
+        }
+        return new PingHistoryRecord(buffer.getLong(offset + RECORD_TIMESTAMP), PingLevel.values()[level],
+                SystemStatus.values()[status], buffer.getLong(offset + RECORD_LATENCY),
+                buffer.getInt(offset + RECORD_MESSAGE_HASH));
+    }
+
+    private int offset(long sequence) {
+        return HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+    }
+
+    /**
+     * Mixes the fields of the record at the offset into a checksum that is never 0.
+     */
+    private int checksum(int offset) {
+        long hash = 0x9E3779B97F4A7C15L;
+        hash = mix(hash, buffer.getLong(offset + RECORD_SEQUENCE));
+        hash = mix(hash, buffer.getLong(offset + RECORD_TIMESTAMP));
+        hash = mix(hash, buffer.getLong(offset + RECORD_LATENCY));
+        hash = mix(hash, buffer.getLong(offset + RECORD_MESSAGE_HASH));
+        int checksum = (int) (hash ^ (hash >>> 32));
+        return checksum == 0 ? 1 : checksum;
+    }
+
+    private static long mix(long hash, long value) {
+        long mixed = (hash ^ value) * 0xFF51AFD7ED558CCDL;
+        return mixed ^ (mixed >>> 33);
+    }
+}
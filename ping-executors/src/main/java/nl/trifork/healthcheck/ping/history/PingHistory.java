@@ -0,0 +1,198 @@
+package nl.trifork.healthcheck.ping.history;
+
+import nl.trifork.healthcheck.api.SystemStatus;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * <p>History of pings that is rolled up in time buckets. The history has one or more {@link Resolution}s, each with a
+ * fixed number of buckets of a fixed duration. A bucket is reused when its time has passed, so the memory used does
+ * not grow no matter how long the application runs and how often the pings are executed.</p>
+ * <p>The default resolutions keep 60 buckets of 1 second, 60 buckets of 5 seconds and 60 buckets of 1 minute. That
+ * covers the last minute, the last 5 minutes and the last hour. A rollup for a window uses the finest resolution
+ * that covers the window. The bucket of the current moment is included, so the window is accurate up to the
+ * duration of one bucket.</p>
+ */
+public class PingHistory {
+    public static final long ONE_MINUTE = 60 * 1000L;
+    public static final long FIVE_MINUTES = 5 * ONE_MINUTE;
+    public static final long ONE_HOUR = 60 * ONE_MINUTE;
+
+    private final Resolution[] resolutions;
+
+    /**
+     * Creates a history covering the last minute, the last 5 minutes and the last hour.
+     */
+    public PingHistory() {
+        this(new Resolution(1000, 60), new Resolution(5000, 60), new Resolution(ONE_MINUTE, 60));
+    }
+
+    /**
+     * Creates a history with the provided resolutions.
+     *
+     * @param resolutions Resolutions to keep, at least one
+     */
+    public PingHistory(Resolution... resolutions) {
+        if (resolutions.length == 0) {
+            throw new IllegalArgumentException("At least one resolution is required");
+        }
+        this.resolutions = resolutions.clone();
+        Arrays.sort(this.resolutions, new Comparator<Resolution>() {
+            @Override
+            public int compare(Resolution first, Resolution second) {
+                long difference = first.getSpanMillis() - second.getSpanMillis();
+                return difference < 0 ? -1 : (difference == 0 ? 0 : 1);
+            }
+        });
+    }
+
+    /**
+     * Records a ping in all resolutions.
+     *
+     * @param timestampMillis moment the ping finished in milliseconds since the epoch
+     * @param status          SystemStatus of the ping
+     * @param latencyNanos    time the ping took in nanoseconds
+     * @param message         message of the ping
+     */
+    public void record(long timestampMillis, SystemStatus status, long latencyNanos, String message) {
+        for (Resolution resolution : resolutions) {
+            resolution.record(timestampMillis, status, latencyNanos, message);
+        }
+    }
+
+    /**
+     * Returns the rollup of the pings in the window that ends now. The finest resolution that covers the window is
+     * used, a window larger than the largest resolution is limited to that resolution.
+     *
+     * @param windowMillis length of the window in milliseconds
+     * @param nowMillis    end of the window in milliseconds since the epoch
+     * @return PingRollup of the window
+     */
+    public PingRollup getRollup(long windowMillis, long nowMillis) {
+        Resolution resolution = resolutions[resolutions.length - 1];
+        for (Resolution candidate : resolutions) {
+            if (candidate.getSpanMillis() >= windowMillis) {
+                resolution = candidate;
+                break;
+            }
+        }
+        return resolution.rollup(Math.min(windowMillis, resolution.getSpanMillis()), nowMillis);
+    }
+
+    /**
+     * A number of buckets of the same duration.
+     */
+    public static class Resolution {
+        private final long bucketMillis;
+        private final Bucket[] buckets;
+
+        /**
+         * @param bucketMillis    duration of one bucket in milliseconds
+         * @param numberOfBuckets number of buckets to keep
+         */
+        public Resolution(long bucketMillis, int numberOfBuckets) {
+            if (bucketMillis < 1 || numberOfBuckets < 1) {
+                throw new IllegalArgumentException("A resolution needs at least one bucket of at least 1 ms");
+            }
+            this.bucketMillis = bucketMillis;
+            this.buckets = new Bucket[numberOfBuckets];
+            for (int i = 0; i < numberOfBuckets; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        public long getSpanMillis() {
+            return bucketMillis * buckets.length;
+        }
+
+        void record(long timestampMillis, SystemStatus status, long latencyNanos, String message) {
+            long epoch = timestampMillis / bucketMillis;
+            buckets[(int) (epoch % buckets.length)].record(epoch, timestampMillis, status, latencyNanos, message);
+        }
+
+        PingRollup rollup(long windowMillis, long nowMillis) {
+            long lastEpoch = nowMillis / bucketMillis;
+            long numberOfEpochs = Math.max(1, Math.min(buckets.length, (windowMillis + bucketMillis - 1) / bucketMillis));
+            Bucket total = new Bucket();
+            for (long epoch = lastEpoch - numberOfEpochs + 1; epoch <= lastEpoch; epoch++) {
+                buckets[(int) (epoch % buckets.length)].addTo(epoch, total);
+            }
+            return new PingRollup(windowMillis, total.statusCounts, total.minLatencyNanos, total.totalLatencyNanos,
+                    total.maxLatencyNanos, total.lastMessage, total.lastProblemMessage);
+        }
+    }
+
+    /**
+     * The counters of one period, the epoch is the number of the period since the start of the epoch. A bucket is
+     * reset when a ping for a newer period arrives.
+     */
+    private static class Bucket {
+        private long epoch = -1;
+        private final int[] statusCounts = new int[SystemStatus.values().length];
+        private long minLatencyNanos = Long.MAX_VALUE;
+        private long totalLatencyNanos;
+        private long maxLatencyNanos;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private String lastMessage;
+        private long lastProblemTimestamp = Long.MIN_VALUE;
+        private String lastProblemMessage;
+
+        synchronized void record(long pingEpoch, long timestampMillis, SystemStatus status, long latencyNanos,
+                                 String message) {
+            if (pingEpoch < epoch) {
+                return;
+            }
+            if (pingEpoch > epoch) {
+                reset(pingEpoch);
+            }
+            statusCounts[status.ordinal()]++;
+            minLatencyNanos = Math.min(minLatencyNanos, latencyNanos);
+            totalLatencyNanos += latencyNanos;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+            if (timestampMillis >= lastTimestamp) {
+                lastTimestamp = timestampMillis;
+                lastMessage = message;
+            }
+            if (status != SystemStatus.OK && timestampMillis >= lastProblemTimestamp) {
+                lastProblemTimestamp = timestampMillis;
+                lastProblemMessage = message;
+            }
+        }
+
+        /**
+         * Adds the counters to the total if this bucket contains the pings of the requested epoch.
+         */
+        synchronized void addTo(long requestedEpoch, Bucket total) {
+            if (epoch != requestedEpoch) {
+                return;
+            }
+            for (int i = 0; i < statusCounts.length; i++) {
+                total.statusCounts[i] += statusCounts[i];
+            }
+            total.minLatencyNanos = Math.min(total.minLatencyNanos, minLatencyNanos);
+            total.totalLatencyNanos += totalLatencyNanos;
+            total.maxLatencyNanos = Math.max(total.maxLatencyNanos, maxLatencyNanos);
+            if (lastMessage != null && lastTimestamp >= total.lastTimestamp) {
+                total.lastTimestamp = lastTimestamp;
+                total.lastMessage = lastMessage;
+            }
+            if (lastProblemMessage != null && lastProblemTimestamp >= total.lastProblemTimestamp) {
+                total.lastProblemTimestamp = lastProblemTimestamp;
+                total.lastProblemMessage = lastProblemMessage;
+            }
+        }
+
+        private void reset(long newEpoch) {
+            epoch = newEpoch;
+            Arrays.fill(statusCounts, 0);
+            minLatencyNanos = Long.MAX_VALUE;
+            totalLatencyNanos = 0;
+            maxLatencyNanos = 0;
+            lastTimestamp = Long.MIN_VALUE;
+            lastMessage = null;
+            lastProblemTimestamp = Long.MIN_VALUE;
+            lastProblemMessage = null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package nl.trifork.healthcheck.ping.history;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.SystemStatus;
+
+/**
+ * Compact record of one executed ping as kept by a {@link PingHistoryStore}. The message itself is not stored, only
+ * its hash code, which is enough to recognise the same message again.
+ */
+public class PingHistoryRecord {
+    private final long timestamp;
+    private final PingLevel pingLevel;
+    private final SystemStatus systemStatus;
+    private final long latencyNanos;
+    private final int messageHash;
+
+    public PingHistoryRecord(long timestamp, PingLevel pingLevel, SystemStatus systemStatus, long latencyNanos,
+                             int messageHash) {
+        this.timestamp = timestamp;
+        this.pingLevel = pingLevel;
+        this.systemStatus = systemStatus;
+        this.latencyNanos = latencyNanos;
+        this.messageHash = messageHash;
+    }
+
+    /**
+     * @return the moment the ping finished in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public PingLevel getPingLevel() {
+        return pingLevel;
+    }
+
+    public SystemStatus getSystemStatus() {
+        return systemStatus;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public int getMessageHash() {
+        return messageHash;
+    }
+}
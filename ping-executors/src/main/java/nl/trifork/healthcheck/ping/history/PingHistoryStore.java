@@ -0,0 +1,29 @@
+package nl.trifork.healthcheck.ping.history;
+
+import java.util.List;
+
+/**
+ * Storage for the history of pings that outlives the application, so the history can be restored after a restart.
+ */
+public interface PingHistoryStore {
+
+    /**
+     * Appends the record to the store. When the store is full, the oldest record is replaced.
+     *
+     * @param record PingHistoryRecord to append
+     */
+    void append(PingHistoryRecord record);
+
+    /**
+     * Returns the most recent records in the store.
+     *
+     * @param maxRecords maximum number of records to return
+     * @return List with the records, the oldest record first
+     */
+    List<PingHistoryRecord> load(int maxRecords);
+
+    /**
+     * Closes the store, records that are appended afterwards are ignored.
+     */
+    void close();
+}
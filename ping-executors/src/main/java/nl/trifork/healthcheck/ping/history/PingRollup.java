@@ -0,0 +1,86 @@
+package nl.trifork.healthcheck.ping.history;
+
+import nl.trifork.healthcheck.api.SystemStatus;
+
+/**
+ * Summary of the pings that were recorded in a time window: the number of pings per {@link SystemStatus}, the
+ * minimum, average and maximum latency and the last messages.
+ */
+public class PingRollup {
+    private final long windowMillis;
+    private final int[] statusCounts;
+    private final int totalCount;
+    private final long minLatencyNanos;
+    private final long avgLatencyNanos;
+    private final long maxLatencyNanos;
+    private final String lastMessage;
+    private final String lastProblemMessage;
+
+    PingRollup(long windowMillis, int[] statusCounts, long minLatencyNanos, long totalLatencyNanos,
+               long maxLatencyNanos, String lastMessage, String lastProblemMessage) {
+        this.windowMillis = windowMillis;
+        this.statusCounts = statusCounts;
+        int count = 0;
+        for (int statusCount : statusCounts) {
+            count += statusCount;
+        }
+        this.totalCount = count;
+        this.minLatencyNanos = count == 0 ? 0 : minLatencyNanos;
+        this.avgLatencyNanos = count == 0 ? 0 : totalLatencyNanos / count;
+        this.maxLatencyNanos = maxLatencyNanos;
+        this.lastMessage = lastMessage;
+        this.lastProblemMessage = lastProblemMessage;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public int getCount(SystemStatus status) {
+        return statusCounts[status.ordinal()];
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return the number of pings with another status than OK
+     */
+    public int getProblemCount() {
+        return totalCount - getCount(SystemStatus.OK);
+    }
+
+    /**
+     * @return the percentage of pings with another status than OK, 0 if there were no pings
+     */
+    public int getProblemPercentage() {
+        return totalCount == 0 ? 0 : (getProblemCount() * 100) / totalCount;
+    }
+
+    public long getMinLatencyNanos() {
+        return minLatencyNanos;
+    }
+
+    public long getAvgLatencyNanos() {
+        return avgLatencyNanos;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos;
+    }
+
+    /**
+     * @return the message of the last ping in the window or null if there were no pings
+     */
+    public String getLastMessage() {
+        return lastMessage;
+    }
+
+    /**
+     * @return the message of the last ping with another status than OK or null if there was no such ping
+     */
+    public String getLastProblemMessage() {
+        return lastProblemMessage;
+    }
+}
@@ -0,0 +1,114 @@
+package nl.trifork.healthcheck.ping.history;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.PingExecutorAdapter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>This wrapper for {@link PingExecutor}s records every result in a {@link PingHistory} and reports a degraded system
+ * based on a time window instead of a number of results. When more than the configured percentage of the pings in
+ * the window did not return OK, a successful ping returns a result with status {@link SystemStatus#WARNING}. Results
+ * with another status than OK are always returned as they are.</p>
+ * <p>The THOROUGH level adds the rollups of the last minute, the last 5 minutes and the last hour to the result, like
+ * <em>history.5m.count</em>, <em>history.5m.problems</em>, <em>history.5m.avg_latency_ms</em> and
+ * <em>history.5m.max_latency_ms</em>.</p>
+ */
+public class TimeWindowPingExecutorWrapper extends PingExecutorAdapter implements PingExecutor {
+    private static final long[] REPORTED_WINDOWS = {PingHistory.ONE_MINUTE, PingHistory.FIVE_MINUTES, PingHistory.ONE_HOUR};
+    private static final String[] REPORTED_WINDOW_NAMES = {"1m", "5m", "1h"};
+
+    private final PingExecutor delegate;
+    private final PingHistory pingHistory;
+    private final long windowMillis;
+    private final int maxProblemPercentage;
+
+    /**
+     * Creates the wrapper with the default resolutions of the {@link PingHistory}.
+     *
+     * @param delegate             PingExecutor to record the results of
+     * @param windowMillis         window in milliseconds to determine the problem percentage for, like 5 minutes
+     * @param maxProblemPercentage percentage of pings that can fail within the window before a warning is returned
+     */
+    public TimeWindowPingExecutorWrapper(PingExecutor delegate, long windowMillis, int maxProblemPercentage) {
+        this(delegate, new PingHistory(), windowMillis, maxProblemPercentage);
+    }
+
+    public TimeWindowPingExecutorWrapper(PingExecutor delegate, PingHistory pingHistory, long windowMillis,
+                                         int maxProblemPercentage) {
+        this.delegate = delegate;
+        this.pingHistory = pingHistory;
+        this.windowMillis = windowMillis;
+        this.maxProblemPercentage = maxProblemPercentage;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    public PingHistory getPingHistory() {
+        return pingHistory;
+    }
+
+    @Override
+    public PingResult execute(PingLevel pingLevel) {
+        long startNanos = System.nanoTime();
+        PingResult result = delegate.execute(pingLevel);
+        if (result == null) {
+            return null;
+        }
+        long now = currentTimeMillis();
+        pingHistory.record(now, result.getSystemStatus(), System.nanoTime() - startNanos, result.getMessage());
+
+        PingResult outcome = result;
+        if (result.getSystemStatus() == SystemStatus.OK) {
+            PingRollup rollup = pingHistory.getRollup(windowMillis, now);
+            if (rollup.getProblemPercentage() > maxProblemPercentage) {
+                String message = "There was an error percentage of " + rollup.getProblemPercentage() + " in the last "
+                        + TimeUnit.MILLISECONDS.toSeconds(windowMillis) + " seconds: " + rollup.getLastProblemMessage();
+                outcome = warning(result, message);
+            }
+        }
+
+        if (pingLevel != PingLevel.THOROUGH) {
+            return outcome;
+        }
+        Map<String, String> extraValues = new LinkedHashMap<String, String>();
+        for (int i = 0; i < REPORTED_WINDOWS.length; i++) {
+            PingRollup rollup = pingHistory.getRollup(REPORTED_WINDOWS[i], now);
+            String prefix = "history." + REPORTED_WINDOW_NAMES[i] + ".";
+            extraValues.put(prefix + "count", String.valueOf(rollup.getTotalCount()));
+            extraValues.put(prefix + "problems", String.valueOf(rollup.getProblemCount()));
+            extraValues.put(prefix + "avg_latency_ms", String.valueOf(TimeUnit.NANOSECONDS.toMillis(rollup.getAvgLatencyNanos())));
+            extraValues.put(prefix + "max_latency_ms", String.valueOf(TimeUnit.NANOSECONDS.toMillis(rollup.getMaxLatencyNanos())));
+        }
+        return addThoroughExtraValues(outcome, extraValues);
+    }
+
+    /**
+     * Returns a warning for the successful result, the extra values of a thorough result are kept.
+     */
+    private PingResult warning(PingResult result, String message) {
+        if (result instanceof ThoroughPingResult) {
+            return new ThoroughPingResult(getName(), SystemStatus.WARNING, message,
+                    ((ThoroughPingResult) result).getThoroughExtraValues());
+        }
+        return new PingResult(getName(), SystemStatus.WARNING, message);
+    }
+
+    /**
+     * Returns the current time, can be overridden in tests.
+     *
+     * @return current time in milliseconds since the epoch
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,92 @@
+package nl.trifork.healthcheck.ping.http;
+
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * <p>One http url that is checked by the {@link HttpEndpointPingExecutor}, together with the status code that is
+ * expected and the number of milliseconds the complete response may take. Only plain http urls are supported.</p>
+ */
+public class HttpEndpoint {
+    private final String name;
+    private final String url;
+    private final String host;
+    private final int port;
+    private final int expectedStatus;
+    private final long timeoutMillis;
+    private final byte[] request;
+
+    public HttpEndpoint(String name, String url, int expectedStatus, long timeoutMillis) {
+        URL parsed;
+        try {
+            parsed = new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException("The url " + url + " of endpoint " + name + " is not valid", e);
+        }
+        if (!"http".equalsIgnoreCase(parsed.getProtocol())) {
+            throw new IllegalArgumentException("Only http urls are supported, endpoint " + name + " uses " + url);
+        }
+        if (timeoutMillis < 1) {
+            throw new IllegalArgumentException("The timeout of endpoint " + name + " must be at least 1 millisecond");
+        }
+        this.name = name;
+        this.url = url;
+        this.host = parsed.getHost();
+        this.port = parsed.getPort() == -1 ? parsed.getDefaultPort() : parsed.getPort();
+        this.expectedStatus = expectedStatus;
+        this.timeoutMillis = timeoutMillis;
+
+        String path = parsed.getFile().length() == 0 ? "/" : parsed.getFile();
+        String hostHeader = parsed.getPort() == -1 ? host : host + ":" + port;
+        String requestText = "GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + hostHeader + "\r\n"
+                + "User-Agent: trifork-healthcheck\r\n"
+                + "Accept: */*\r\n"
+                + "Connection: keep-alive\r\n"
+                + "\r\n";
+        try {
+            this.request = requestText.getBytes("ISO-8859-1");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("ISO-8859-1 is always supported", e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getExpectedStatus() {
+        return expectedStatus;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * @return the bytes of the GET request, the array is shared and must not be changed
+     */
+    byte[] getRequest() {
+        return request;
+    }
+
+    /**
+     * @return the key of the connections that can be used for this endpoint
+     */
+    String getConnectionKey() {
+        return host + ":" + port;
+    }
+}
@@ -0,0 +1,351 @@
+package nl.trifork.healthcheck.ping.http;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.AddressResolver;
+import nl.trifork.healthcheck.ping.PingExecutorAdapter;
+import nl.trifork.healthcheck.ping.SocketChannels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Implementation for the {@link PingExecutor} that checks a list of http endpoints at the same time. Every level
+ * sends a GET request to all endpoints and compares the status code of the response with the expected status code.
+ * The THOROUGH level adds the status code, the latency and the outcome of every endpoint to the result.</p>
+ * <p>The requests are done with non-blocking sockets by the thread that executes the ping, one {@link Selector}
+ * handles all endpoints. A ping therefore takes about as long as the slowest endpoint, and no extra threads are
+ * needed. Connections are kept open between pings (HTTP/1.1 keep-alive) and reused for the next ping to the same host
+ * and port. A reused connection that turns out to be closed by the server is replaced by a new connection once.</p>
+ * <p>The address of a host is looked up once and kept for the resolve interval, see {@link AddressResolver}. The time
+ * of a lookup counts against the timeout of the endpoint.</p>
+ * <p>Only plain http is supported, the body of the response is read but not kept. Pings are executed one at a time,
+ * call {@link #close()} to close the connections when the executor is no longer used.</p>
+ * <p>A special builder is available {@link HttpEndpointPingExecutorBuilder} to make creating the executor easier.</p>
+ */
+public class HttpEndpointPingExecutor extends PingExecutorAdapter implements PingExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(HttpEndpointPingExecutor.class);
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final String name;
+    private final List<HttpEndpoint> endpoints;
+    private final AddressResolver addressResolver;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final Map<String, LinkedList<SocketChannel>> idleConnections = new HashMap<String, LinkedList<SocketChannel>>();
+    private Selector selector;
+
+    public HttpEndpointPingExecutor(String name, List<HttpEndpoint> endpoints) {
+        this(name, endpoints, new AddressResolver());
+    }
+
+    public HttpEndpointPingExecutor(String name, List<HttpEndpoint> endpoints, AddressResolver addressResolver) {
+        if (endpoints == null || endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one endpoint is required");
+        }
+        this.name = name;
+        this.endpoints = new ArrayList<HttpEndpoint>(endpoints);
+        this.addressResolver = addressResolver;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized PingResult execute(PingLevel pingLevel) {
+        List<Exchange> exchanges = new ArrayList<Exchange>(endpoints.size());
+        try {
+            if (selector == null) {
+                selector = Selector.open();
+            }
+            for (HttpEndpoint endpoint : endpoints) {
+                Exchange exchange = new Exchange(endpoint);
+                exchanges.add(exchange);
+                start(exchange);
+            }
+            awaitExchanges(exchanges);
+        } catch (IOException e) {
+            logger.error("Problem with the selector of the http ping.", e);
+            closeAll(exchanges);
+            return new PingResult(name, SystemStatus.ERROR, "FAILURE - Could not check the http endpoints: "
+                    + e.getMessage());
+        }
+        return createResult(pingLevel, exchanges);
+    }
+
+    /**
+     * Closes the connections that are kept for the next ping.
+     */
+    public synchronized void close() {
+        for (LinkedList<SocketChannel> channels : idleConnections.values()) {
+            for (SocketChannel channel : channels) {
+                SocketChannels.closeQuietly(channel);
+            }
+        }
+        idleConnections.clear();
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.debug("Problem while closing the selector of the http ping.", e);
+            }
+            selector = null;
+        }
+    }
+
+    private void awaitExchanges(List<Exchange> exchanges) throws IOException {
+        int pending = SocketChannels.countPending(exchanges);
+        while (pending > 0) {
+            long now = System.nanoTime();
+            long nextDeadline = Long.MAX_VALUE;
+            for (Exchange exchange : exchanges) {
+                if (!exchange.done) {
+                    if (now - exchange.deadlineNanos >= 0) {
+                        exchange.fail("no response within " + exchange.endpoint.getTimeoutMillis() + " ms");
+                    } else {
+                        nextDeadline = Math.min(nextDeadline, exchange.deadlineNanos - now);
+                    }
+                }
+            }
+            pending = SocketChannels.countPending(exchanges);
+            if (pending == 0) {
+                break;
+            }
+
+            selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextDeadline)));
+            Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+            while (selectedKeys.hasNext()) {
+                SelectionKey key = selectedKeys.next();
+                selectedKeys.remove();
+                Exchange exchange = (Exchange) key.attachment();
+                if (exchange != null && !exchange.done && key.isValid()) {
+                    handle(exchange, key);
+                }
+            }
+            pending = SocketChannels.countPending(exchanges);
+        }
+    }
+
+    private void start(Exchange exchange) {
+        SocketChannel idle = takeIdleConnection(exchange.endpoint.getConnectionKey());
+        if (idle != null) {
+            SelectionKey key = idle.keyFor(selector);
+            if (key != null && key.isValid()) {
+                exchange.channel = idle;
+                exchange.reused = true;
+                key.attach(exchange);
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            SocketChannels.closeQuietly(idle);
+        }
+        connect(exchange);
+    }
+
+    private void connect(Exchange exchange) {
+        exchange.reused = false;
+        try {
+            SocketChannel channel = SocketChannel.open();
+            exchange.channel = channel;
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            HttpEndpoint endpoint = exchange.endpoint;
+            InetSocketAddress address = addressResolver.resolve(endpoint.getHost(), endpoint.getPort());
+            if (address.isUnresolved()) {
+                exchange.fail("unknown host " + endpoint.getHost());
+                return;
+            }
+            if (System.nanoTime() - exchange.deadlineNanos >= 0) {
+                exchange.fail("no response within " + endpoint.getTimeoutMillis() + " ms");
+                return;
+            }
+            boolean connected = channel.connect(address);
+            channel.register(selector, connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, exchange);
+        } catch (IOException e) {
+            exchange.fail("could not connect: " + e.getMessage());
+        }
+    }
+
+    private void handle(Exchange exchange, SelectionKey key) {
+        SocketChannel channel = exchange.channel;
+        try {
+            if (key.isConnectable()) {
+                if (channel.finishConnect()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+            } else if (key.isWritable()) {
+                channel.write(exchange.request);
+                if (!exchange.request.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.isReadable()) {
+                readBuffer.clear();
+                int count = channel.read(readBuffer);
+                if (count < 0) {
+                    if (retryStaleConnection(exchange)) {
+                        return;
+                    }
+                    exchange.parser.endOfStream();
+                } else {
+                    readBuffer.flip();
+                    exchange.parser.append(readBuffer);
+                }
+                if (exchange.parser.isComplete()) {
+                    exchange.complete();
+                    release(exchange, key);
+                }
+            }
+        } catch (IOException e) {
+            if (!retryStaleConnection(exchange)) {
+                exchange.fail(SocketChannels.describe(e));
+            }
+        }
+    }
+
+    /**
+     * A kept connection can be closed by the server while it was idle, that shows when it is used again. Such an
+     * exchange is started again on a new connection.
+     */
+    private boolean retryStaleConnection(Exchange exchange) {
+        if (!exchange.reused || exchange.parser.hasReceivedData()) {
+            return false;
+        }
+        logger.debug("Kept connection to {} was closed, connecting again", exchange.endpoint.getConnectionKey());
+        SocketChannels.closeQuietly(exchange.channel);
+        exchange.restart();
+        connect(exchange);
+        return true;
+    }
+
+    private void release(Exchange exchange, SelectionKey key) {
+        if (exchange.parser.isKeepAlive()) {
+            key.attach(null);
+            key.interestOps(0);
+            String connectionKey = exchange.endpoint.getConnectionKey();
+            LinkedList<SocketChannel> channels = idleConnections.get(connectionKey);
+            if (channels == null) {
+                channels = new LinkedList<SocketChannel>();
+                idleConnections.put(connectionKey, channels);
+            }
+            channels.add(exchange.channel);
+        } else {
+            SocketChannels.closeQuietly(exchange.channel);
+        }
+        exchange.channel = null;
+    }
+
+    private SocketChannel takeIdleConnection(String connectionKey) {
+        LinkedList<SocketChannel> channels = idleConnections.get(connectionKey);
+        while (channels != null && !channels.isEmpty()) {
+            SocketChannel channel = channels.removeFirst();
+            if (channel.isOpen()) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    private PingResult createResult(PingLevel pingLevel, List<Exchange> exchanges) {
+        StringBuilder failures = new StringBuilder();
+        int numberOfFailures = 0;
+        Map<String, String> extraValues = new LinkedHashMap<String, String>();
+        for (Exchange exchange : exchanges) {
+            String prefix = exchange.endpoint.getName() + ".";
+            extraValues.put(prefix + "status", String.valueOf(exchange.parser.getStatusCode()));
+            extraValues.put(prefix + "latency_ms", String.valueOf(TimeUnit.NANOSECONDS.toMillis(exchange.latencyNanos)));
+            extraValues.put(prefix + "result", exchange.problem == null ? "OK" : exchange.problem);
+            if (exchange.problem != null) {
+                failures.append(numberOfFailures++ == 0 ? "" : ", ").append(exchange.endpoint.getName())
+                        .append(" (").append(exchange.problem).append(")");
+            }
+        }
+
+        SystemStatus status = SystemStatus.OK;
+        String message = "OK - All " + exchanges.size() + " http endpoints responded as expected.";
+        if (numberOfFailures > 0) {
+            status = SystemStatus.ERROR;
+            message = "FAILURE - " + numberOfFailures + " of " + exchanges.size() + " http endpoints failed: " + failures;
+        }
+        if (pingLevel == PingLevel.THOROUGH) {
+            return new ThoroughPingResult(name, status, message, extraValues);
+        }
+        return new PingResult(name, status, message);
+    }
+
+    private static void closeAll(List<Exchange> exchanges) {
+        for (Exchange exchange : exchanges) {
+            if (exchange.channel != null) {
+                SocketChannels.closeQuietly(exchange.channel);
+            }
+        }
+    }
+
+    /**
+     * The state of the request to one endpoint during a ping.
+     */
+    private static class Exchange implements SocketChannels.Task {
+        private final HttpEndpoint endpoint;
+        private final long startNanos;
+        private final long deadlineNanos;
+        private ByteBuffer request;
+        private HttpResponseParser parser;
+        private SocketChannel channel;
+        private boolean reused;
+        private boolean done = false;
+        private long latencyNanos;
+        private String problem;
+
+        private Exchange(HttpEndpoint endpoint) {
+            this.endpoint = endpoint;
+            this.startNanos = System.nanoTime();
+            this.deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(endpoint.getTimeoutMillis());
+            restart();
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        private void restart() {
+            request = ByteBuffer.wrap(endpoint.getRequest());
+            parser = new HttpResponseParser();
+        }
+
+        private void complete() {
+            done = true;
+            latencyNanos = System.nanoTime() - startNanos;
+            if (parser.getStatusCode() != endpoint.getExpectedStatus()) {
+                problem = "status " + parser.getStatusCode() + ", expected " + endpoint.getExpectedStatus();
+            }
+        }
+
+        private void fail(String reason) {
+            done = true;
+            latencyNanos = System.nanoTime() - startNanos;
+            problem = reason;
+            if (channel != null) {
+                SocketChannels.closeQuietly(channel);
+                channel = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package nl.trifork.healthcheck.ping.http;
+
+import nl.trifork.healthcheck.ping.AddressResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Special builder class to create a {@link HttpEndpointPingExecutor}. Add the endpoints to check, an endpoint
+ * without an expected status or timeout gets the defaults of the builder.</p>
+ * <p>Start the creation by calling the create method. Override values with the setters and call build to actually
+ * construct the object.</p>
+ */
+public class HttpEndpointPingExecutorBuilder {
+    private String name = "Http endpoint ping executor";
+    private int defaultExpectedStatus = 200;
+    private long defaultTimeout = 2000;
+    private long resolveInterval = AddressResolver.DEFAULT_REFRESH_INTERVAL;
+    private List<HttpEndpoint> endpoints = new ArrayList<HttpEndpoint>();
+
+    public static HttpEndpointPingExecutorBuilder create() {
+        return new HttpEndpointPingExecutorBuilder();
+    }
+
+    public HttpEndpointPingExecutor build() {
+        return new HttpEndpointPingExecutor(name, endpoints, new AddressResolver(resolveInterval));
+    }
+
+    public HttpEndpointPingExecutorBuilder setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public HttpEndpointPingExecutorBuilder setDefaultExpectedStatus(int defaultExpectedStatus) {
+        this.defaultExpectedStatus = defaultExpectedStatus;
+        return this;
+    }
+
+    /**
+     * @param defaultTimeout number of milliseconds the response of an endpoint may take
+     * @return this builder
+     */
+    public HttpEndpointPingExecutorBuilder setDefaultTimeout(long defaultTimeout) {
+        this.defaultTimeout = defaultTimeout;
+        return this;
+    }
+
+    /**
+     * @param resolveInterval number of milliseconds the address of a host is used before it is looked up again
+     * @return this builder
+     */
+    public HttpEndpointPingExecutorBuilder setResolveInterval(long resolveInterval) {
+        this.resolveInterval = resolveInterval;
+        return this;
+    }
+
+    public HttpEndpointPingExecutorBuilder addEndpoint(String name, String url) {
+        return addEndpoint(name, url, defaultExpectedStatus, defaultTimeout);
+    }
+
+    public HttpEndpointPingExecutorBuilder addEndpoint(String name, String url, int expectedStatus, long timeout) {
+        endpoints.add(new HttpEndpoint(name, url, expectedStatus, timeout));
+        return this;
+    }
+}
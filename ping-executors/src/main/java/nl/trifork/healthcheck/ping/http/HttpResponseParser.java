@@ -0,0 +1,267 @@
+package nl.trifork.healthcheck.ping.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Parses an HTTP/1.x response that arrives in parts. Only the status line and the headers that determine the end
+ * of the response are kept, the body is skipped. The end of the body is found through the Content-Length header, the
+ * chunked transfer encoding or the closing of the connection. The data that is parsed is removed, so the memory that
+ * is used does not depend on the size of the body.</p>
+ * <p>The response is complete when {@link #isComplete()} returns true. The connection can be used for the next request
+ * when {@link #isKeepAlive()} returns true as well.</p>
+ */
+class HttpResponseParser {
+    private static final int MAX_HEADER_SIZE = 64 * 1024;
+
+    private enum State {
+        HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, TRAILERS, UNTIL_CLOSE, COMPLETE
+    }
+
+    private byte[] data = new byte[2048];
+    private int length = 0;
+    private int position = 0;
+    private State state = State.HEADERS;
+    private long remaining;
+    private int statusCode = -1;
+    private boolean keepAlive;
+    private boolean receivedData = false;
+
+    /**
+     * Adds the bytes that remain in the buffer to the response.
+     *
+     * @param buffer ByteBuffer ready to be read
+     * @throws IOException thrown when the response is not valid
+     */
+    void append(ByteBuffer buffer) throws IOException {
+        int count = buffer.remaining();
+        if (count == 0) {
+            return;
+        }
+        receivedData = true;
+        if (state == State.COMPLETE) {
+            // Data after the response, the connection cannot be trusted for the next request
+            keepAlive = false;
+            return;
+        }
+        ensureCapacity(count);
+        buffer.get(data, length, count);
+        length += count;
+        parse();
+    }
+
+    /**
+     * Signals that the server closed the connection.
+     *
+     * @throws IOException thrown when the response was not complete
+     */
+    void endOfStream() throws IOException {
+        keepAlive = false;
+        if (state == State.UNTIL_CLOSE) {
+            state = State.COMPLETE;
+        } else if (state != State.COMPLETE) {
+            throw new IOException("The connection was closed before the response was complete");
+        }
+    }
+
+    boolean isComplete() {
+        return state == State.COMPLETE;
+    }
+
+    boolean hasReceivedData() {
+        return receivedData;
+    }
+
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @return the status code, -1 if the status line was not received yet
+     */
+    int getStatusCode() {
+        return statusCode;
+    }
+
+    private void parse() throws IOException {
+        boolean progress = true;
+        while (progress && state != State.COMPLETE) {
+            switch (state) {
+                case HEADERS:
+                    progress = parseHeaders();
+                    break;
+                case BODY:
+                case CHUNK_DATA:
+                    progress = skipBody();
+                    break;
+                case CHUNK_SIZE:
+                    progress = parseChunkSize();
+                    break;
+                case TRAILERS:
+                    progress = parseTrailer();
+                    break;
+                case UNTIL_CLOSE:
+                    position = length;
+                    progress = false;
+                    break;
+                default:
+                    progress = false;
+            }
+        }
+        if (state == State.COMPLETE && position < length) {
+            keepAlive = false;
+        }
+        compact();
+    }
+
+    private boolean parseHeaders() throws IOException {
+        int end = indexOf("\r\n\r\n", position);
+        if (end < 0) {
+            if (length > MAX_HEADER_SIZE) {
+                throw new IOException("The headers of the response are larger than " + MAX_HEADER_SIZE + " bytes");
+            }
+            return false;
+        }
+        String[] lines = new String(data, position, end - position, "ISO-8859-1").split("\r\n");
+        position = end + 4;
+
+        String[] statusLine = lines[0].split(" ", 3);
+        if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/1.")) {
+            throw new IOException("Not a valid HTTP response: " + lines[0]);
+        }
+        try {
+            statusCode = Integer.parseInt(statusLine[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a valid HTTP status code: " + lines[0]);
+        }
+        boolean http11 = statusLine[0].equals("HTTP/1.1");
+
+        long contentLength = -1;
+        boolean chunked = false;
+        String connection = null;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = lines[i].substring(0, colon).trim();
+            String value = lines[i].substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Not a valid Content-Length: " + value);
+                }
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                chunked = value.toLowerCase().endsWith("chunked");
+            } else if (name.equalsIgnoreCase("Connection")) {
+                connection = value;
+            }
+        }
+        keepAlive = http11 ? !"close".equalsIgnoreCase(connection) : "keep-alive".equalsIgnoreCase(connection);
+
+        if (statusCode / 100 == 1 && statusCode != 101) {
+            // Interim response, the real response follows
+            statusCode = -1;
+            return true;
+        }
+        if (statusCode == 204 || statusCode == 304) {
+            state = State.COMPLETE;
+        } else if (chunked) {
+            state = State.CHUNK_SIZE;
+        } else if (contentLength >= 0) {
+            remaining = contentLength;
+            state = remaining == 0 ? State.COMPLETE : State.BODY;
+        } else {
+            keepAlive = false;
+            state = State.UNTIL_CLOSE;
+        }
+        return true;
+    }
+
+    private boolean skipBody() {
+        int available = length - position;
+        if (available == 0) {
+            return false;
+        }
+        int skip = (int) Math.min(available, remaining);
+        position += skip;
+        remaining -= skip;
+        if (remaining == 0) {
+            state = state == State.BODY ? State.COMPLETE : State.CHUNK_SIZE;
+        }
+        return true;
+    }
+
+    private boolean parseChunkSize() throws IOException {
+        int end = indexOf("\r\n", position);
+        if (end < 0) {
+            if (length - position > 1024) {
+                throw new IOException("The chunk size line is too long");
+            }
+            return false;
+        }
+        String line = new String(data, position, end - position, "ISO-8859-1");
+        int extension = line.indexOf(';');
+        if (extension >= 0) {
+            line = line.substring(0, extension);
+        }
+        long size;
+        try {
+            size = Long.parseLong(line.trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Not a valid chunk size: " + line);
+        }
+        position = end + 2;
+        if (size == 0) {
+            state = State.TRAILERS;
+        } else {
+            // The data of the chunk is followed by CRLF
+            remaining = size + 2;
+            state = State.CHUNK_DATA;
+        }
+        return true;
+    }
+
+    private boolean parseTrailer() {
+        int end = indexOf("\r\n", position);
+        if (end < 0) {
+            return false;
+        }
+        if (end == position) {
+            state = State.COMPLETE;
+        }
+        position = end + 2;
+        return true;
+    }
+
+    private int indexOf(String pattern, int from) {
+        int last = length - pattern.length();
+        for (int i = from; i <= last; i++) {
+            boolean match = true;
+            for (int j = 0; j < pattern.length() && match; j++) {
+                match = data[i + j] == pattern.charAt(j);
+            }
+            if (match) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void ensureCapacity(int count) {
+        if (length + count > data.length) {
+            byte[] larger = new byte[Math.max(data.length * 2, length + count)];
+            System.arraycopy(data, 0, larger, 0, length);
+            data = larger;
+        }
+    }
+
+    private void compact() {
+        if (position > 0) {
+            System.arraycopy(data, position, data, 0, length - position);
+            length -= position;
+            position = 0;
+        }
+    }
+}
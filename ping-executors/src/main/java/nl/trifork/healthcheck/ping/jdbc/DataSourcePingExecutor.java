@@ -0,0 +1,209 @@
+package nl.trifork.healthcheck.ping.jdbc;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.PingExecutorAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Implementation for the {@link PingExecutor} that checks a database through a {@link DataSource}, usually the
+ * connection pool of the application. Every ping borrows a connection from the DataSource and returns it.</p>
+ * <ul>
+ * <li>Basic - Checks the connection with {@link Connection#isValid(int)}.</li>
+ * <li>Extended - Executes the validation query.</li>
+ * <li>Thorough - The same as the extended check plus it adds the latencies, the database product and the usage of the
+ * connection pool to the result.</li>
+ * </ul>
+ * <p>A ping that succeeds but takes longer than the warning latency returns a WARNING. The validation timeout is used
+ * for isValid and as query timeout of the validation query.</p>
+ * <p>The DataSource api has no methods for the usage of the pool. The executor looks for the getters of the common
+ * pools: getNumActive, getNumIdle and getMaxActive or getMaxTotal (commons-dbcp), getActive, getIdle and getMaxActive
+ * (tomcat-jdbc) and getNumBusyConnections, getNumIdleConnections and getMaxPoolSize (c3p0). If the pool is in use
+ * above the pool warning percentage, the THOROUGH level returns a WARNING.</p>
+ * <p>A special builder is available {@link DataSourcePingExecutorBuilder} to make creating the executor easier.</p>
+ */
+public class DataSourcePingExecutor extends PingExecutorAdapter implements PingExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(DataSourcePingExecutor.class);
+
+    private final String name;
+    private final DataSource dataSource;
+    private final String validationQuery;
+    private final int validationTimeoutSeconds;
+    private final long warningLatencyMillis;
+    private final int poolWarningPercentage;
+
+    private final Method activeGetter;
+    private final Method idleGetter;
+    private final Method maxGetter;
+
+    public DataSourcePingExecutor(String name, DataSource dataSource, String validationQuery,
+                                  int validationTimeoutSeconds, long warningLatencyMillis, int poolWarningPercentage) {
+        if (dataSource == null) {
+            throw new IllegalArgumentException("A DataSource is required");
+        }
+        this.name = name;
+        this.dataSource = dataSource;
+        this.validationQuery = validationQuery;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.warningLatencyMillis = warningLatencyMillis;
+        this.poolWarningPercentage = poolWarningPercentage;
+
+        this.activeGetter = findGetter("getNumActive", "getActive", "getNumBusyConnections");
+        this.idleGetter = findGetter("getNumIdle", "getIdle", "getNumIdleConnections");
+        this.maxGetter = findGetter("getMaxActive", "getMaxTotal", "getMaxPoolSize");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public PingResult execute(PingLevel pingLevel) {
+        Map<String, String> extraValues = new LinkedHashMap<String, String>();
+        SystemStatus status = SystemStatus.OK;
+        String message = "OK - Database online and accessible.";
+        if (pingLevel == PingLevel.THOROUGH) {
+            int usage = addPoolValues(extraValues);
+            if (usage > poolWarningPercentage) {
+                status = SystemStatus.WARNING;
+                message = "WARNING - The connection pool is " + usage + "% in use.";
+            }
+        }
+
+        long startNanos = System.nanoTime();
+        long acquiredNanos = startNanos;
+        Connection connection = null;
+        try {
+            connection = dataSource.getConnection();
+            acquiredNanos = System.nanoTime();
+            if (pingLevel == PingLevel.BASIC) {
+                if (!connection.isValid(validationTimeoutSeconds)) {
+                    return new PingResult(name, SystemStatus.ERROR, "FAILURE - The database connection is not valid.");
+                }
+            } else {
+                executeValidationQuery(connection);
+            }
+            if (pingLevel == PingLevel.THOROUGH) {
+                addDatabaseValues(connection, extraValues);
+            }
+        } catch (SQLException e) {
+            logger.error("Problem while executing a database ping.", e);
+            String msg = connection == null ? "FAILURE - Could not obtain a database connection: "
+                    : "FAILURE - Problem while checking the database connection: ";
+            return new PingResult(name, SystemStatus.ERROR, msg + e.getMessage());
+        } finally {
+            close(connection);
+        }
+
+        long endNanos = System.nanoTime();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+        if (warningLatencyMillis > 0 && elapsedMillis > warningLatencyMillis) {
+            status = SystemStatus.WARNING;
+            message = "WARNING - The database responded after " + elapsedMillis + " ms, more than "
+                    + warningLatencyMillis + " ms.";
+        }
+        if (pingLevel != PingLevel.THOROUGH) {
+            return new PingResult(name, status, message);
+        }
+        extraValues.put("database.acquire_ms", String.valueOf(TimeUnit.NANOSECONDS.toMillis(acquiredNanos - startNanos)));
+        extraValues.put("database.query_ms", String.valueOf(TimeUnit.NANOSECONDS.toMillis(endNanos - acquiredNanos)));
+        return new ThoroughPingResult(name, status, message, extraValues);
+    }
+
+    private void executeValidationQuery(Connection connection) throws SQLException {
+        Statement statement = connection.createStatement();
+        try {
+            if (validationTimeoutSeconds > 0) {
+                statement.setQueryTimeout(validationTimeoutSeconds);
+            }
+            statement.execute(validationQuery);
+        } finally {
+            statement.close();
+        }
+    }
+
+    private void addDatabaseValues(Connection connection, Map<String, String> extraValues) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        extraValues.put("database.product", metaData.getDatabaseProductName() + " "
+                + metaData.getDatabaseProductVersion());
+    }
+
+    /**
+     * Adds the values of the pool that are available.
+     *
+     * @return the percentage of the pool in use, -1 if not known
+     */
+    private int addPoolValues(Map<String, String> extraValues) {
+        long active = readPoolValue(activeGetter);
+        long idle = readPoolValue(idleGetter);
+        long max = readPoolValue(maxGetter);
+        if (active >= 0) {
+            extraValues.put("pool.active", String.valueOf(active));
+        }
+        if (idle >= 0) {
+            extraValues.put("pool.idle", String.valueOf(idle));
+        }
+        if (max > 0) {
+            extraValues.put("pool.max", String.valueOf(max));
+        }
+        if (active >= 0 && max > 0) {
+            int usage = (int) (active * 100 / max);
+            extraValues.put("pool.usage_percentage", String.valueOf(usage));
+            return usage;
+        }
+        return -1;
+    }
+
+    private long readPoolValue(Method getter) {
+        if (getter == null) {
+            return -1;
+        }
+        try {
+            return ((Number) getter.invoke(dataSource)).longValue();
+        } catch (Exception e) {
+            logger.debug("Could not read " + getter.getName() + " of the DataSource", e);
+            return -1;
+        }
+    }
+
+    private Method findGetter(String... names) {
+        for (String getterName : names) {
+            try {
+                Method method = dataSource.getClass().getMethod(getterName);
+                Class<?> type = method.getReturnType();
+                if (type == int.class || type == long.class || Number.class.isAssignableFrom(type)) {
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {
+                // try the next name
+            }
+        }
+        return null;
+    }
+
+    private void close(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warn("Problem while returning the connection of the database ping.", e);
+        }
+    }
+}
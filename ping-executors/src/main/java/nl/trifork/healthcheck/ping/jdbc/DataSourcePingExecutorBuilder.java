@@ -0,0 +1,65 @@
+package nl.trifork.healthcheck.ping.jdbc;
+
+import javax.sql.DataSource;
+
+/**
+ * <p>Special builder class to create a {@link DataSourcePingExecutor}. The builder contains a number of default
+ * values. By using the special setter function you can override these defaults. The DataSource has no default.</p>
+ * <p>Start the creation by calling the create method. Override values with the setters and call build to actually
+ * construct the object.</p>
+ */
+public class DataSourcePingExecutorBuilder {
+    private String name = "Database ping executor";
+    private DataSource dataSource;
+    private String validationQuery = "SELECT 1";
+    private int validationTimeout = 5;
+    private long warningLatency = 1000;
+    private int poolWarningPercentage = 90;
+
+    public static DataSourcePingExecutorBuilder create() {
+        return new DataSourcePingExecutorBuilder();
+    }
+
+    public DataSourcePingExecutor build() {
+        return new DataSourcePingExecutor(name, dataSource, validationQuery, validationTimeout, warningLatency,
+                poolWarningPercentage);
+    }
+
+    public DataSourcePingExecutorBuilder setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    public DataSourcePingExecutorBuilder setDataSource(DataSource dataSource) {
+        this.dataSource = dataSource;
+        return this;
+    }
+
+    public DataSourcePingExecutorBuilder setValidationQuery(String validationQuery) {
+        this.validationQuery = validationQuery;
+        return this;
+    }
+
+    /**
+     * @param validationTimeout timeout in seconds for isValid and the validation query, 0 means no timeout
+     * @return this builder
+     */
+    public DataSourcePingExecutorBuilder setValidationTimeout(int validationTimeout) {
+        this.validationTimeout = validationTimeout;
+        return this;
+    }
+
+    /**
+     * @param warningLatency number of milliseconds after which a successful ping returns a WARNING, 0 never warns
+     * @return this builder
+     */
+    public DataSourcePingExecutorBuilder setWarningLatency(long warningLatency) {
+        this.warningLatency = warningLatency;
+        return this;
+    }
+
+    public DataSourcePingExecutorBuilder setPoolWarningPercentage(int poolWarningPercentage) {
+        this.poolWarningPercentage = poolWarningPercentage;
+        return this;
+    }
+}
@@ -0,0 +1,203 @@
+package nl.trifork.healthcheck.ping.jvm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Samples the JVM through the platform MXBeans at a fixed interval and keeps the last {@link JvmMetricsSnapshot}.
+ * Obtaining the snapshot only reads a field, so a ping that reports the metrics never does the sampling itself. The
+ * sampling is done by one daemon thread, started with {@link #start()} and stopped with {@link #stop()}. The first
+ * sample is taken by {@link #start()}.</p>
+ * <p>The snapshot contains:</p>
+ * <pre>
+ * jvm.gc.&lt;collector&gt;.count             number of collections
+ * jvm.gc.&lt;collector&gt;.time_ms           total time of the collections
+ * jvm.memory.heap.used_bytes           also committed_bytes and max_bytes, the same for non_heap
+ * jvm.memory.pool.&lt;pool&gt;.used_bytes    also committed_bytes and max_bytes, per memory pool
+ * jvm.threads.live                     also daemon and peak
+ * jvm.classes.loaded                   also total_loaded and unloaded
+ * jvm.process.cpu_load                 percentage of the available processors used since the previous sample
+ * </pre>
+ * <p>The names of collectors and pools are written in lower case with underscores, like <code>ps_eden_space</code>.
+ * The cpu load is only available on JVMs that provide <code>com.sun.management.OperatingSystemMXBean</code>, and
+ * from the second sample on.</p>
+ */
+public class JvmMetricsCollector {
+    private static final Logger logger = LoggerFactory.getLogger(JvmMetricsCollector.class);
+
+    private final long samplingIntervalMillis;
+    private final Method processCpuTimeMethod;
+    private final OperatingSystemMXBean operatingSystem;
+    private ScheduledExecutorService scheduler;
+
+    private volatile JvmMetricsSnapshot snapshot = new JvmMetricsSnapshot(0, new LinkedHashMap<String, String>());
+    private long previousCpuNanos = -1;
+    private long previousSampleNanos;
+
+    /**
+     * Creates the collector, call {@link #start()} to start sampling.
+     *
+     * @param samplingIntervalMillis number of milliseconds between two samples
+     */
+    public JvmMetricsCollector(long samplingIntervalMillis) {
+        if (samplingIntervalMillis < 1) {
+            throw new IllegalArgumentException("The sampling interval must be at least 1 millisecond");
+        }
+        this.samplingIntervalMillis = samplingIntervalMillis;
+        this.operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+        this.processCpuTimeMethod = findProcessCpuTimeMethod(operatingSystem);
+    }
+
+    /**
+     * Takes the first sample and schedules the next ones. Calling start on a started collector does nothing.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        sample();
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ping-jvm-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    sample();
+                } catch (RuntimeException e) {
+                    logger.warn("Problem while sampling the JVM metrics", e);
+                }
+            }
+        }, samplingIntervalMillis, samplingIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns the last sample, the snapshot is empty when the collector was never started.
+     *
+     * @return JvmMetricsSnapshot with the metrics of the last sample
+     */
+    public JvmMetricsSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Reads all MXBeans and replaces the snapshot.
+     *
+     * @return the new snapshot
+     */
+    synchronized JvmMetricsSnapshot sample() {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            String prefix = "jvm.gc." + toKey(collector.getName());
+            values.put(prefix + ".count", String.valueOf(collector.getCollectionCount()));
+            values.put(prefix + ".time_ms", String.valueOf(collector.getCollectionTime()));
+        }
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        putUsage(values, "jvm.memory.heap", memory.getHeapMemoryUsage());
+        putUsage(values, "jvm.memory.non_heap", memory.getNonHeapMemoryUsage());
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.isValid()) {
+                putUsage(values, "jvm.memory.pool." + toKey(pool.getName()), pool.getUsage());
+            }
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        values.put("jvm.threads.live", String.valueOf(threads.getThreadCount()));
+        values.put("jvm.threads.daemon", String.valueOf(threads.getDaemonThreadCount()));
+        values.put("jvm.threads.peak", String.valueOf(threads.getPeakThreadCount()));
+
+        ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+        values.put("jvm.classes.loaded", String.valueOf(classLoading.getLoadedClassCount()));
+        values.put("jvm.classes.total_loaded", String.valueOf(classLoading.getTotalLoadedClassCount()));
+        values.put("jvm.classes.unloaded", String.valueOf(classLoading.getUnloadedClassCount()));
+
+        putCpuLoad(values);
+
+        snapshot = new JvmMetricsSnapshot(System.currentTimeMillis(), values);
+        return snapshot;
+    }
+
+    /**
+     * The cpu load is the increase of the cpu time of the process divided by the elapsed time of all processors.
+     */
+    private void putCpuLoad(Map<String, String> values) {
+        long cpuNanos = readProcessCpuTime();
+        long sampleNanos = System.nanoTime();
+        if (cpuNanos >= 0 && previousCpuNanos >= 0 && sampleNanos > previousSampleNanos) {
+            double elapsed = (double) (sampleNanos - previousSampleNanos) * operatingSystem.getAvailableProcessors();
+            double load = Math.min(100.0, 100.0 * (cpuNanos - previousCpuNanos) / elapsed);
+            values.put("jvm.process.cpu_load", String.format(Locale.ENGLISH, "%.1f", load));
+        }
+        previousCpuNanos = cpuNanos;
+        previousSampleNanos = sampleNanos;
+    }
+
+    private long readProcessCpuTime() {
+        if (processCpuTimeMethod == null) {
+            return -1;
+        }
+        try {
+            return ((Number) processCpuTimeMethod.invoke(operatingSystem)).longValue();
+        } catch (Exception e) {
+            logger.debug("Could not read the process cpu time", e);
+            return -1;
+        }
+    }
+
+    private static void putUsage(Map<String, String> values, String prefix, MemoryUsage usage) {
+        values.put(prefix + ".used_bytes", String.valueOf(usage.getUsed()));
+        values.put(prefix + ".committed_bytes", String.valueOf(usage.getCommitted()));
+        values.put(prefix + ".max_bytes", String.valueOf(usage.getMax()));
+    }
+
+    /**
+     * The method is obtained through the public interface, the implementing class is not accessible.
+     */
+    private static Method findProcessCpuTimeMethod(OperatingSystemMXBean operatingSystem) {
+        try {
+            Class<?> sunInterface = Class.forName("com.sun.management.OperatingSystemMXBean");
+            if (sunInterface.isInstance(operatingSystem)) {
+                return sunInterface.getMethod("getProcessCpuTime");
+            }
+        } catch (ClassNotFoundException e) {
+            logger.debug("The process cpu time is not available on this JVM");
+        } catch (NoSuchMethodException e) {
+            logger.debug("The process cpu time is not available on this JVM");
+        }
+        return null;
+    }
+
+    static String toKey(String name) {
+        return name.trim().toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9]+", "_");
+    }
+}
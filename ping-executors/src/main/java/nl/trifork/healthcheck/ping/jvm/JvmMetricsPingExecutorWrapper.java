@@ -0,0 +1,35 @@
+package nl.trifork.healthcheck.ping.jvm;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.ping.PingExecutorAdapter;
+
+/**
+ * <p>This wrapper for {@link PingExecutor}s adds the last snapshot of a {@link JvmMetricsCollector} to the result of
+ * the THOROUGH level. The other levels return the result of the delegate. One collector can be shared by multiple
+ * wrappers, the collector has to be started separately.</p>
+ */
+public class JvmMetricsPingExecutorWrapper extends PingExecutorAdapter implements PingExecutor {
+    private final PingExecutor delegate;
+    private final JvmMetricsCollector collector;
+
+    public JvmMetricsPingExecutorWrapper(PingExecutor delegate, JvmMetricsCollector collector) {
+        this.delegate = delegate;
+        this.collector = collector;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public PingResult execute(PingLevel pingLevel) {
+        PingResult result = delegate.execute(pingLevel);
+        if (pingLevel != PingLevel.THOROUGH) {
+            return result;
+        }
+        return addThoroughExtraValues(result, collector.getSnapshot().getValues());
+    }
+}
@@ -0,0 +1,38 @@
+package nl.trifork.healthcheck.ping.jvm;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>Immutable set of JVM metrics taken by the {@link JvmMetricsCollector} at one moment. The metrics are kept as
+ * strings with keys like <code>jvm.threads.live</code>, ready to be added to the extra values of a
+ * {@link nl.trifork.healthcheck.api.ThoroughPingResult}.</p>
+ */
+public class JvmMetricsSnapshot {
+    private final long timestamp;
+    private final Map<String, String> values;
+
+    JvmMetricsSnapshot(long timestamp, Map<String, String> values) {
+        this.timestamp = timestamp;
+        this.values = Collections.unmodifiableMap(new LinkedHashMap<String, String>(values));
+    }
+
+    /**
+     * @return the moment the metrics were sampled in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return unmodifiable map with the metrics, in the order they were sampled
+     */
+    public Map<String, String> getValues() {
+        return values;
+    }
+
+    public String getValue(String key) {
+        return values.get(key);
+    }
+}
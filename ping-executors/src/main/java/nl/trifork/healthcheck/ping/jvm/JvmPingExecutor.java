@@ -0,0 +1,252 @@
+package nl.trifork.healthcheck.ping.jvm;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.PingExecutorAdapter;
+import nl.trifork.healthcheck.ping.ProblemReport;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Implementation for the {@link PingExecutor} that checks the health of the JVM itself instead of a backend.</p>
+ * <ul>
+ * <li>Deadlocks - Threads that are deadlocked on monitors or locks return an ERROR. Finding deadlocks stops the JVM
+ * for a moment, so it is done at most once per deadlock check interval, the pings in between use the outcome of the
+ * last check.</li>
+ * <li>GC overhead - The percentage of the elapsed time that was spent in garbage collection over the gc window. Every
+ * ping records the total collection time, the overhead is known from the second ping on.</li>
+ * <li>Old generation - The occupancy of the old generation right after its last collection. Memory that is still in
+ * use after a full collection is the best sign of a heap that is running full.</li>
+ * </ul>
+ * <p>The GC overhead and the old generation are compared with a warning and an error percentage. The THOROUGH level
+ * adds the measured values to the result.</p>
+ * <p>A special builder is available {@link JvmPingExecutorBuilder} to make creating the executor easier.</p>
+ */
+public class JvmPingExecutor extends PingExecutorAdapter implements PingExecutor {
+    private final String name;
+    private final long deadlockCheckIntervalMillis;
+    private final long gcWindowMillis;
+    private final int gcWarningPercentage;
+    private final int gcErrorPercentage;
+    private final int oldGenWarningPercentage;
+    private final int oldGenErrorPercentage;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final MemoryPoolMXBean oldGenPool = findOldGenPool();
+
+    private final LinkedList<GcSample> gcSamples = new LinkedList<GcSample>();
+    private boolean deadlocksChecked = false;
+    private long lastDeadlockCheckNanos;
+    private List<String> deadlockedThreads = new ArrayList<String>();
+
+    public JvmPingExecutor(String name, long deadlockCheckIntervalMillis, long gcWindowMillis,
+                           int gcWarningPercentage, int gcErrorPercentage,
+                           int oldGenWarningPercentage, int oldGenErrorPercentage) {
+        if (gcWindowMillis < 1) {
+            throw new IllegalArgumentException("The gc window must be at least 1 millisecond");
+        }
+        if (gcWarningPercentage > gcErrorPercentage || oldGenWarningPercentage > oldGenErrorPercentage) {
+            throw new IllegalArgumentException("A warning percentage cannot be higher than the error percentage");
+        }
+        this.name = name;
+        this.deadlockCheckIntervalMillis = deadlockCheckIntervalMillis;
+        this.gcWindowMillis = gcWindowMillis;
+        this.gcWarningPercentage = gcWarningPercentage;
+        this.gcErrorPercentage = gcErrorPercentage;
+        this.oldGenWarningPercentage = oldGenWarningPercentage;
+        this.oldGenErrorPercentage = oldGenErrorPercentage;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized PingResult execute(PingLevel pingLevel) {
+        // The intervals are measured with the monotonic clock, a wall clock that is set back does not stop the checks
+        long nowNanos = currentTimeNanos();
+        Map<String, String> extraValues = new LinkedHashMap<String, String>();
+        ProblemReport report = new ProblemReport();
+
+        if (!deadlocksChecked
+                || nowNanos - lastDeadlockCheckNanos >= TimeUnit.MILLISECONDS.toNanos(deadlockCheckIntervalMillis)) {
+            deadlockedThreads = findDeadlockedThreads();
+            deadlocksChecked = true;
+            lastDeadlockCheckNanos = nowNanos;
+        }
+        extraValues.put("jvm.deadlock.threads", String.valueOf(deadlockedThreads.size()));
+        extraValues.put("jvm.deadlock.check_age_ms",
+                String.valueOf(TimeUnit.NANOSECONDS.toMillis(nowNanos - lastDeadlockCheckNanos)));
+        if (!deadlockedThreads.isEmpty()) {
+            report.report(SystemStatus.ERROR, "deadlocked threads: " + join(deadlockedThreads));
+        }
+
+        double gcOverhead = measureGcOverhead(nowNanos, extraValues);
+        if (gcOverhead >= 0) {
+            compare(report, gcOverhead, gcWarningPercentage, gcErrorPercentage, "time spent in gc");
+        }
+
+        double oldGenOccupancy = measureOldGenOccupancy(extraValues);
+        if (oldGenOccupancy >= 0) {
+            compare(report, oldGenOccupancy, oldGenWarningPercentage, oldGenErrorPercentage,
+                    "old generation in use after gc");
+        }
+
+        String message = report.createMessage("No deadlocks, gc overhead and old generation within limits.");
+        if (pingLevel == PingLevel.THOROUGH) {
+            return new ThoroughPingResult(name, report.getStatus(), message, extraValues);
+        }
+        return new PingResult(name, report.getStatus(), message);
+    }
+
+    /**
+     * Records the collection time of this ping and compares it with the oldest sample within the window.
+     *
+     * @return percentage of the time spent in gc, -1 if not known yet
+     */
+    private double measureGcOverhead(long nowNanos, Map<String, String> extraValues) {
+        gcSamples.addLast(new GcSample(nowNanos, totalCollectionTimeMillis()));
+        // Keep the newest sample that is at least a window old as the start of the window
+        long gcWindowNanos = TimeUnit.MILLISECONDS.toNanos(gcWindowMillis);
+        while (gcSamples.size() > 1 && nowNanos - gcSamples.get(1).timestampNanos >= gcWindowNanos) {
+            gcSamples.removeFirst();
+        }
+        GcSample first = gcSamples.getFirst();
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(nowNanos - first.timestampNanos);
+        if (elapsed <= 0) {
+            return -1;
+        }
+        double overhead = Math.min(100.0, 100.0 * (gcSamples.getLast().collectionTime - first.collectionTime) / elapsed);
+        extraValues.put("jvm.gc.overhead_percentage", format(overhead));
+        extraValues.put("jvm.gc.window_ms", String.valueOf(elapsed));
+        return overhead;
+    }
+
+    /**
+     * @return percentage of the old generation in use after the last collection, -1 if not known
+     */
+    private double measureOldGenOccupancy(Map<String, String> extraValues) {
+        MemoryUsage usage = oldGenCollectionUsage();
+        if (usage == null) {
+            return -1;
+        }
+        long max = usage.getMax() > 0 ? usage.getMax() : usage.getCommitted();
+        if (max <= 0) {
+            return -1;
+        }
+        double occupancy = 100.0 * usage.getUsed() / max;
+        extraValues.put("jvm.old_gen.after_gc_bytes", String.valueOf(usage.getUsed()));
+        extraValues.put("jvm.old_gen.after_gc_percentage", format(occupancy));
+        return occupancy;
+    }
+
+    /**
+     * @return the names of the deadlocked threads, empty if there are none
+     */
+    List<String> findDeadlockedThreads() {
+        List<String> names = new ArrayList<String>();
+        long[] ids = threads.findDeadlockedThreads();
+        if (ids != null) {
+            for (ThreadInfo info : threads.getThreadInfo(ids)) {
+                if (info != null) {
+                    names.add(info.getThreadName());
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * @return the total collection time of all garbage collectors in milliseconds
+     */
+    long totalCollectionTimeMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * @return usage of the old generation after its last collection, null if not available
+     */
+    MemoryUsage oldGenCollectionUsage() {
+        return oldGenPool == null ? null : oldGenPool.getCollectionUsage();
+    }
+
+    /**
+     * Returns the value of the monotonic clock, can be overridden in tests.
+     *
+     * @return current value of the clock in nanoseconds
+     */
+    protected long currentTimeNanos() {
+        return System.nanoTime();
+    }
+
+    /**
+     * The old generation is the heap pool that is collected and named old or tenured by all common collectors.
+     */
+    private static MemoryPoolMXBean findOldGenPool() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            String poolName = pool.getName().toLowerCase(Locale.ENGLISH);
+            if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported()
+                    && (poolName.contains("old") || poolName.contains("tenured"))) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reports an ERROR or a WARNING when the percentage reaches the error or the warning percentage.
+     */
+    private static void compare(ProblemReport report, double percentage, int warningPercentage, int errorPercentage,
+                                String description) {
+        if (percentage >= errorPercentage) {
+            report.report(SystemStatus.ERROR, format(percentage) + "% " + description);
+        } else if (percentage >= warningPercentage) {
+            report.report(SystemStatus.WARNING, format(percentage) + "% " + description);
+        }
+    }
+
+    private static String format(double percentage) {
+        return String.format(Locale.ENGLISH, "%.1f", percentage);
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            builder.append(builder.length() == 0 ? "" : ", ").append(value);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * The total collection time at the moment of a ping.
+     */
+    private static class GcSample {
+        private final long timestampNanos;
+        private final long collectionTime;
+
+        private GcSample(long timestampNanos, long collectionTime) {
+            this.timestampNanos = timestampNanos;
+            this.collectionTime = collectionTime;
+        }
+    }
+}
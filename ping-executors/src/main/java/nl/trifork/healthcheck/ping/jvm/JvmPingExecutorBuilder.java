@@ -0,0 +1,70 @@
+package nl.trifork.healthcheck.ping.jvm;
+
+/**
+ * <p>Special builder class to create a {@link JvmPingExecutor}. The defaults check for deadlocks once a minute and
+ * measure the gc overhead over a minute. More than 10% gc time is a WARNING and more than 25% an ERROR, an old
+ * generation that is 80% in use after gc is a WARNING and 95% an ERROR.</p>
+ * <p>Start the creation by calling the create method. Override values with the setters and call build to actually
+ * construct the object.</p>
+ */
+public class JvmPingExecutorBuilder {
+    private String name = "JVM ping executor";
+    private long deadlockCheckInterval = 60000;
+    private long gcWindow = 60000;
+    private int gcWarningPercentage = 10;
+    private int gcErrorPercentage = 25;
+    private int oldGenWarningPercentage = 80;
+    private int oldGenErrorPercentage = 95;
+
+    public static JvmPingExecutorBuilder create() {
+        return new JvmPingExecutorBuilder();
+    }
+
+    public JvmPingExecutor build() {
+        return new JvmPingExecutor(name, deadlockCheckInterval, gcWindow, gcWarningPercentage, gcErrorPercentage,
+                oldGenWarningPercentage, oldGenErrorPercentage);
+    }
+
+    public JvmPingExecutorBuilder setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * @param deadlockCheckInterval minimum number of milliseconds between two searches for deadlocks
+     * @return this builder
+     */
+    public JvmPingExecutorBuilder setDeadlockCheckInterval(long deadlockCheckInterval) {
+        this.deadlockCheckInterval = deadlockCheckInterval;
+        return this;
+    }
+
+    /**
+     * @param gcWindow number of milliseconds over which the gc overhead is measured
+     * @return this builder
+     */
+    public JvmPingExecutorBuilder setGcWindow(long gcWindow) {
+        this.gcWindow = gcWindow;
+        return this;
+    }
+
+    public JvmPingExecutorBuilder setGcWarningPercentage(int gcWarningPercentage) {
+        this.gcWarningPercentage = gcWarningPercentage;
+        return this;
+    }
+
+    public JvmPingExecutorBuilder setGcErrorPercentage(int gcErrorPercentage) {
+        this.gcErrorPercentage = gcErrorPercentage;
+        return this;
+    }
+
+    public JvmPingExecutorBuilder setOldGenWarningPercentage(int oldGenWarningPercentage) {
+        this.oldGenWarningPercentage = oldGenWarningPercentage;
+        return this;
+    }
+
+    public JvmPingExecutorBuilder setOldGenErrorPercentage(int oldGenErrorPercentage) {
+        this.oldGenErrorPercentage = oldGenErrorPercentage;
+        return this;
+    }
+}
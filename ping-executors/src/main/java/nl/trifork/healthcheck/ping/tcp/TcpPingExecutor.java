@@ -0,0 +1,276 @@
+package nl.trifork.healthcheck.ping.tcp;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.AddressResolver;
+import nl.trifork.healthcheck.ping.PingExecutorAdapter;
+import nl.trifork.healthcheck.ping.SocketChannels;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Implementation for the {@link PingExecutor} that checks whether a list of hosts accept tcp connections. All
+ * connections are started at the same time with non-blocking sockets and one {@link Selector}, the thread that
+ * executes the ping waits for all of them until the deadline. A connection is closed as soon as it is established,
+ * nothing is sent. One ping can therefore check hundreds of targets within the time of the slowest connect.</p>
+ * <p>The status depends on the percentage of the targets that is reachable:</p>
+ * <ul>
+ * <li>OK - at least the ok quorum is reachable.</li>
+ * <li>WARNING - at least the warning quorum is reachable.</li>
+ * <li>ERROR - less than the warning quorum is reachable.</li>
+ * </ul>
+ * <p>The THOROUGH level adds the connect latency or the failure of every target to the result. The address of a host
+ * is looked up once and kept for the resolve interval, see {@link AddressResolver}. A lookup counts against the
+ * timeout, no connections are started after the timeout has passed.</p>
+ * <p>A special builder is available {@link TcpPingExecutorBuilder} to make creating the executor easier.</p>
+ */
+public class TcpPingExecutor extends PingExecutorAdapter implements PingExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(TcpPingExecutor.class);
+
+    private final String name;
+    private final List<TcpTarget> targets;
+    private final long timeoutMillis;
+    private final int okQuorumPercentage;
+    private final int warningQuorumPercentage;
+    private final AddressResolver addressResolver;
+    private Selector selector;
+
+    public TcpPingExecutor(String name, List<TcpTarget> targets, long timeoutMillis, int okQuorumPercentage,
+                           int warningQuorumPercentage) {
+        this(name, targets, timeoutMillis, okQuorumPercentage, warningQuorumPercentage,
+                new AddressResolver());
+    }
+
+    public TcpPingExecutor(String name, List<TcpTarget> targets, long timeoutMillis, int okQuorumPercentage,
+                           int warningQuorumPercentage, AddressResolver addressResolver) {
+        if (targets == null || targets.isEmpty()) {
+            throw new IllegalArgumentException("At least one target is required");
+        }
+        if (warningQuorumPercentage > okQuorumPercentage) {
+            throw new IllegalArgumentException("The warning quorum cannot be higher than the ok quorum");
+        }
+        this.name = name;
+        this.targets = new ArrayList<TcpTarget>(targets);
+        this.timeoutMillis = timeoutMillis;
+        this.okQuorumPercentage = okQuorumPercentage;
+        this.warningQuorumPercentage = warningQuorumPercentage;
+        this.addressResolver = addressResolver;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized PingResult execute(PingLevel pingLevel) {
+        List<Attempt> attempts = new ArrayList<Attempt>(targets.size());
+        try {
+            if (selector == null) {
+                selector = Selector.open();
+            }
+            long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            for (TcpTarget target : targets) {
+                attempts.add(new Attempt(target));
+            }
+            for (Attempt attempt : attempts) {
+                if (System.nanoTime() - deadlineNanos >= 0) {
+                    // The remaining attempts are reported as not connected within the timeout
+                    break;
+                }
+                connect(attempt);
+            }
+            awaitAttempts(attempts, deadlineNanos);
+        } catch (IOException e) {
+            logger.error("Problem with the selector of the tcp ping.", e);
+            return new PingResult(name, SystemStatus.ERROR, "FAILURE - Could not check the tcp targets: "
+                    + e.getMessage());
+        } finally {
+            for (Attempt attempt : attempts) {
+                attempt.close();
+            }
+            releaseClosedChannels();
+        }
+        return createResult(pingLevel, attempts);
+    }
+
+    /**
+     * A closed channel stays registered with the selector, and keeps its socket open, until the selector removes the
+     * cancelled keys during its next select. The selector is kept between pings, so the keys are removed right away.
+     */
+    private void releaseClosedChannels() {
+        if (selector != null) {
+            try {
+                selector.selectNow();
+            } catch (IOException e) {
+                logger.debug("Problem while releasing the connections of the tcp ping.", e);
+            }
+        }
+    }
+
+    /**
+     * @return the number of channels that are registered with the selector
+     */
+    synchronized int countRegisteredChannels() {
+        return selector == null ? 0 : selector.keys().size();
+    }
+
+    /**
+     * Closes the selector, a next ping opens a new one.
+     */
+    public synchronized void close() {
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                logger.debug("Problem while closing the selector of the tcp ping.", e);
+            }
+            selector = null;
+        }
+    }
+
+    private void connect(Attempt attempt) {
+        try {
+            InetSocketAddress address = addressResolver.resolve(attempt.target.getHost(), attempt.target.getPort());
+            if (address.isUnresolved()) {
+                attempt.fail("unknown host");
+                return;
+            }
+            attempt.startNanos = System.nanoTime();
+            attempt.channel = SocketChannel.open();
+            attempt.channel.configureBlocking(false);
+            if (attempt.channel.connect(address)) {
+                attempt.succeed();
+            } else {
+                attempt.channel.register(selector, SelectionKey.OP_CONNECT, attempt);
+            }
+        } catch (IOException e) {
+            attempt.fail(SocketChannels.describe(e));
+        }
+    }
+
+    private void awaitAttempts(List<Attempt> attempts, long deadlineNanos) throws IOException {
+        int pending = SocketChannels.countPending(attempts);
+        while (pending > 0) {
+            long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remainingMillis <= 0) {
+                break;
+            }
+            selector.select(remainingMillis);
+            Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+            while (selectedKeys.hasNext()) {
+                SelectionKey key = selectedKeys.next();
+                selectedKeys.remove();
+                Attempt attempt = (Attempt) key.attachment();
+                if (attempt.done || !key.isValid()) {
+                    continue;
+                }
+                try {
+                    if (attempt.channel.finishConnect()) {
+                        attempt.succeed();
+                        pending--;
+                    }
+                } catch (IOException e) {
+                    attempt.fail(SocketChannels.describe(e));
+                    pending--;
+                }
+            }
+        }
+        for (Attempt attempt : attempts) {
+            if (!attempt.done) {
+                attempt.fail("no connection within " + timeoutMillis + " ms");
+            }
+        }
+    }
+
+    private PingResult createResult(PingLevel pingLevel, List<Attempt> attempts) {
+        Map<String, String> extraValues = new LinkedHashMap<String, String>();
+        StringBuilder failures = new StringBuilder();
+        int reachable = 0;
+        for (Attempt attempt : attempts) {
+            String prefix = attempt.target.getName() + ".";
+            if (attempt.problem == null) {
+                reachable++;
+                extraValues.put(prefix + "latency_ms", String.valueOf(TimeUnit.NANOSECONDS.toMillis(attempt.latencyNanos)));
+                extraValues.put(prefix + "result", "OK");
+            } else {
+                extraValues.put(prefix + "result", attempt.problem);
+                failures.append(failures.length() == 0 ? "" : ", ").append(attempt.target.getName())
+                        .append(" (").append(attempt.problem).append(")");
+            }
+        }
+        extraValues.put("tcp.reachable", String.valueOf(reachable));
+        extraValues.put("tcp.total", String.valueOf(attempts.size()));
+
+        int percentage = reachable * 100 / attempts.size();
+        String summary = reachable + " of " + attempts.size() + " tcp targets are reachable";
+        SystemStatus status;
+        String message;
+        if (percentage >= okQuorumPercentage) {
+            status = SystemStatus.OK;
+            message = "OK - " + summary + ".";
+        } else if (percentage >= warningQuorumPercentage) {
+            status = SystemStatus.WARNING;
+            message = "WARNING - " + summary + ", not reachable: " + failures;
+        } else {
+            status = SystemStatus.ERROR;
+            message = "FAILURE - " + summary + ", not reachable: " + failures;
+        }
+        if (pingLevel == PingLevel.THOROUGH) {
+            return new ThoroughPingResult(name, status, message, extraValues);
+        }
+        return new PingResult(name, status, message);
+    }
+
+    /**
+     * The state of the connection to one target during a ping.
+     */
+    private static class Attempt implements SocketChannels.Task {
+        private final TcpTarget target;
+        private long startNanos;
+        private SocketChannel channel;
+        private boolean done = false;
+        private long latencyNanos;
+        private String problem;
+
+        private Attempt(TcpTarget target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done;
+        }
+
+        private void succeed() {
+            done = true;
+            latencyNanos = System.nanoTime() - startNanos;
+        }
+
+        private void fail(String reason) {
+            done = true;
+            problem = reason;
+        }
+
+        private void close() {
+            if (channel != null) {
+                SocketChannels.closeQuietly(channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package nl.trifork.healthcheck.ping.tcp;
+
+import nl.trifork.healthcheck.ping.AddressResolver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Special builder class to create a {@link TcpPingExecutor}. By default all targets must be reachable, use the
+ * quorum setters to allow some targets to be down.</p>
+ * <p>Start the creation by calling the create method. Override values with the setters and call build to actually
+ * construct the object.</p>
+ */
+public class TcpPingExecutorBuilder {
+    private String name = "Tcp ping executor";
+    private long timeout = 2000;
+    private int okQuorumPercentage = 100;
+    private int warningQuorumPercentage = 50;
+    private long resolveInterval = AddressResolver.DEFAULT_REFRESH_INTERVAL;
+    private List<TcpTarget> targets = new ArrayList<TcpTarget>();
+
+    public static TcpPingExecutorBuilder create() {
+        return new TcpPingExecutorBuilder();
+    }
+
+    public TcpPingExecutor build() {
+        return new TcpPingExecutor(name, targets, timeout, okQuorumPercentage, warningQuorumPercentage,
+                new AddressResolver(resolveInterval));
+    }
+
+    public TcpPingExecutorBuilder setName(String name) {
+        this.name = name;
+        return this;
+    }
+
+    /**
+     * @param timeout number of milliseconds all connections together may take
+     * @return this builder
+     */
+    public TcpPingExecutorBuilder setTimeout(long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public TcpPingExecutorBuilder setOkQuorumPercentage(int okQuorumPercentage) {
+        this.okQuorumPercentage = okQuorumPercentage;
+        return this;
+    }
+
+    public TcpPingExecutorBuilder setWarningQuorumPercentage(int warningQuorumPercentage) {
+        this.warningQuorumPercentage = warningQuorumPercentage;
+        return this;
+    }
+
+    /**
+     * @param resolveInterval number of milliseconds the address of a host is used before it is looked up again
+     * @return this builder
+     */
+    public TcpPingExecutorBuilder setResolveInterval(long resolveInterval) {
+        this.resolveInterval = resolveInterval;
+        return this;
+    }
+
+    public TcpPingExecutorBuilder addTarget(String hostAndPort) {
+        targets.add(TcpTarget.parse(hostAndPort));
+        return this;
+    }
+
+    public TcpPingExecutorBuilder addTarget(String name, String host, int port) {
+        targets.add(new TcpTarget(name, host, port));
+        return this;
+    }
+}
@@ -0,0 +1,59 @@
+package nl.trifork.healthcheck.ping.tcp;
+
+/**
+ * <p>One host and port that is checked by the {@link TcpPingExecutor}.</p>
+ */
+public class TcpTarget {
+    private final String name;
+    private final String host;
+    private final int port;
+
+    public TcpTarget(String name, String host, int port) {
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("The port of target " + name + " must be between 1 and 65535");
+        }
+        this.name = name;
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Creates a target from a value like <code>localhost:1099</code>, the value is also the name of the target. A url
+     * like <code>rmi://localhost:1099/hipporepository</code> is accepted as well, the scheme and the path are ignored.
+     *
+     * @param hostAndPort host and port separated by a colon, optionally with a scheme and a path
+     * @return TcpTarget for the host and port
+     */
+    public static TcpTarget parse(String hostAndPort) {
+        String value = hostAndPort;
+        int schemeEnd = value.indexOf("://");
+        if (schemeEnd >= 0) {
+            value = value.substring(schemeEnd + 3);
+        }
+        int pathStart = value.indexOf('/');
+        if (pathStart >= 0) {
+            value = value.substring(0, pathStart);
+        }
+        int colon = value.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("The target " + hostAndPort + " should be host:port");
+        }
+        try {
+            return new TcpTarget(hostAndPort, value.substring(0, colon), Integer.parseInt(value.substring(colon + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The port of target " + hostAndPort + " is not a number");
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+}
@@ -0,0 +1,73 @@
+package nl.trifork.healthcheck.ping;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AddressResolverTest {
+    long nowNanos = 0;
+    int lookups = 0;
+    boolean unknownHost = false;
+    AddressResolver resolver;
+
+    @Before
+    public void setUp() throws Exception {
+        resolver = new AddressResolver(1000) {
+            @Override
+            protected InetSocketAddress lookup(String host, int port) {
+                lookups++;
+                if (unknownHost) {
+                    return InetSocketAddress.createUnresolved(host, port);
+                }
+                return new InetSocketAddress("127.0.0.1", port);
+            }
+
+            @Override
+            protected long currentTimeNanos() {
+                return nowNanos;
+            }
+        };
+    }
+
+    @Test
+    public void testResolve_addressIsKept() throws Exception {
+        InetSocketAddress first = resolver.resolve("backend", 80);
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(999);
+        InetSocketAddress second = resolver.resolve("backend", 80);
+
+        assertFalse(first.isUnresolved());
+        assertEquals(first, second);
+        assertEquals(1, lookups);
+    }
+
+    @Test
+    public void testResolve_otherPortIsLookedUp() throws Exception {
+        resolver.resolve("backend", 80);
+        assertEquals(8080, resolver.resolve("backend", 8080).getPort());
+        assertEquals(2, lookups);
+    }
+
+    @Test
+    public void testResolve_refreshedAfterInterval() throws Exception {
+        resolver.resolve("backend", 80);
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        resolver.resolve("backend", 80);
+        assertEquals(2, lookups);
+    }
+
+    @Test
+    public void testResolve_unknownHostIsNotKept() throws Exception {
+        unknownHost = true;
+        assertTrue(resolver.resolve("backend", 80).isUnresolved());
+
+        unknownHost = false;
+        assertFalse(resolver.resolve("backend", 80).isUnresolved());
+        assertEquals(2, lookups);
+    }
+}
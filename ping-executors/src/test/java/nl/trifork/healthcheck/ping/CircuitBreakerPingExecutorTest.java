@@ -0,0 +1,220 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class CircuitBreakerPingExecutorTest {
+    private static final PingResult OK = new PingResult("mock", SystemStatus.OK, "all fine");
+    private static final PingResult ERROR = new PingResult("mock", SystemStatus.TIMEOUT_ERROR, "backend too slow");
+
+    @Mock
+    PingExecutor delegate;
+
+    long nowNanos = 0;
+    CircuitBreakerPingExecutor breaker;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        when(delegate.getName()).thenReturn("mock");
+        breaker = new CircuitBreakerPingExecutor(delegate, 3, 1000) {
+            @Override
+            protected long currentTimeNanos() {
+                return nowNanos;
+            }
+        };
+    }
+
+    @Test
+    public void testExecute_opensAfterThreshold() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(ERROR);
+        breaker.execute();
+        breaker.execute();
+        assertEquals(CircuitBreakerPingExecutor.State.CLOSED, breaker.getState());
+        breaker.execute();
+        assertEquals(CircuitBreakerPingExecutor.State.OPEN, breaker.getState());
+
+        PingResult result = breaker.execute();
+        assertEquals(SystemStatus.TIMEOUT_ERROR, result.getSystemStatus());
+        assertTrue(result.getMessage().endsWith("backend too slow"));
+        verify(delegate, times(3)).execute(PingLevel.BASIC);
+        assertEquals(1, breaker.getOpenCount());
+        assertEquals(1, breaker.getShortCircuitCount());
+    }
+
+    @Test
+    public void testExecute_successResetsFailures() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(ERROR, ERROR, OK, ERROR, ERROR);
+        for (int i = 0; i < 5; i++) {
+            breaker.execute();
+        }
+        assertEquals(CircuitBreakerPingExecutor.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testExecute_probeClosesCircuit() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(ERROR, ERROR, ERROR, OK);
+        openCircuit();
+
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(999);
+        breaker.execute();
+        verify(delegate, times(3)).execute(PingLevel.BASIC);
+
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(1);
+        PingResult result = breaker.execute();
+        assertEquals(SystemStatus.OK, result.getSystemStatus());
+        assertEquals(CircuitBreakerPingExecutor.State.CLOSED, breaker.getState());
+        assertEquals(1, breaker.getHalfOpenCount());
+        assertEquals(1, breaker.getCloseCount());
+        assertEquals(1000, breaker.getTotalOpenMillis());
+        assertTrue(breaker.getLastTransitionMillis() > 0);
+    }
+
+    @Test
+    public void testExecute_failingProbeOpensAgain() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(ERROR);
+        openCircuit();
+
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        breaker.execute();
+        assertEquals(CircuitBreakerPingExecutor.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getOpenCount());
+
+        // The open duration starts again after the failing probe
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(500);
+        breaker.execute();
+        verify(delegate, times(4)).execute(PingLevel.BASIC);
+        assertEquals(1500, breaker.getTotalOpenMillis());
+    }
+
+    @Test
+    public void testExecute_exceptionIsFailure() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenThrow(new IllegalStateException("for testing only"));
+        for (int i = 0; i < 3; i++) {
+            try {
+                breaker.execute();
+                fail("The exception of the delegate should be thrown");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        PingResult result = breaker.execute();
+        assertEquals(SystemStatus.ERROR, result.getSystemStatus());
+        assertTrue(result.getMessage().endsWith("for testing only"));
+    }
+
+    @Test
+    public void testExecute_errorInProbeOpensAgain() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(ERROR);
+        openCircuit();
+
+        reset(delegate);
+        when(delegate.execute(PingLevel.BASIC)).thenThrow(new OutOfMemoryError("for testing only"));
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        try {
+            breaker.execute();
+            fail("The error of the delegate should be thrown");
+        } catch (OutOfMemoryError e) {
+            // expected
+        }
+        assertEquals(CircuitBreakerPingExecutor.State.OPEN, breaker.getState());
+        assertTrue(breaker.execute().getMessage().endsWith("for testing only"));
+    }
+
+    @Test
+    public void testExecute_nullResultIsFailure() throws Exception {
+        openCircuit();
+        PingResult result = breaker.execute();
+        assertEquals(SystemStatus.ERROR, result.getSystemStatus());
+        assertTrue(result.getMessage().endsWith("The check did not return a result."));
+    }
+
+    @Test
+    public void testExecute_hangingProbeTimesOut() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(ERROR);
+        openCircuit();
+
+        final CountDownLatch probeStarted = new CountDownLatch(1);
+        final CountDownLatch releaseProbe = new CountDownLatch(1);
+        reset(delegate);
+        when(delegate.execute(PingLevel.BASIC)).thenAnswer(new Answer<PingResult>() {
+            @Override
+            public PingResult answer(InvocationOnMock invocation) throws Throwable {
+                probeStarted.countDown();
+                releaseProbe.await(5, TimeUnit.SECONDS);
+                return OK;
+            }
+        });
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        Thread probe = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                breaker.execute();
+            }
+        });
+        probe.start();
+        assertTrue(probeStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(CircuitBreakerPingExecutor.State.HALF_OPEN, breaker.getState());
+
+        // After the probe timeout the next ping opens the circuit again instead of waiting for the probe
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        PingResult result = breaker.execute();
+        assertEquals(SystemStatus.TIMEOUT_ERROR, result.getSystemStatus());
+        assertEquals(CircuitBreakerPingExecutor.State.OPEN, breaker.getState());
+
+        // The late outcome of the probe does not close the circuit
+        releaseProbe.countDown();
+        probe.join(5000);
+        assertEquals(CircuitBreakerPingExecutor.State.OPEN, breaker.getState());
+
+        nowNanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        breaker.execute();
+        assertEquals(CircuitBreakerPingExecutor.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void testExecute_thoroughContainsCircuitValues() throws Exception {
+        when(delegate.execute(PingLevel.THOROUGH)).thenReturn(ERROR);
+        for (int i = 0; i < 4; i++) {
+            breaker.execute(PingLevel.THOROUGH);
+        }
+        PingResult result = breaker.execute(PingLevel.THOROUGH);
+        Map<String, String> values = ((ThoroughPingResult) result).getThoroughExtraValues();
+        assertEquals("OPEN", values.get("circuit.state"));
+        assertEquals("1", values.get("circuit.opened"));
+        assertEquals("2", values.get("circuit.short_circuited"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCreate_invalidThreshold() throws Exception {
+        new CircuitBreakerPingExecutor(delegate, 0, 1000);
+    }
+
+    private void openCircuit() {
+        for (int i = 0; i < 3; i++) {
+            breaker.execute();
+        }
+        assertEquals(CircuitBreakerPingExecutor.State.OPEN, breaker.getState());
+    }
+}
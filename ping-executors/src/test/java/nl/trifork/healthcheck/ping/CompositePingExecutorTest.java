@@ -0,0 +1,147 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class CompositePingExecutorTest {
+
+    @Mock
+    PingExecutor database;
+    @Mock
+    PingExecutor search;
+
+    CompositePingExecutor composite;
+    CountDownLatch blockChild = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        when(database.getName()).thenReturn("database");
+        when(search.getName()).thenReturn("search");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        blockChild.countDown();
+        if (composite != null) {
+            composite.shutdown();
+        }
+    }
+
+    @Test
+    public void testExecute_allOk() throws Exception {
+        when(database.execute(PingLevel.BASIC)).thenReturn(new PingResult("database", SystemStatus.OK, "db fine"));
+        when(search.execute(PingLevel.BASIC)).thenReturn(new PingResult("search", SystemStatus.OK, "search fine"));
+        composite = CompositePingExecutorBuilder.create("all").addCritical(database).addCritical(search).build();
+
+        ThoroughPingResult result = composite.execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.OK, result.getSystemStatus());
+        assertEquals("OK - All 2 checks are fine.", result.getMessage());
+        Map<String, String> values = result.getThoroughExtraValues();
+        assertEquals("OK", values.get("database.status"));
+        assertEquals("search fine", values.get("search.message"));
+        assertTrue(values.containsKey("search.latency_ms"));
+    }
+
+    @Test
+    public void testBuild_compositesDoNotShareThreads() throws Exception {
+        when(database.execute(PingLevel.BASIC)).thenReturn(new PingResult("database", SystemStatus.OK, "db fine"));
+        CompositePingExecutorBuilder builder = CompositePingExecutorBuilder.create("all").addCritical(database);
+        CompositePingExecutor first = builder.build();
+        composite = builder.build();
+
+        first.shutdown();
+
+        assertEquals(SystemStatus.OK, composite.execute(PingLevel.BASIC).getSystemStatus());
+    }
+
+    @Test
+    public void testExecute_worstOf() throws Exception {
+        when(database.execute(PingLevel.BASIC)).thenReturn(new PingResult("database", SystemStatus.OK, "db fine"));
+        when(search.execute(PingLevel.BASIC)).thenReturn(new PingResult("search", SystemStatus.ERROR, "search down"));
+        composite = CompositePingExecutorBuilder.create("all").addCritical(database).addOptional(search).build();
+
+        ThoroughPingResult result = composite.execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.ERROR, result.getSystemStatus());
+        assertEquals("1 of 2 checks report a problem: search (ERROR)", result.getMessage());
+    }
+
+    @Test
+    public void testExecute_criticalVsOptional() throws Exception {
+        when(database.execute(PingLevel.BASIC)).thenReturn(new PingResult("database", SystemStatus.OK, "db fine"));
+        when(search.execute(PingLevel.BASIC)).thenReturn(new PingResult("search", SystemStatus.ERROR, "search down"));
+        composite = CompositePingExecutorBuilder.create("all")
+                .setAggregationPolicy(CompositePingExecutor.AggregationPolicy.CRITICAL_VS_OPTIONAL)
+                .addCritical(database).addOptional(search).build();
+
+        assertEquals(SystemStatus.WARNING, composite.execute(PingLevel.BASIC).getSystemStatus());
+
+        when(database.execute(PingLevel.BASIC)).thenReturn(new PingResult("database", SystemStatus.TIMEOUT_ERROR, "slow"));
+
+        assertEquals(SystemStatus.TIMEOUT_ERROR, composite.execute(PingLevel.BASIC).getSystemStatus());
+    }
+
+    @Test
+    public void testExecute_childTimeout() throws Exception {
+        when(database.execute(PingLevel.BASIC)).thenReturn(new PingResult("database", SystemStatus.OK, "db fine"));
+        when(search.execute(PingLevel.BASIC)).thenAnswer(new Answer<PingResult>() {
+            @Override
+            public PingResult answer(InvocationOnMock invocation) throws Throwable {
+                blockChild.await();
+                return new PingResult("search", SystemStatus.OK, "too late");
+            }
+        });
+        composite = CompositePingExecutorBuilder.create("all").addCritical(database).addCritical(search, 100).build();
+
+        ThoroughPingResult result = composite.execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.TIMEOUT_ERROR, result.getSystemStatus());
+        assertEquals("OK", result.getThoroughExtraValues().get("database.status"));
+        assertEquals("FAILURE - The ping with level BASIC did not finish within 100 ms.", result.getThoroughExtraValues().get("search.message"));
+    }
+
+    @Test
+    public void testExecute_childException() throws Exception {
+        when(database.execute(PingLevel.BASIC)).thenThrow(new IllegalStateException("for testing only"));
+        composite = CompositePingExecutorBuilder.create("all").addCritical(database).build();
+
+        ThoroughPingResult result = composite.execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.ERROR, result.getSystemStatus());
+        assertEquals("FAILURE - java.lang.IllegalStateException: for testing only",
+                result.getThoroughExtraValues().get("database.message"));
+    }
+
+    @Test
+    public void testExecuteThorough_includesChildValues() throws Exception {
+        when(database.execute(PingLevel.THOROUGH)).thenReturn(new ThoroughPingResult("database", SystemStatus.OK,
+                "db fine", Collections.singletonMap("connections", "5")));
+        when(database.getName()).thenReturn("database");
+        composite = CompositePingExecutorBuilder.create("all").addCritical(database).addCritical(database).build();
+
+        ThoroughPingResult result = composite.executeThorough();
+
+        assertEquals("5", result.getThoroughExtraValues().get("database.connections"));
+        assertEquals("5", result.getThoroughExtraValues().get("database 2.connections"));
+    }
+}
@@ -4,12 +4,20 @@ import nl.trifork.healthcheck.api.PingExecutor;
 import nl.trifork.healthcheck.api.PingLevel;
 import nl.trifork.healthcheck.api.PingResult;
 import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.ping.history.MappedPingHistoryStore;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -85,6 +93,102 @@ public class HistoricalPingExecutorWrapperTest {
         assertEquals("an error",result.getMessage());
     }
 
+    @Test
+    public void testGetItems_mostRecentFirst() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenAnswer(new Answer<PingResult>() {
+            int count = 0;
+
+            @Override
+            public PingResult answer(InvocationOnMock invocation) throws Throwable {
+                return new PingResult("mock", SystemStatus.OK, "run " + ++count);
+            }
+        });
+        for (int i = 0; i < 15; i++) {
+            wrapper.execute();
+        }
+        PingResult[] items = wrapper.getItems();
+
+        assertEquals(10, items.length);
+        assertEquals("run 15", items[0].getMessage());
+        assertEquals("run 6", items[9].getMessage());
+        assertTrue(wrapper.getHistory()[0].getTimestamp() > 0);
+    }
+
+    @Test
+    public void testExecute_concurrentThreads() throws Exception {
+        when(delegate.execute(PingLevel.EXTENDED)).thenReturn(new PingResult("mock", SystemStatus.ERROR, "an error"));
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(new PingResult("mock", SystemStatus.OK, "nothing special"));
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final boolean withErrors = t % 2 == 0;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        if (withErrors && i % 3 == 0) {
+                            wrapper.executeExtended();
+                        } else {
+                            wrapper.execute();
+                        }
+                        wrapper.getItems();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        PingResult result = wrapper.execute();
+        PingResult[] items = wrapper.getItems();
+        int numErrors = 0;
+        for (PingResult item : items) {
+            if (item.getSystemStatus() != SystemStatus.OK) {
+                numErrors++;
+            }
+        }
 
+        assertEquals(10, items.length);
+        if (numErrors == 0) {
+            assertEquals(SystemStatus.OK, result.getSystemStatus());
+        } else {
+            assertEquals("There was an error percentage of " + (numErrors * 10) + " in the last runs: an error",
+                    result.getMessage());
+        }
+    }
 
+    @Test
+    public void testHistoryStore_restoredAfterRestart() throws Exception {
+        File file = File.createTempFile("ping-history", ".bin");
+        file.delete();
+        when(delegate.getName()).thenReturn("mock");
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(new PingResult("mock", SystemStatus.OK, "nothing special"));
+        when(delegate.execute(PingLevel.EXTENDED)).thenReturn(new PingResult("mock", SystemStatus.ERROR, "an error"));
+        try {
+            MappedPingHistoryStore store = new MappedPingHistoryStore(file, 10);
+            wrapper = new HistoricalPingExecutorWrapper(delegate, 10, store);
+            wrapper.executeExtended();
+            wrapper.execute();
+            store.close();
+
+            store = new MappedPingHistoryStore(file, 10);
+            wrapper = new HistoricalPingExecutorWrapper(delegate, 10, store);
+            PingResult[] items = wrapper.getItems();
+            PingResult result = wrapper.execute();
+            store.close();
+
+            assertEquals(2, items.length);
+            assertEquals(SystemStatus.OK, items[0].getSystemStatus());
+            assertEquals(SystemStatus.ERROR, items[1].getSystemStatus());
+            assertEquals(SystemStatus.WARNING, result.getSystemStatus());
+            assertEquals("There was an error percentage of 10 in the last runs: "
+                    + HistoricalPingExecutorWrapper.RESTORED_MESSAGE, result.getMessage());
+        } finally {
+            file.delete();
+        }
+    }
 }
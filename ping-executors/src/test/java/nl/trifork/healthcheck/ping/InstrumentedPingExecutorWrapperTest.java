@@ -0,0 +1,91 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class InstrumentedPingExecutorWrapperTest {
+
+    @Mock
+    PingExecutor delegate;
+
+    InstrumentedPingExecutorWrapper wrapper;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        wrapper = new InstrumentedPingExecutorWrapper(delegate);
+    }
+
+    @Test
+    public void testExecute_recordsLatency() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(new PingResult("mock", SystemStatus.OK, "nothing"));
+        wrapper.execute();
+        wrapper.execute();
+
+        assertEquals(2, wrapper.getSnapshot(PingLevel.BASIC).getCount());
+        assertTrue(wrapper.getSnapshot(PingLevel.BASIC).getMaxNanos() > 0);
+        assertEquals(0, wrapper.getSnapshot(PingLevel.EXTENDED).getCount());
+    }
+
+    @Test
+    public void testExecuteThorough_nullResult() throws Exception {
+        when(delegate.execute(PingLevel.THOROUGH)).thenReturn(null);
+
+        assertNull(wrapper.execute(PingLevel.THOROUGH));
+        assertEquals(1, wrapper.getSnapshot(PingLevel.THOROUGH).getCount());
+    }
+
+    @Test
+    public void testExecute_recordsLatencyOfException() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenThrow(new IllegalStateException("for testing only"));
+        try {
+            wrapper.execute();
+            fail("The exception of the delegate should be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals(1, wrapper.getSnapshot(PingLevel.BASIC).getCount());
+        }
+    }
+
+    @Test
+    public void testExecuteThorough_containsStatistics() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(new PingResult("mock", SystemStatus.OK, "nothing"));
+        when(delegate.execute(PingLevel.THOROUGH)).thenReturn(new ThoroughPingResult("mock", SystemStatus.WARNING,
+                "busy", Collections.singletonMap("connections", "5")));
+        wrapper.execute();
+
+        ThoroughPingResult result = wrapper.executeThorough();
+
+        assertEquals(SystemStatus.WARNING, result.getSystemStatus());
+        Map<String, String> values = result.getThoroughExtraValues();
+        assertEquals("5", values.get("connections"));
+        assertEquals("1", values.get("basic.latency_count"));
+        assertEquals("1", values.get("thorough.latency_count"));
+        assertTrue(values.containsKey("basic.latency_p99_ms"));
+        assertTrue(values.containsKey("thorough.latency_max_ms"));
+        assertFalse(values.containsKey("extended.latency_count"));
+    }
+
+    @Test
+    public void testFormatMillis() throws Exception {
+        assertEquals("0.000", InstrumentedPingExecutorWrapper.formatMillis(999));
+        assertEquals("1.005", InstrumentedPingExecutorWrapper.formatMillis(1005000));
+        assertEquals("1234.567", InstrumentedPingExecutorWrapper.formatMillis(1234567890));
+    }
+}
@@ -0,0 +1,56 @@
+package nl.trifork.healthcheck.ping;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketBounds() throws Exception {
+        long[] values = {0, 7, 8, 15, 16, 17, 1000, 1234567, 999999999999L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upperBound = LatencyHistogram.bucketUpperBound(index);
+            assertTrue("upper bound of " + value, upperBound >= value);
+            assertTrue("precision of " + value, upperBound - value <= value / LatencyHistogram.SUB_BUCKETS);
+            if (index > 0) {
+                assertTrue("lower bound of " + value, LatencyHistogram.bucketUpperBound(index - 1) < value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000000L);
+        }
+        histogram.record(-5);
+
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+
+        assertEquals(101, snapshot.getCount());
+        assertEquals(100000000L, snapshot.getMaxNanos());
+        assertEquals(0, snapshot.getPercentileNanos(0));
+        assertInRange(50000000L, snapshot.getPercentileNanos(50));
+        assertInRange(90000000L, snapshot.getPercentileNanos(90));
+        assertInRange(99000000L, snapshot.getPercentileNanos(99));
+        assertEquals(100000000L, snapshot.getPercentileNanos(100));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().getSnapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentileNanos(99));
+        assertEquals(0, snapshot.getMeanNanos());
+    }
+
+    private void assertInRange(long expected, long actual) {
+        assertTrue(expected + " <= " + actual, actual >= expected * 99 / 100);
+        assertTrue(expected + " >= " + actual, actual <= expected + expected / LatencyHistogram.SUB_BUCKETS);
+    }
+}
@@ -0,0 +1,46 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProblemReportTest {
+
+    @Test
+    public void testReport_noProblems() throws Exception {
+        ProblemReport report = new ProblemReport();
+
+        assertEquals(SystemStatus.OK, report.getStatus());
+        assertEquals("OK - All fine.", report.createMessage("All fine."));
+    }
+
+    @Test
+    public void testReport_warnings() throws Exception {
+        ProblemReport report = new ProblemReport();
+        report.report(SystemStatus.WARNING, "first");
+        report.report(SystemStatus.WARNING, "second");
+
+        assertEquals(SystemStatus.WARNING, report.getStatus());
+        assertEquals("WARNING - first, second", report.createMessage("All fine."));
+    }
+
+    @Test
+    public void testReport_mostSevereStatus() throws Exception {
+        ProblemReport report = new ProblemReport();
+        report.report(SystemStatus.ERROR, "broken");
+        report.report(SystemStatus.TIMEOUT_ERROR, "slow");
+        report.report(SystemStatus.MAINTENANCE, "planned");
+
+        assertEquals(SystemStatus.ERROR, report.getStatus());
+        assertEquals("FAILURE - broken, slow, planned", report.createMessage("All fine."));
+    }
+
+    @Test
+    public void testMostSevere() throws Exception {
+        assertEquals(SystemStatus.WARNING, ProblemReport.mostSevere(SystemStatus.OK, SystemStatus.WARNING));
+        assertEquals(SystemStatus.TIMEOUT_ERROR,
+                ProblemReport.mostSevere(SystemStatus.TIMEOUT_ERROR, SystemStatus.MAINTENANCE));
+        assertEquals(SystemStatus.ERROR, ProblemReport.mostSevere(SystemStatus.AUTHENTICATION_ERROR, SystemStatus.ERROR));
+    }
+}
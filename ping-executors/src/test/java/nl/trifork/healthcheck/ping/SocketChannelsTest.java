@@ -0,0 +1,46 @@
+package nl.trifork.healthcheck.ping;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.nio.channels.Channel;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class SocketChannelsTest {
+
+    @Test
+    public void testCountPending() throws Exception {
+        assertEquals(1, SocketChannels.countPending(Arrays.asList(task(true), task(false), task(true))));
+    }
+
+    @Test
+    public void testCloseQuietly() throws Exception {
+        Channel channel = mock(Channel.class);
+        doThrow(new IOException("for testing only")).when(channel).close();
+
+        SocketChannels.closeQuietly(channel);
+
+        verify(channel).close();
+    }
+
+    @Test
+    public void testDescribe() throws Exception {
+        assertEquals("Connection refused", SocketChannels.describe(new ConnectException("Connection refused")));
+        assertEquals("ConnectException", SocketChannels.describe(new ConnectException()));
+    }
+
+    private static SocketChannels.Task task(final boolean done) {
+        return new SocketChannels.Task() {
+            @Override
+            public boolean isDone() {
+                return done;
+            }
+        };
+    }
+}
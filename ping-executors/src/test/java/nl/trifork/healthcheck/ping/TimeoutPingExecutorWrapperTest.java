@@ -0,0 +1,124 @@
+package nl.trifork.healthcheck.ping;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TimeoutPingExecutorWrapperTest {
+
+    @Mock
+    PingExecutor delegate;
+
+    TimeoutPingExecutorWrapper wrapper;
+    CountDownLatch blockDelegate = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        when(delegate.getName()).thenReturn("mock");
+        wrapper = new TimeoutPingExecutorWrapper(delegate, 100, 1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        blockDelegate.countDown();
+        wrapper.shutdown();
+    }
+
+    @Test
+    public void testExecute_withinTimeout() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(new PingResult("mock", SystemStatus.OK, "nothing"));
+
+        PingResult result = wrapper.execute();
+
+        assertEquals(SystemStatus.OK, result.getSystemStatus());
+        assertEquals(0, wrapper.getPendingExecutions());
+    }
+
+    @Test
+    public void testExecute_timeout() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenAnswer(new BlockingAnswer(false));
+
+        PingResult result = wrapper.execute();
+
+        assertEquals(SystemStatus.TIMEOUT_ERROR, result.getSystemStatus());
+        assertEquals("FAILURE - The ping with level BASIC did not finish within 100 ms.", result.getMessage());
+    }
+
+    @Test
+    public void testExecute_tooManyPendingExecutions() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenAnswer(new BlockingAnswer(true));
+
+        assertEquals(SystemStatus.TIMEOUT_ERROR, wrapper.execute().getSystemStatus());
+        assertEquals(1, wrapper.getPendingExecutions());
+
+        PingResult result = wrapper.execute();
+
+        assertEquals(SystemStatus.TIMEOUT_ERROR, result.getSystemStatus());
+        assertEquals("FAILURE - 1 previous executions of the ping are still running, the backend does not respond.",
+                result.getMessage());
+        verify(delegate, times(1)).execute(PingLevel.BASIC);
+    }
+
+    @Test
+    public void testExecute_afterShutdown() throws Exception {
+        wrapper.shutdown();
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                wrapper.execute();
+                fail("A RejectedExecutionException was expected");
+            } catch (RejectedExecutionException e) {
+                assertEquals(0, wrapper.getPendingExecutions());
+            }
+        }
+        verify(delegate, never()).execute(PingLevel.BASIC);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExecute_delegateThrowsException() throws Exception {
+        when(delegate.execute(PingLevel.BASIC)).thenThrow(new IllegalStateException("for testing only"));
+
+        wrapper.execute();
+    }
+
+    /**
+     * Blocks until the test is finished, optionally ignoring interrupts like a hanging remote call would do.
+     */
+    private class BlockingAnswer implements Answer<PingResult> {
+        private final boolean ignoreInterrupts;
+
+        BlockingAnswer(boolean ignoreInterrupts) {
+            this.ignoreInterrupts = ignoreInterrupts;
+        }
+
+        @Override
+        public PingResult answer(InvocationOnMock invocation) throws Throwable {
+            while (true) {
+                try {
+                    blockDelegate.await();
+                    return new PingResult("mock", SystemStatus.OK, "too late");
+                } catch (InterruptedException e) {
+                    if (!ignoreInterrupts) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+}
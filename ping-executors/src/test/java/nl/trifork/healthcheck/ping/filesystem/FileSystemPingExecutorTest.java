@@ -0,0 +1,133 @@
+package nl.trifork.healthcheck.ping.filesystem;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Executes the {@link FileSystemPingExecutor} against temporary directories.
+ */
+public class FileSystemPingExecutorTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testExecute_thorough() throws Exception {
+        File directory = folder.newFolder("index");
+        FileSystemPingExecutor executor = FileSystemPingExecutorBuilder.create()
+                .addDirectory(directory)
+                .setWarningFreePercentage(0)
+                .setErrorFreePercentage(0)
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+
+        assertEquals(pingResult.getMessage(), SystemStatus.OK, pingResult.getSystemStatus());
+        Map<String, String> values = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+        assertTrue(values.containsKey(directory.getPath() + ".usable_bytes"));
+        assertTrue(values.containsKey(directory.getPath() + ".free_percentage"));
+        assertTrue(values.containsKey(directory.getPath() + ".write_ms"));
+        assertEquals(4096, new File(directory, ".healthcheck-probe").length());
+    }
+
+    @Test
+    public void testExecute_basicDoesNotWrite() throws Exception {
+        File directory = folder.newFolder("logs");
+        FileSystemPingExecutor executor = FileSystemPingExecutorBuilder.create()
+                .addDirectory(directory)
+                .setWarningFreePercentage(0)
+                .setErrorFreePercentage(0)
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+        assertFalse(new File(directory, ".healthcheck-probe").exists());
+    }
+
+    @Test
+    public void testExecute_probeFileKeepsItsSize() throws Exception {
+        File directory = folder.newFolder("data");
+        FileSystemPingExecutor executor = FileSystemPingExecutorBuilder.create()
+                .addDirectory(directory)
+                .setWarningFreePercentage(0)
+                .setErrorFreePercentage(0)
+                .build();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(SystemStatus.OK, executor.execute(PingLevel.EXTENDED).getSystemStatus());
+        }
+        assertEquals(4096, new File(directory, ".healthcheck-probe").length());
+    }
+
+    @Test
+    public void testExecute_lowSpace() throws Exception {
+        FileSystemPingExecutor executor = FileSystemPingExecutorBuilder.create()
+                .addDirectory(folder.getRoot())
+                .setWarningFreePercentage(101)
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.WARNING, pingResult.getSystemStatus());
+        assertTrue(pingResult.getMessage().contains("% free space"));
+    }
+
+    @Test
+    public void testExecute_noSpace() throws Exception {
+        FileSystemPingExecutor executor = FileSystemPingExecutorBuilder.create()
+                .addDirectory(folder.getRoot())
+                .setWarningFreePercentage(101)
+                .setErrorFreePercentage(101)
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertTrue(pingResult.getMessage().startsWith("FAILURE - "));
+    }
+
+    @Test
+    public void testExecute_missingDirectory() throws Exception {
+        File missing = new File(folder.getRoot(), "missing");
+        FileSystemPingExecutor executor = new FileSystemPingExecutor("fs", Arrays.asList(folder.getRoot(), missing),
+                ".probe", 0, 0, 0);
+
+        PingResult pingResult = executor.execute(PingLevel.EXTENDED);
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertEquals("FAILURE - " + missing.getPath() + " is not an existing directory", pingResult.getMessage());
+    }
+
+    @Test
+    public void testExecute_slowWrite() throws Exception {
+        FileSystemPingExecutor executor = new FileSystemPingExecutor("fs", Arrays.asList(folder.getRoot()),
+                ".probe", 0, 0, 500) {
+            long now = 0;
+
+            @Override
+            protected long currentTimeNanos() {
+                now += 600000000L;
+                return now;
+            }
+        };
+
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+
+        assertEquals(SystemStatus.WARNING, pingResult.getSystemStatus());
+        assertEquals("WARNING - writing to " + folder.getRoot().getPath() + " took 600 ms, more than 500 ms",
+                pingResult.getMessage());
+    }
+}
@@ -0,0 +1,158 @@
+package nl.trifork.healthcheck.ping.hippo;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.hippo.InMemoryHippoRepository.Operation;
+import org.hippoecm.repository.HippoRepository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Executes the {@link HippoRepositoryPingExecutor} against the {@link InMemoryHippoRepository} instead of mocks.
+ */
+public class HippoRepositoryPingExecutorFunctionalTest {
+    private static final String CLUSTER_NODE_ID = "org.apache.jackrabbit.core.cluster.node_id";
+
+    InMemoryHippoRepository repository;
+    String previousClusterNodeId;
+
+    @Before
+    public void setUp() throws Exception {
+        previousClusterNodeId = System.setProperty(CLUSTER_NODE_ID, "node1");
+        repository = new InMemoryHippoRepository("content/documents");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (previousClusterNodeId == null) {
+            System.clearProperty(CLUSTER_NODE_ID);
+        } else {
+            System.setProperty(CLUSTER_NODE_ID, previousClusterNodeId);
+        }
+    }
+
+    @Test
+    public void testBasic() throws Exception {
+        PingResult pingResult = createExecutor(false, 0, 0).execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+        assertNull(repository.getLastCheck("pingcheck/node1"));
+        assertEquals(0, repository.getLiveSessions());
+    }
+
+    @Test
+    public void testExtended_writesLastCheck() throws Exception {
+        PingResult pingResult = createExecutor(false, 0, 0).execute(PingLevel.EXTENDED);
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+        assertNotNull(repository.getLastCheck("pingcheck/node1"));
+    }
+
+    @Test
+    public void testBasic_missingCheckNode() throws Exception {
+        repository = new InMemoryHippoRepository("content");
+
+        PingResult pingResult = createExecutor(false, 0, 0).execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+    }
+
+    @Test
+    public void testBasic_loginFailure() throws Exception {
+        repository.setFailureRate(Operation.LOGIN, 1.0);
+
+        PingResult pingResult = createExecutor(false, 0, 0).execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.AUTHENTICATION_ERROR, pingResult.getSystemStatus());
+    }
+
+    @Test
+    public void testReuseConnections() throws Exception {
+        HippoRepositoryPingExecutor executor = createExecutor(true, 0, 0);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(SystemStatus.OK, executor.execute(PingLevel.BASIC).getSystemStatus());
+        }
+        assertEquals(1, repository.getCount(Operation.LOGIN));
+        assertEquals(1, repository.getLiveSessions());
+
+        executor.close();
+        assertEquals(0, repository.getLiveSessions());
+    }
+
+    @Test
+    public void testReuseConnections_recoversAfterFailure() throws Exception {
+        HippoRepositoryPingExecutor executor = createExecutor(true, 0, 0);
+        executor.execute(PingLevel.BASIC);
+
+        repository.setFailureRate(Operation.READ, 1.0);
+        assertEquals(SystemStatus.ERROR, executor.execute(PingLevel.BASIC).getSystemStatus());
+        assertEquals(0, repository.getLiveSessions());
+
+        repository.setFailureRate(Operation.READ, 0.0);
+        assertEquals(SystemStatus.OK, executor.execute(PingLevel.BASIC).getSystemStatus());
+        assertEquals(1, repository.getLiveSessions());
+    }
+
+    @Test
+    public void testWriteInterval() throws Exception {
+        HippoRepositoryPingExecutor executor = createExecutor(false, 60000, 0);
+        executor.execute(PingLevel.EXTENDED);
+        int writes = repository.getCount(Operation.WRITE);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(SystemStatus.OK, executor.execute(PingLevel.EXTENDED).getSystemStatus());
+        }
+        assertEquals(writes, repository.getCount(Operation.WRITE));
+    }
+
+    @Test
+    public void testWriteFailure() throws Exception {
+        HippoRepositoryPingExecutor executor = createExecutor(false, 0, 0);
+        executor.execute(PingLevel.EXTENDED);
+        repository.setFailureRate(Operation.WRITE, 1.0);
+
+        assertEquals(SystemStatus.ERROR, executor.execute(PingLevel.EXTENDED).getSystemStatus());
+        assertEquals(SystemStatus.OK, executor.execute(PingLevel.BASIC).getSystemStatus());
+    }
+
+    @Test
+    public void testThorough_staleClusterNode() throws Exception {
+        Calendar longAgo = Calendar.getInstance();
+        longAgo.add(Calendar.HOUR, -1);
+        repository.setLastCheck("pingcheck/node2", longAgo);
+
+        PingResult pingResult = createExecutor(false, 0, 60000).execute(PingLevel.THOROUGH);
+
+        assertEquals(SystemStatus.WARNING, pingResult.getSystemStatus());
+        assertEquals("2", ((ThoroughPingResult) pingResult).getThoroughExtraValues().get("cluster.members"));
+        assertEquals("1", ((ThoroughPingResult) pingResult).getThoroughExtraValues().get("cluster.stale"));
+    }
+
+    private HippoRepositoryPingExecutor createExecutor(boolean reuseConnections, long writeInterval,
+                                                      long staleClusterNodeThreshold) {
+        return createExecutor(repository, reuseConnections, writeInterval, staleClusterNodeThreshold);
+    }
+
+    /**
+     * Creates an executor with the defaults of the builder that connects to the in memory repository.
+     */
+    static HippoRepositoryPingExecutor createExecutor(final InMemoryHippoRepository repository, boolean reuseConnections,
+                                                      long writeInterval, long staleClusterNodeThreshold) {
+        return new HippoRepositoryPingExecutor("memory://", "admin", "admin", "content/documents", null, "pingcheck",
+                reuseConnections, 2, writeInterval, staleClusterNodeThreshold) {
+            @Override
+            HippoRepository createRepository() {
+                return repository.getRepository();
+            }
+        };
+    }
+}
@@ -0,0 +1,123 @@
+package nl.trifork.healthcheck.ping.hippo;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.ping.LatencyHistogram;
+import nl.trifork.healthcheck.ping.hippo.InMemoryHippoRepository.Operation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * <p>Load harness that executes the {@link HippoRepositoryPingExecutor} from concurrent threads against the
+ * {@link InMemoryHippoRepository} and logs the throughput and latency per level. It compares a new connection per
+ * ping with reused connections and a throttled write test. The test is excluded from the normal build, run it with:</p>
+ * <pre>
+ * mvn -pl ping-executors -am test -Dtest=HippoRepositoryPingExecutorLoadIntegrationTest -DfailIfNoTests=false
+ * </pre>
+ * <p>The system properties <code>load.threads</code>, <code>load.duration</code> (ms), <code>load.latency</code> (ms
+ * per repository call) and <code>load.failureRate</code> (0.0 - 1.0 per repository call) change the load.</p>
+ */
+public class HippoRepositoryPingExecutorLoadIntegrationTest {
+    private static final Logger logger = LoggerFactory.getLogger(HippoRepositoryPingExecutorLoadIntegrationTest.class);
+    private static final String CLUSTER_NODE_ID = "org.apache.jackrabbit.core.cluster.node_id";
+
+    private int threads;
+    private long durationMillis;
+    private long latencyMillis;
+    private double failureRate;
+    private String previousClusterNodeId;
+
+    @Before
+    public void setUp() throws Exception {
+        previousClusterNodeId = System.setProperty(CLUSTER_NODE_ID, "node1");
+        threads = Integer.getInteger("load.threads", 8);
+        durationMillis = Long.getLong("load.duration", 2000L);
+        latencyMillis = Long.getLong("load.latency", 2L);
+        failureRate = Double.parseDouble(System.getProperty("load.failureRate", "0.0"));
+        logger.info(String.format(Locale.ENGLISH,
+                "%-12s %-9s %10s %8s %8s %8s %8s %8s %8s %8s",
+                "mode", "level", "pings/s", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms", "logins", "writes"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (previousClusterNodeId == null) {
+            System.clearProperty(CLUSTER_NODE_ID);
+        } else {
+            System.setProperty(CLUSTER_NODE_ID, previousClusterNodeId);
+        }
+    }
+
+    @Test
+    public void testLoad() throws Exception {
+        for (PingLevel pingLevel : PingLevel.values()) {
+            run("new session", pingLevel, false, 0);
+            run("reuse", pingLevel, true, 0);
+            run("reuse+write", pingLevel, true, 1000);
+        }
+    }
+
+    private void run(String mode, final PingLevel pingLevel, boolean reuseConnections, long writeInterval)
+            throws InterruptedException {
+        // The write node exists, like it does after the first ping of a real cluster node
+        InMemoryHippoRepository repository = new InMemoryHippoRepository("content/documents", "pingcheck/node1");
+        for (Operation operation : Operation.values()) {
+            repository.setLatency(operation, latencyMillis);
+            repository.setFailureRate(operation, failureRate);
+        }
+        final HippoRepositoryPingExecutor executor = HippoRepositoryPingExecutorFunctionalTest.createExecutor(
+                repository, reuseConnections, writeInterval, 0);
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final long deadline = System.nanoTime() + durationMillis * 1000000L;
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++) {
+            Thread caller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            long start = System.nanoTime();
+                            SystemStatus status = executor.execute(pingLevel).getSystemStatus();
+                            histogram.record(System.nanoTime() - start);
+                            if (status != SystemStatus.OK) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "ping-load-" + i);
+            caller.start();
+        }
+        done.await();
+        executor.close();
+
+        LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        logger.info(String.format(Locale.ENGLISH,
+                "%-12s %-9s %10.1f %8d %8.2f %8.2f %8.2f %8.2f %8d %8d",
+                mode, pingLevel.name(), snapshot.getCount() * 1000.0 / durationMillis, errors.get(),
+                millis(snapshot.getPercentileNanos(50)), millis(snapshot.getPercentileNanos(90)),
+                millis(snapshot.getPercentileNanos(99)), millis(snapshot.getMaxNanos()),
+                repository.getCount(Operation.LOGIN), repository.getCount(Operation.WRITE)));
+        if (failureRate == 0.0) {
+            assertEquals(0, errors.get());
+        }
+        assertEquals(0, repository.getLiveSessions());
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+}
@@ -15,9 +15,16 @@ import org.mockito.MockitoAnnotations;
 
 import javax.jcr.LoginException;
 import javax.jcr.Node;
+import javax.jcr.NodeIterator;
 import javax.jcr.PathNotFoundException;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
 import javax.jcr.Session;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -73,6 +80,9 @@ public class HippoRepositoryPingExecutorTest {
 
         assertNotNull(thoroughPingResult);
         assertEquals(SystemStatus.OK, thoroughPingResult.getSystemStatus());
+        // The values of the thorough ping are not dropped
+        assertNotNull(thoroughPingResult.getThoroughExtraValues().get("used_memory"));
+        assertEquals("0", thoroughPingResult.getThoroughExtraValues().get("cluster.members"));
 
         verify(spyExecutor).doReadTest(session);
         verify(spyExecutor).doWriteTest(session);
@@ -182,4 +192,279 @@ public class HippoRepositoryPingExecutorTest {
         spyExecutor.obtainSession(hippoRepository);
     }
 
+    @Test
+    public void testReuseConnections_sessionIsPooled() throws Exception {
+        HippoRepositoryPingExecutor reusingExecutor = spy(HippoRepositoryPingExecutorBuilder.create()
+                .setReuseConnections(true).build());
+        doReturn(hippoRepository).when(reusingExecutor).createRepository();
+        when(hippoRepository.login("admin", "admin".toCharArray())).thenReturn(session);
+        when(session.isLive()).thenReturn(true);
+        when(rootNode.getNode(DOCUMENT_PATH)).thenReturn(documentNode);
+
+        assertEquals(SystemStatus.OK, reusingExecutor.execute().getSystemStatus());
+        assertEquals(SystemStatus.OK, reusingExecutor.execute().getSystemStatus());
+
+        verify(reusingExecutor, times(1)).createRepository();
+        verify(hippoRepository, times(1)).login("admin", "admin".toCharArray());
+        verify(session).refresh(false);
+        verify(session, never()).logout();
+    }
+
+    @Test
+    public void testReuseConnections_deadSessionIsReplaced() throws Exception {
+        HippoRepositoryPingExecutor reusingExecutor = spy(HippoRepositoryPingExecutorBuilder.create()
+                .setReuseConnections(true).build());
+        Session secondSession = mock(Session.class);
+        doReturn(hippoRepository).when(reusingExecutor).createRepository();
+        when(hippoRepository.login("admin", "admin".toCharArray())).thenReturn(session, secondSession);
+        when(session.isLive()).thenReturn(false);
+        when(secondSession.getRootNode()).thenReturn(rootNode);
+        when(rootNode.getNode(DOCUMENT_PATH)).thenReturn(documentNode);
+
+        reusingExecutor.execute();
+        assertEquals(SystemStatus.OK, reusingExecutor.execute().getSystemStatus());
+
+        verify(hippoRepository, times(2)).login("admin", "admin".toCharArray());
+        verify(session, never()).refresh(false);
+    }
+
+    @Test
+    public void testReuseConnections_failureEvictsConnections() throws Exception {
+        HippoRepositoryPingExecutor reusingExecutor = spy(HippoRepositoryPingExecutorBuilder.create()
+                .setReuseConnections(true).build());
+        doReturn(hippoRepository).when(reusingExecutor).createRepository();
+        when(hippoRepository.login("admin", "admin".toCharArray())).thenReturn(session);
+        when(session.isLive()).thenReturn(true);
+        when(rootNode.getNode(DOCUMENT_PATH)).thenThrow(new RepositoryException("for testing only"))
+                .thenReturn(documentNode);
+
+        assertEquals(SystemStatus.ERROR, reusingExecutor.execute().getSystemStatus());
+        verify(session).logout();
+        verify(hippoRepository).close();
+
+        assertEquals(SystemStatus.OK, reusingExecutor.execute().getSystemStatus());
+        verify(reusingExecutor, times(2)).createRepository();
+    }
+
+    @Test
+    public void testReuseConnections_missingNodeKeepsConnections() throws Exception {
+        HippoRepositoryPingExecutor reusingExecutor = spy(HippoRepositoryPingExecutorBuilder.create()
+                .setReuseConnections(true).build());
+        doReturn(hippoRepository).when(reusingExecutor).createRepository();
+        when(hippoRepository.login("admin", "admin".toCharArray())).thenReturn(session);
+        when(session.isLive()).thenReturn(true);
+        when(rootNode.getNode(DOCUMENT_PATH)).thenThrow(new PathNotFoundException("for testing only"))
+                .thenReturn(documentNode);
+
+        assertEquals(SystemStatus.ERROR, reusingExecutor.execute().getSystemStatus());
+        assertEquals(SystemStatus.OK, reusingExecutor.execute().getSystemStatus());
+
+        verify(reusingExecutor, times(1)).createRepository();
+        verify(hippoRepository, times(1)).login("admin", "admin".toCharArray());
+        verify(session, never()).logout();
+        verify(hippoRepository, never()).close();
+    }
+
+    @Test
+    public void testReuseConnections_warningKeepsConnections() throws Exception {
+        HippoRepositoryPingExecutor reusingExecutor = spy(HippoRepositoryPingExecutorBuilder.create()
+                .setReuseConnections(true).build());
+        doReturn(hippoRepository).when(reusingExecutor).createRepository();
+        when(hippoRepository.login("admin", "admin".toCharArray())).thenReturn(session);
+        when(session.isLive()).thenReturn(true);
+        when(rootNode.getNode(DOCUMENT_PATH)).thenReturn(documentNode);
+        doThrow(new HippoPingException("WARNING - for testing only", new RepositoryException("for testing only"),
+                SystemStatus.WARNING)).doNothing().when(reusingExecutor).doThrottledWriteTest(session);
+
+        assertEquals(SystemStatus.WARNING, reusingExecutor.executeExtended().getSystemStatus());
+        assertEquals(SystemStatus.OK, reusingExecutor.executeExtended().getSystemStatus());
+
+        verify(reusingExecutor, times(1)).createRepository();
+        verify(session, never()).logout();
+        verify(hippoRepository, never()).close();
+    }
+
+    @Test
+    public void testNoReuse_sessionIsClosed() throws Exception {
+        doReturn(hippoRepository).when(spyExecutor).createRepository();
+        when(hippoRepository.login("admin", "admin".toCharArray())).thenReturn(session);
+        when(session.isLive()).thenReturn(true);
+        when(rootNode.getNode(DOCUMENT_PATH)).thenReturn(documentNode);
+
+        spyExecutor.execute();
+        spyExecutor.execute();
+
+        verify(spyExecutor, times(2)).createRepository();
+        verify(session, times(2)).logout();
+    }
+
+    @Test
+    public void testThrottledWriteTest_writesOncePerInterval() throws Exception {
+        HippoRepositoryPingExecutor throttledExecutor = createThrottledExecutor();
+        Node clusterNode = setupWriteNode();
+
+        throttledExecutor.doThrottledWriteTest(session);
+        throttledExecutor.doThrottledWriteTest(session);
+        verify(clusterNode, times(1)).save();
+
+        doReturn(1060000L).when(throttledExecutor).currentTimeMillis();
+        throttledExecutor.doThrottledWriteTest(session);
+        verify(clusterNode, times(2)).save();
+    }
+
+    @Test
+    public void testThrottledWriteTest_usesPersistedLastCheck() throws Exception {
+        HippoRepositoryPingExecutor throttledExecutor = createThrottledExecutor();
+        Node clusterNode = setupWriteNode();
+        Property lastCheck = mock(Property.class);
+        Calendar written = Calendar.getInstance();
+        written.setTimeInMillis(990000L);
+        when(clusterNode.hasProperty("lastcheck")).thenReturn(true);
+        when(clusterNode.getProperty("lastcheck")).thenReturn(lastCheck);
+        when(lastCheck.getDate()).thenReturn(written);
+
+        throttledExecutor.doThrottledWriteTest(session);
+
+        verify(clusterNode, never()).save();
+    }
+
+    @Test
+    public void testThrottledWriteTest_reportsLastFailure() throws Exception {
+        HippoRepositoryPingExecutor throttledExecutor = createThrottledExecutor();
+        doReturn(hippoRepository).when(throttledExecutor).obtainRepository();
+        doReturn(session).when(throttledExecutor).obtainSession(hippoRepository);
+        doNothing().when(throttledExecutor).doReadTest(session);
+        doThrow(new HippoPingException("write failed", SystemStatus.ERROR)).when(throttledExecutor).doWriteTest(session);
+        setupWriteNode();
+
+        assertEquals(SystemStatus.ERROR, throttledExecutor.executeExtended().getSystemStatus());
+        PingResult pingResult = throttledExecutor.executeExtended();
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertEquals("write failed", pingResult.getMessage());
+        verify(throttledExecutor, times(1)).doWriteTest(session);
+    }
+
+    @Test
+    public void testThrottledWriteTest_writePathCannotBeObtained() throws Exception {
+        HippoRepositoryPingExecutor throttledExecutor = createThrottledExecutor();
+        doReturn(hippoRepository).when(throttledExecutor).obtainRepository();
+        doReturn(session).when(throttledExecutor).obtainSession(hippoRepository);
+        doNothing().when(throttledExecutor).doReadTest(session);
+        when(rootNode.hasNode("pingcheck")).thenReturn(false);
+        when(rootNode.addNode("pingcheck")).thenThrow(new RepositoryException("for testing only"));
+
+        assertEquals(SystemStatus.ERROR, throttledExecutor.executeExtended().getSystemStatus());
+        PingResult pingResult = throttledExecutor.execute(PingLevel.THOROUGH);
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertEquals("FAILURE - Could not obtain the write path node 'pingcheck'.", pingResult.getMessage());
+        assertEquals("FAILURE", ((ThoroughPingResult) pingResult).getThoroughExtraValues().get("write_test.status"));
+        // Reading the last check does not create nodes, the failed write is throttled
+        verify(rootNode, times(1)).addNode("pingcheck");
+        verify(session, never()).save();
+    }
+
+    @Test
+    public void testThrottledWriteTest_thoroughContainsWriteValues() throws Exception {
+        HippoRepositoryPingExecutor throttledExecutor = createThrottledExecutor();
+        doReturn(hippoRepository).when(throttledExecutor).obtainRepository();
+        doReturn(session).when(throttledExecutor).obtainSession(hippoRepository);
+        doNothing().when(throttledExecutor).doReadTest(session);
+        doNothing().when(throttledExecutor).doWriteTest(session);
+        setupWriteNode();
+
+        PingResult pingResult = throttledExecutor.execute(PingLevel.THOROUGH);
+
+        Map<String, String> values = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+        assertEquals("OK", values.get("write_test.status"));
+        assertEquals("0", values.get("write_test.age_ms"));
+        assertNotNull(values.get("write_test.latency_ms"));
+    }
+
+    private HippoRepositoryPingExecutor createThrottledExecutor() {
+        HippoRepositoryPingExecutor throttledExecutor = spy(HippoRepositoryPingExecutorBuilder.create()
+                .setWriteInterval(60000).build());
+        doReturn(1000000L).when(throttledExecutor).currentTimeMillis();
+        return throttledExecutor;
+    }
+
+    private Node setupWriteNode() throws Exception {
+        System.setProperty("org.apache.jackrabbit.core.cluster.node_id", "testnode");
+        Node writeNode = mock(Node.class);
+        Node clusterNode = mock(Node.class);
+        when(rootNode.hasNode("pingcheck")).thenReturn(true);
+        when(rootNode.getNode("pingcheck")).thenReturn(writeNode);
+        when(writeNode.hasNode("testnode")).thenReturn(true);
+        when(writeNode.getNode("testnode")).thenReturn(clusterNode);
+        return clusterNode;
+    }
+
+    @Test
+    public void testExecuteThorough_clusterFreshness() throws Exception {
+        HippoRepositoryPingExecutor clusterExecutor = spy(HippoRepositoryPingExecutorBuilder.create()
+                .setStaleClusterNodeThreshold(60000).build());
+        doReturn(1000000L).when(clusterExecutor).currentTimeMillis();
+        doReturn(hippoRepository).when(clusterExecutor).obtainRepository();
+        doReturn(session).when(clusterExecutor).obtainSession(hippoRepository);
+        doNothing().when(clusterExecutor).doReadTest(session);
+        doNothing().when(clusterExecutor).doThrottledWriteTest(session);
+        setupClusterNodes(clusterNode("node2", 900000L), clusterNode("node1", 990000L));
+
+        PingResult pingResult = clusterExecutor.execute(PingLevel.THOROUGH);
+
+        assertEquals(SystemStatus.WARNING, pingResult.getSystemStatus());
+        assertTrue(pingResult.getMessage().endsWith("node2"));
+        Map<String, String> values = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+        assertEquals("2", values.get("cluster.members"));
+        assertEquals("1", values.get("cluster.stale"));
+        assertEquals("10000", values.get("cluster.node1.lag_ms"));
+        assertEquals("100000", values.get("cluster.node2.lag_ms"));
+        assertEquals("1970-01-01T00:16:30.000Z", values.get("cluster.node1.lastcheck"));
+        // The cluster nodes are reported sorted by id
+        List<String> keys = new ArrayList<String>(values.keySet());
+        assertTrue(keys.indexOf("cluster.node1.lag_ms") < keys.indexOf("cluster.node2.lastcheck"));
+    }
+
+    @Test
+    public void testExecuteThorough_clusterFresh() throws Exception {
+        HippoRepositoryPingExecutor clusterExecutor = spy(HippoRepositoryPingExecutorBuilder.create()
+                .setStaleClusterNodeThreshold(60000).build());
+        doReturn(1000000L).when(clusterExecutor).currentTimeMillis();
+        doReturn(hippoRepository).when(clusterExecutor).obtainRepository();
+        doReturn(session).when(clusterExecutor).obtainSession(hippoRepository);
+        doNothing().when(clusterExecutor).doReadTest(session);
+        doNothing().when(clusterExecutor).doThrottledWriteTest(session);
+        setupClusterNodes(clusterNode("node1", 990000L), clusterNode("node2", 980000L));
+
+        PingResult pingResult = clusterExecutor.execute(PingLevel.THOROUGH);
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+        assertEquals("0", ((ThoroughPingResult) pingResult).getThoroughExtraValues().get("cluster.stale"));
+    }
+
+    private void setupClusterNodes(Node... clusterNodes) throws Exception {
+        Node writeNode = mock(Node.class);
+        NodeIterator iterator = mock(NodeIterator.class);
+        when(rootNode.hasNode("pingcheck")).thenReturn(true);
+        when(rootNode.getNode("pingcheck")).thenReturn(writeNode);
+        when(writeNode.getNodes()).thenReturn(iterator);
+        Boolean[] hasNext = new Boolean[clusterNodes.length];
+        Arrays.fill(hasNext, Boolean.TRUE);
+        hasNext[hasNext.length - 1] = Boolean.FALSE;
+        when(iterator.hasNext()).thenReturn(true, hasNext);
+        when(iterator.nextNode()).thenReturn(clusterNodes[0], Arrays.copyOfRange(clusterNodes, 1, clusterNodes.length));
+    }
+
+    private Node clusterNode(String name, long lastCheckMillis) throws Exception {
+        Node clusterNode = mock(Node.class);
+        Property lastCheck = mock(Property.class);
+        Calendar written = Calendar.getInstance();
+        written.setTimeInMillis(lastCheckMillis);
+        when(clusterNode.getName()).thenReturn(name);
+        when(clusterNode.hasProperty("lastcheck")).thenReturn(true);
+        when(clusterNode.getProperty("lastcheck")).thenReturn(lastCheck);
+        when(lastCheck.getDate()).thenReturn(written);
+        return clusterNode;
+    }
 }
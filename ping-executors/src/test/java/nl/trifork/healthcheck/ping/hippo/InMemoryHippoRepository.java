@@ -0,0 +1,330 @@
+package nl.trifork.healthcheck.ping.hippo;
+
+import org.hippoecm.repository.HippoRepository;
+
+import javax.jcr.ItemExistsException;
+import javax.jcr.LoginException;
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.PathNotFoundException;
+import javax.jcr.Property;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Stand-in for a Hippo repository that keeps the nodes in memory. It supports the part of the JCR api that the
+ * {@link HippoRepositoryPingExecutor} uses: logging in, reading and adding nodes, the lastcheck property and saving.
+ * Other methods throw an UnsupportedOperationException.</p>
+ * <p>Every {@link Operation} can be given a latency and a failure rate, a failing operation throws a
+ * RepositoryException (a LoginException for logging in). The counters show how often each operation was done.</p>
+ * <p>Changes are visible to all sessions immediately, there is no transient space.</p>
+ */
+public class InMemoryHippoRepository {
+    public enum Operation {
+        LOGIN, READ, WRITE
+    }
+
+    private final MemoryNode root = new MemoryNode("");
+    private final Map<Operation, Long> latencies = new EnumMap<Operation, Long>(Operation.class);
+    private final Map<Operation, Double> failureRates = new EnumMap<Operation, Double>(Operation.class);
+    private final Map<Operation, AtomicInteger> counters = new EnumMap<Operation, AtomicInteger>(Operation.class);
+    private final AtomicInteger liveSessions = new AtomicInteger();
+    private final Random random = new Random();
+
+    public InMemoryHippoRepository(String... paths) {
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, 0L);
+            failureRates.put(operation, 0.0);
+            counters.put(operation, new AtomicInteger());
+        }
+        for (String path : paths) {
+            MemoryNode node = root;
+            for (String name : path.split("/")) {
+                node = node.getOrAddChild(name);
+            }
+        }
+    }
+
+    public synchronized void setLatency(Operation operation, long millis) {
+        latencies.put(operation, millis);
+    }
+
+    /**
+     * @param operation Operation to fail
+     * @param rate      fraction of the calls that fail, 0.0 never fails and 1.0 always fails
+     */
+    public synchronized void setFailureRate(Operation operation, double rate) {
+        failureRates.put(operation, rate);
+    }
+
+    public int getCount(Operation operation) {
+        return counters.get(operation).get();
+    }
+
+    public int getLiveSessions() {
+        return liveSessions.get();
+    }
+
+    /**
+     * Sets a property of the node at the path directly, like another cluster node would.
+     */
+    public void setLastCheck(String path, Calendar lastCheck) {
+        MemoryNode node = root;
+        for (String name : path.split("/")) {
+            node = node.getOrAddChild(name);
+        }
+        node.setProperty("lastcheck", lastCheck);
+    }
+
+    public Calendar getLastCheck(String path) {
+        MemoryNode node = root;
+        for (String name : path.split("/")) {
+            node = node.getChild(name);
+            if (node == null) {
+                return null;
+            }
+        }
+        return (Calendar) node.getProperty("lastcheck");
+    }
+
+    public HippoRepository getRepository() {
+        return proxy(HippoRepository.class, new Handler() {
+            @Override
+            Object handle(String method, Object[] args) throws RepositoryException {
+                if (method.equals("login")) {
+                    return login();
+                } else if (method.equals("close")) {
+                    return null;
+                } else if (method.equals("getLocation")) {
+                    return "memory://";
+                }
+                return unsupported(method);
+            }
+        });
+    }
+
+    private Session login() throws RepositoryException {
+        perform(Operation.LOGIN);
+        liveSessions.incrementAndGet();
+        return proxy(Session.class, new Handler() {
+            private volatile boolean live = true;
+
+            @Override
+            Object handle(String method, Object[] args) throws RepositoryException {
+                if (method.equals("isLive")) {
+                    return live;
+                } else if (method.equals("logout")) {
+                    if (live) {
+                        live = false;
+                        liveSessions.decrementAndGet();
+                    }
+                    return null;
+                }
+                if (!live) {
+                    throw new RepositoryException("The session is logged out");
+                }
+                if (method.equals("getRootNode")) {
+                    perform(Operation.READ);
+                    return nodeProxy(root);
+                } else if (method.equals("refresh")) {
+                    perform(Operation.READ);
+                    return null;
+                } else if (method.equals("save")) {
+                    perform(Operation.WRITE);
+                    return null;
+                } else if (method.equals("hasPendingChanges")) {
+                    return false;
+                }
+                return unsupported(method);
+            }
+        });
+    }
+
+    private Node nodeProxy(final MemoryNode node) {
+        return proxy(Node.class, new Handler() {
+            @Override
+            Object handle(String method, Object[] args) throws RepositoryException {
+                if (method.equals("getName")) {
+                    return node.name;
+                } else if (method.equals("hasNode")) {
+                    return node.find((String) args[0]) != null;
+                } else if (method.equals("getNode")) {
+                    perform(Operation.READ);
+                    MemoryNode child = node.find((String) args[0]);
+                    if (child == null) {
+                        throw new PathNotFoundException((String) args[0]);
+                    }
+                    return nodeProxy(child);
+                } else if (method.equals("addNode")) {
+                    String name = (String) args[0];
+                    if (node.getChild(name) != null) {
+                        throw new ItemExistsException(name);
+                    }
+                    return nodeProxy(node.getOrAddChild(name));
+                } else if (method.equals("getNodes") && args == null) {
+                    perform(Operation.READ);
+                    return nodeIterator(node.getChildren());
+                } else if (method.equals("setProperty") && args.length == 2 && args[1] instanceof Calendar) {
+                    node.setProperty((String) args[0], args[1]);
+                    return null;
+                } else if (method.equals("hasProperty")) {
+                    return node.getProperty((String) args[0]) != null;
+                } else if (method.equals("getProperty")) {
+                    Object value = node.getProperty((String) args[0]);
+                    if (value == null) {
+                        throw new PathNotFoundException((String) args[0]);
+                    }
+                    return propertyProxy(value);
+                } else if (method.equals("save")) {
+                    perform(Operation.WRITE);
+                    return null;
+                }
+                return unsupported(method);
+            }
+        });
+    }
+
+    private NodeIterator nodeIterator(List<MemoryNode> nodes) {
+        final Iterator<MemoryNode> iterator = nodes.iterator();
+        return proxy(NodeIterator.class, new Handler() {
+            @Override
+            Object handle(String method, Object[] args) throws RepositoryException {
+                if (method.equals("hasNext")) {
+                    return iterator.hasNext();
+                } else if (method.equals("nextNode") || method.equals("next")) {
+                    return nodeProxy(iterator.next());
+                }
+                return unsupported(method);
+            }
+        });
+    }
+
+    private Property propertyProxy(final Object value) {
+        return proxy(Property.class, new Handler() {
+            @Override
+            Object handle(String method, Object[] args) throws RepositoryException {
+                if (method.equals("getDate")) {
+                    return value;
+                } else if (method.equals("getString")) {
+                    return String.valueOf(value);
+                }
+                return unsupported(method);
+            }
+        });
+    }
+
+    private void perform(Operation operation) throws RepositoryException {
+        long latency;
+        double failureRate;
+        boolean fail;
+        synchronized (this) {
+            latency = latencies.get(operation);
+            failureRate = failureRates.get(operation);
+            fail = failureRate > 0.0 && random.nextDouble() < failureRate;
+        }
+        counters.get(operation).incrementAndGet();
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RepositoryException("Interrupted while waiting for the repository", e);
+            }
+        }
+        if (fail) {
+            if (operation == Operation.LOGIN) {
+                throw new LoginException("Injected failure of " + operation);
+            }
+            throw new RepositoryException("Injected failure of " + operation);
+        }
+    }
+
+    private static Object unsupported(String method) {
+        throw new UnsupportedOperationException("The in memory repository does not support " + method);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return (T) Proxy.newProxyInstance(InMemoryHippoRepository.class.getClassLoader(), new Class[]{type}, handler);
+    }
+
+    /**
+     * Dispatches on the name of the method, the methods of Object are handled here.
+     */
+    private abstract static class Handler implements InvocationHandler {
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else if (name.equals("toString")) {
+                return "InMemory" + Arrays.toString(proxy.getClass().getInterfaces());
+            }
+            // The RepositoryExceptions are declared by the JCR methods, so they reach the caller unwrapped
+            return handle(name, args);
+        }
+
+        abstract Object handle(String method, Object[] args) throws RepositoryException;
+    }
+
+    private static class MemoryNode {
+        private final String name;
+        private final Map<String, MemoryNode> children = new LinkedHashMap<String, MemoryNode>();
+        private final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+
+        private MemoryNode(String name) {
+            this.name = name;
+        }
+
+        private synchronized MemoryNode getChild(String childName) {
+            return children.get(childName);
+        }
+
+        private synchronized MemoryNode getOrAddChild(String childName) {
+            MemoryNode child = children.get(childName);
+            if (child == null) {
+                child = new MemoryNode(childName);
+                children.put(childName, child);
+            }
+            return child;
+        }
+
+        private synchronized List<MemoryNode> getChildren() {
+            return new ArrayList<MemoryNode>(children.values());
+        }
+
+        private MemoryNode find(String relativePath) {
+            MemoryNode node = this;
+            for (String part : relativePath.split("/")) {
+                node = node.getChild(part);
+                if (node == null) {
+                    return null;
+                }
+            }
+            return node;
+        }
+
+        private synchronized void setProperty(String propertyName, Object value) {
+            properties.put(propertyName, value);
+        }
+
+        private synchronized Object getProperty(String propertyName) {
+            return properties.get(propertyName);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package nl.trifork.healthcheck.ping.history;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappedPingHistoryStoreTest {
+    File file;
+    MappedPingHistoryStore store;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("ping-history", ".bin");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (store != null) {
+            store.close();
+        }
+        file.delete();
+    }
+
+    @Test
+    public void testAppendAndReload() throws Exception {
+        store = new MappedPingHistoryStore(file, 10);
+        store.append(new PingHistoryRecord(1000, PingLevel.BASIC, SystemStatus.OK, 1500, "fine".hashCode()));
+        store.append(new PingHistoryRecord(2000, PingLevel.THOROUGH, SystemStatus.ERROR, 2500, "down".hashCode()));
+        store.close();
+
+        store = new MappedPingHistoryStore(file, 10);
+        List<PingHistoryRecord> records = store.load(10);
+
+        assertEquals(2, records.size());
+        assertEquals(1000, records.get(0).getTimestamp());
+        assertEquals(PingLevel.THOROUGH, records.get(1).getPingLevel());
+        assertEquals(SystemStatus.ERROR, records.get(1).getSystemStatus());
+        assertEquals(2500, records.get(1).getLatencyNanos());
+        assertEquals("down".hashCode(), records.get(1).getMessageHash());
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+        store = new MappedPingHistoryStore(file, 5);
+        for (int i = 0; i < 12; i++) {
+            store.append(new PingHistoryRecord(i, PingLevel.BASIC, SystemStatus.OK, i, 0));
+        }
+        store.close();
+
+        store = new MappedPingHistoryStore(file, 5);
+        List<PingHistoryRecord> records = store.load(3);
+
+        assertEquals(3, records.size());
+        assertEquals(9, records.get(0).getTimestamp());
+        assertEquals(11, records.get(2).getTimestamp());
+
+        store.append(new PingHistoryRecord(12, PingLevel.BASIC, SystemStatus.OK, 12, 0));
+        assertEquals(12, store.load(1).get(0).getTimestamp());
+    }
+
+    @Test
+    public void testTornRecordIsSkipped() throws Exception {
+        store = new MappedPingHistoryStore(file, 5);
+        for (int i = 0; i < 3; i++) {
+            store.append(new PingHistoryRecord(i, PingLevel.BASIC, SystemStatus.OK, i, 0));
+        }
+        store.close();
+
+        // Damage the timestamp of the last record, like a crash in the middle of writing it
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(MappedPingHistoryStore.HEADER_SIZE + 2 * MappedPingHistoryStore.RECORD_SIZE + 8);
+        raf.writeLong(12345);
+        raf.close();
+
+        store = new MappedPingHistoryStore(file, 5);
+        List<PingHistoryRecord> records = store.load(5);
+
+        assertEquals(2, records.size());
+        assertEquals(1, records.get(1).getTimestamp());
+    }
+
+    @Test
+    public void testOtherCapacityStartsAgain() throws Exception {
+        store = new MappedPingHistoryStore(file, 5);
+        store.append(new PingHistoryRecord(1, PingLevel.BASIC, SystemStatus.OK, 1, 0));
+        store.close();
+
+        store = new MappedPingHistoryStore(file, 8);
+
+        assertTrue(store.load(8).isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+package nl.trifork.healthcheck.ping.history;
+
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PingHistoryTest {
+    private static final long START = 1350000000000L;
+
+    PingHistory pingHistory;
+
+    @Before
+    public void setUp() throws Exception {
+        pingHistory = new PingHistory();
+    }
+
+    @Test
+    public void testGetRollup() throws Exception {
+        pingHistory.record(START, SystemStatus.OK, 2000000, "fine");
+        pingHistory.record(START + 500, SystemStatus.TIMEOUT_ERROR, 6000000, "slow");
+        pingHistory.record(START + 1500, SystemStatus.OK, 1000000, "fine again");
+
+        PingRollup rollup = pingHistory.getRollup(PingHistory.ONE_MINUTE, START + 2000);
+
+        assertEquals(3, rollup.getTotalCount());
+        assertEquals(2, rollup.getCount(SystemStatus.OK));
+        assertEquals(1, rollup.getProblemCount());
+        assertEquals(33, rollup.getProblemPercentage());
+        assertEquals(1000000, rollup.getMinLatencyNanos());
+        assertEquals(3000000, rollup.getAvgLatencyNanos());
+        assertEquals(6000000, rollup.getMaxLatencyNanos());
+        assertEquals("fine again", rollup.getLastMessage());
+        assertEquals("slow", rollup.getLastProblemMessage());
+    }
+
+    @Test
+    public void testGetRollup_windows() throws Exception {
+        pingHistory.record(START, SystemStatus.ERROR, 1000, "down");
+        pingHistory.record(START + 4 * PingHistory.ONE_MINUTE, SystemStatus.OK, 1000, "fine");
+
+        long now = START + 4 * PingHistory.ONE_MINUTE + 1000;
+        assertEquals(0, pingHistory.getRollup(PingHistory.ONE_MINUTE, now).getProblemCount());
+        assertEquals(1, pingHistory.getRollup(PingHistory.FIVE_MINUTES, now).getProblemCount());
+        assertEquals(2, pingHistory.getRollup(PingHistory.ONE_HOUR, now).getTotalCount());
+    }
+
+    @Test
+    public void testGetRollup_bucketsAreReused() throws Exception {
+        pingHistory.record(START, SystemStatus.ERROR, 1000, "down");
+        pingHistory.record(START + 2 * PingHistory.ONE_HOUR, SystemStatus.OK, 1000, "fine");
+
+        PingRollup rollup = pingHistory.getRollup(PingHistory.ONE_HOUR, START + 2 * PingHistory.ONE_HOUR);
+
+        assertEquals(1, rollup.getTotalCount());
+        assertEquals(0, rollup.getProblemCount());
+        assertNull(rollup.getLastProblemMessage());
+    }
+
+    @Test
+    public void testGetRollup_empty() throws Exception {
+        PingRollup rollup = pingHistory.getRollup(PingHistory.FIVE_MINUTES, START);
+
+        assertEquals(0, rollup.getTotalCount());
+        assertEquals(0, rollup.getProblemPercentage());
+        assertEquals(0, rollup.getMinLatencyNanos());
+        assertNull(rollup.getLastMessage());
+    }
+}
@@ -0,0 +1,106 @@
+package nl.trifork.healthcheck.ping.history;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TimeWindowPingExecutorWrapperTest {
+
+    @Mock
+    PingExecutor delegate;
+
+    TimeWindowPingExecutorWrapper wrapper;
+    long now = 1350000000000L;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        when(delegate.getName()).thenReturn("mock");
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(new PingResult("mock", SystemStatus.OK, "nothing special"));
+        when(delegate.execute(PingLevel.EXTENDED)).thenReturn(new PingResult("mock", SystemStatus.TIMEOUT_ERROR, "too slow"));
+        wrapper = new TimeWindowPingExecutorWrapper(delegate, PingHistory.FIVE_MINUTES, 5) {
+            @Override
+            protected long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void testExecute_warningWithinWindow() throws Exception {
+        for (int i = 0; i < 8; i++) {
+            wrapper.execute();
+            now += 1000;
+        }
+        PingResult problem = wrapper.executeExtended();
+        assertEquals(SystemStatus.TIMEOUT_ERROR, problem.getSystemStatus());
+
+        now += 1000;
+        PingResult result = wrapper.execute();
+
+        assertEquals(SystemStatus.WARNING, result.getSystemStatus());
+        assertEquals("There was an error percentage of 10 in the last 300 seconds: too slow", result.getMessage());
+    }
+
+    @Test
+    public void testExecute_okAfterWindow() throws Exception {
+        wrapper.executeExtended();
+        now += 1000;
+        assertEquals(SystemStatus.WARNING, wrapper.execute().getSystemStatus());
+
+        now += PingHistory.FIVE_MINUTES + 5000;
+
+        assertEquals(SystemStatus.OK, wrapper.execute().getSystemStatus());
+    }
+
+    @Test
+    public void testExecuteThorough_containsRollups() throws Exception {
+        when(delegate.execute(PingLevel.THOROUGH)).thenReturn(new PingResult("mock", SystemStatus.OK, "thorough"));
+        wrapper.executeExtended();
+        now += 2 * PingHistory.ONE_MINUTE;
+
+        ThoroughPingResult result = wrapper.executeThorough();
+
+        assertEquals("1", result.getThoroughExtraValues().get("history.1m.count"));
+        assertEquals("0", result.getThoroughExtraValues().get("history.1m.problems"));
+        assertEquals("2", result.getThoroughExtraValues().get("history.5m.count"));
+        assertEquals("1", result.getThoroughExtraValues().get("history.1h.problems"));
+    }
+
+    @Test
+    public void testExecuteThorough_warningKeepsExtraValues() throws Exception {
+        Map<String, String> values = new HashMap<String, String>();
+        values.put("nodes", "3");
+        when(delegate.execute(PingLevel.THOROUGH))
+                .thenReturn(new ThoroughPingResult("mock", SystemStatus.OK, "thorough", values));
+        wrapper.executeExtended();
+        now += 1000;
+
+        ThoroughPingResult result = wrapper.executeThorough();
+
+        assertEquals(SystemStatus.WARNING, result.getSystemStatus());
+        assertEquals("3", result.getThoroughExtraValues().get("nodes"));
+        assertEquals("1", result.getThoroughExtraValues().get("history.1m.problems"));
+    }
+
+    @Test
+    public void testExecute_nullResult() throws Exception {
+        when(delegate.execute(PingLevel.THOROUGH)).thenReturn(null);
+
+        assertNull(wrapper.execute(PingLevel.THOROUGH));
+        assertEquals(0, wrapper.getPingHistory().getRollup(PingHistory.ONE_MINUTE, now).getTotalCount());
+    }
+}
@@ -0,0 +1,257 @@
+package nl.trifork.healthcheck.ping.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.AddressResolver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Executes the {@link HttpEndpointPingExecutor} against a local http server.
+ */
+public class HttpEndpointPingExecutorTest {
+    HttpServer server;
+    ExecutorService serverThreads;
+    String baseUrl;
+    Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+    HttpEndpointPingExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ok", new Responder(200, "fine", false, 0));
+        server.createContext("/chunked", new Responder(200, "fine in chunks", true, 0));
+        server.createContext("/error", new Responder(500, "broken", false, 0));
+        server.createContext("/slow", new Responder(200, "slow", false, 300));
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (executor != null) {
+            executor.close();
+        }
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    public void testExecute_allOk() throws Exception {
+        executor = HttpEndpointPingExecutorBuilder.create()
+                .addEndpoint("ok", baseUrl + "/ok")
+                .addEndpoint("chunked", baseUrl + "/chunked")
+                .addEndpoint("error", baseUrl + "/error?debug=true", 500, 1000)
+                .build();
+
+        PingResult pingResult = executor.execute();
+
+        assertEquals(pingResult.getMessage(), SystemStatus.OK, pingResult.getSystemStatus());
+    }
+
+    @Test
+    public void testExecute_unexpectedStatus() throws Exception {
+        executor = HttpEndpointPingExecutorBuilder.create()
+                .addEndpoint("ok", baseUrl + "/ok")
+                .addEndpoint("error", baseUrl + "/error")
+                .build();
+
+        PingResult pingResult = executor.execute();
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertEquals("FAILURE - 1 of 2 http endpoints failed: error (status 500, expected 200)", pingResult.getMessage());
+    }
+
+    @Test
+    public void testExecute_thorough() throws Exception {
+        executor = HttpEndpointPingExecutorBuilder.create()
+                .addEndpoint("ok", baseUrl + "/ok")
+                .addEndpoint("missing", baseUrl + "/missing")
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+
+        Map<String, String> values = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+        assertEquals("200", values.get("ok.status"));
+        assertEquals("OK", values.get("ok.result"));
+        assertEquals("404", values.get("missing.status"));
+        assertEquals("status 404, expected 200", values.get("missing.result"));
+        assertTrue(Long.parseLong(values.get("ok.latency_ms")) >= 0);
+    }
+
+    @Test
+    public void testExecute_endpointsAreCheckedConcurrently() throws Exception {
+        executor = HttpEndpointPingExecutorBuilder.create()
+                .addEndpoint("slow1", baseUrl + "/slow")
+                .addEndpoint("slow2", baseUrl + "/slow")
+                .addEndpoint("slow3", baseUrl + "/slow")
+                .addEndpoint("slow4", baseUrl + "/slow")
+                .build();
+
+        long start = System.currentTimeMillis();
+        PingResult pingResult = executor.execute();
+        long duration = System.currentTimeMillis() - start;
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+        assertTrue("The ping took " + duration + " ms", duration < 1000);
+    }
+
+    @Test
+    public void testExecute_timeout() throws Exception {
+        executor = HttpEndpointPingExecutorBuilder.create()
+                .addEndpoint("ok", baseUrl + "/ok")
+                .addEndpoint("slow", baseUrl + "/slow", 200, 100)
+                .build();
+
+        PingResult pingResult = executor.execute();
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertEquals("FAILURE - 1 of 2 http endpoints failed: slow (no response within 100 ms)",
+                pingResult.getMessage());
+    }
+
+    @Test
+    public void testExecute_lookupCountsAgainstTimeout() throws Exception {
+        AddressResolver slowResolver = new AddressResolver(60000) {
+            @Override
+            protected InetSocketAddress lookup(String host, int port) {
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.lookup(host, port);
+            }
+        };
+        executor = new HttpEndpointPingExecutor("http", Arrays.asList(
+                new HttpEndpoint("ok", baseUrl + "/ok", 200, 100)), slowResolver);
+
+        PingResult pingResult = executor.execute();
+        assertEquals("FAILURE - 1 of 1 http endpoints failed: ok (no response within 100 ms)",
+                pingResult.getMessage());
+
+        // The address is kept, the next ping does not wait for the lookup
+        pingResult = executor.execute();
+        assertEquals(pingResult.getMessage(), SystemStatus.OK, pingResult.getSystemStatus());
+    }
+
+    @Test
+    public void testExecute_unknownHost() throws Exception {
+        AddressResolver unknownHosts = new AddressResolver(60000) {
+            @Override
+            protected InetSocketAddress lookup(String host, int port) {
+                return InetSocketAddress.createUnresolved(host, port);
+            }
+        };
+        executor = new HttpEndpointPingExecutor("http", Arrays.asList(
+                new HttpEndpoint("missing", "http://missing.invalid/", 200, 1000)), unknownHosts);
+
+        PingResult pingResult = executor.execute();
+
+        assertEquals("FAILURE - 1 of 1 http endpoints failed: missing (unknown host missing.invalid)",
+                pingResult.getMessage());
+    }
+
+    @Test
+    public void testExecute_connectionsAreReused() throws Exception {
+        executor = HttpEndpointPingExecutorBuilder.create()
+                .addEndpoint("ok", baseUrl + "/ok")
+                .addEndpoint("chunked", baseUrl + "/chunked")
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(SystemStatus.OK, executor.execute().getSystemStatus());
+        }
+        assertEquals(2, clientPorts.size());
+    }
+
+    @Test
+    public void testExecute_closedConnectionIsReplaced() throws Exception {
+        executor = HttpEndpointPingExecutorBuilder.create().addEndpoint("ok", baseUrl + "/ok").build();
+        assertEquals(SystemStatus.OK, executor.execute().getSystemStatus());
+
+        // Restarting the server closes the kept connection
+        int port = server.getAddress().getPort();
+        server.stop(0);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext("/ok", new Responder(200, "fine", false, 0));
+        server.setExecutor(serverThreads);
+        server.start();
+
+        PingResult pingResult = executor.execute();
+        assertEquals(pingResult.getMessage(), SystemStatus.OK, pingResult.getSystemStatus());
+    }
+
+    @Test
+    public void testExecute_connectionRefused() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int unusedPort = socket.getLocalPort();
+        socket.close();
+        executor = HttpEndpointPingExecutorBuilder.create()
+                .addEndpoint("down", "http://127.0.0.1:" + unusedPort + "/")
+                .build();
+
+        PingResult pingResult = executor.execute();
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertTrue(pingResult.getMessage().startsWith("FAILURE - 1 of 1 http endpoints failed: down ("));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEndpoint_httpsIsNotSupported() throws Exception {
+        new HttpEndpoint("secure", "https://localhost/", 200, 1000);
+    }
+
+    private class Responder implements HttpHandler {
+        private final int status;
+        private final byte[] body;
+        private final boolean chunked;
+        private final long delayMillis;
+
+        private Responder(int status, String body, boolean chunked, long delayMillis) {
+            this.status = status;
+            this.body = body.getBytes();
+            this.chunked = chunked;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(status, chunked ? 0 : body.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(body);
+            out.close();
+        }
+    }
+}
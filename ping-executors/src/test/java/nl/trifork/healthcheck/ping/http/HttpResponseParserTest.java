@@ -0,0 +1,123 @@
+package nl.trifork.healthcheck.ping.http;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HttpResponseParserTest {
+    HttpResponseParser parser;
+
+    @Before
+    public void setUp() throws Exception {
+        parser = new HttpResponseParser();
+    }
+
+    @Test
+    public void testContentLength_inParts() throws Exception {
+        append("HTTP/1.1 200 OK\r\nContent-Len");
+        append("gth: 10\r\n\r\n01234");
+        assertFalse(parser.isComplete());
+        assertEquals(200, parser.getStatusCode());
+
+        append("56789");
+        assertTrue(parser.isComplete());
+        assertTrue(parser.isKeepAlive());
+    }
+
+    @Test
+    public void testChunked() throws Exception {
+        append("HTTP/1.1 503 Service Unavailable\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "5;name=value\r\nhello\r\n");
+        assertFalse(parser.isComplete());
+        append("6\r\n world\r\n0\r\n");
+        assertFalse(parser.isComplete());
+        append("Trailer: value\r\n\r\n");
+
+        assertTrue(parser.isComplete());
+        assertEquals(503, parser.getStatusCode());
+        assertTrue(parser.isKeepAlive());
+    }
+
+    @Test
+    public void testChunked_oneByteAtATime() throws Exception {
+        String response = "HTTP/1.1 200 OK\r\ntransfer-encoding: chunked\r\n\r\na\r\n0123456789\r\n0\r\n\r\n";
+        for (int i = 0; i < response.length(); i++) {
+            assertFalse(parser.isComplete());
+            append(response.substring(i, i + 1));
+        }
+        assertTrue(parser.isComplete());
+    }
+
+    @Test
+    public void testUntilClose() throws Exception {
+        append("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\n\r\nsome body");
+        assertFalse(parser.isComplete());
+
+        parser.endOfStream();
+        assertTrue(parser.isComplete());
+        assertFalse(parser.isKeepAlive());
+    }
+
+    @Test
+    public void testNoContent() throws Exception {
+        append("HTTP/1.1 204 No Content\r\n\r\n");
+
+        assertTrue(parser.isComplete());
+        assertEquals(204, parser.getStatusCode());
+    }
+
+    @Test
+    public void testInterimResponse() throws Exception {
+        append("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n");
+
+        assertTrue(parser.isComplete());
+        assertEquals(200, parser.getStatusCode());
+    }
+
+    @Test
+    public void testConnectionClose() throws Exception {
+        append("HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 2\r\n\r\nok");
+
+        assertTrue(parser.isComplete());
+        assertFalse(parser.isKeepAlive());
+    }
+
+    @Test
+    public void testHttp10() throws Exception {
+        append("HTTP/1.0 200 OK\r\nContent-Length: 2\r\n\r\nok");
+        assertFalse(parser.isKeepAlive());
+
+        parser = new HttpResponseParser();
+        append("HTTP/1.0 200 OK\r\nConnection: Keep-Alive\r\nContent-Length: 2\r\n\r\nok");
+        assertTrue(parser.isKeepAlive());
+    }
+
+    @Test
+    public void testDataAfterResponse() throws Exception {
+        append("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nokunexpected");
+
+        assertTrue(parser.isComplete());
+        assertFalse(parser.isKeepAlive());
+    }
+
+    @Test(expected = IOException.class)
+    public void testEndOfStream_incomplete() throws Exception {
+        append("HTTP/1.1 200 OK\r\nContent-Length: 10\r\n\r\n01234");
+        parser.endOfStream();
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidStatusLine() throws Exception {
+        append("SSH-2.0-OpenSSH\r\n\r\n");
+    }
+
+    private void append(String text) throws IOException {
+        parser.append(ByteBuffer.wrap(text.getBytes("ISO-8859-1")));
+    }
+}
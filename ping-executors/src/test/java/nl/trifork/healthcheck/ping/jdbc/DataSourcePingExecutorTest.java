@@ -0,0 +1,148 @@
+package nl.trifork.healthcheck.ping.jdbc;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Executes the {@link DataSourcePingExecutor} against an in memory H2 database.
+ */
+public class DataSourcePingExecutorTest {
+    PoolDataSource dataSource;
+    Connection keepAlive;
+
+    @Before
+    public void setUp() throws Exception {
+        dataSource = new PoolDataSource();
+        dataSource.setURL("jdbc:h2:mem:pingtest");
+        // The in memory database is dropped when the last connection closes
+        keepAlive = dataSource.getConnection();
+        Statement statement = keepAlive.createStatement();
+        statement.execute("CREATE ALIAS IF NOT EXISTS SLEEP_MS FOR \"java.lang.Thread.sleep\"");
+        statement.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        keepAlive.close();
+    }
+
+    @Test
+    public void testBasic() throws Exception {
+        PingResult pingResult = DataSourcePingExecutorBuilder.create().setDataSource(dataSource).build().execute();
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+    }
+
+    @Test
+    public void testExtended() throws Exception {
+        PingResult pingResult = DataSourcePingExecutorBuilder.create().setDataSource(dataSource).build()
+                .executeExtended();
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+    }
+
+    @Test
+    public void testExtended_invalidQuery() throws Exception {
+        PingResult pingResult = DataSourcePingExecutorBuilder.create().setDataSource(dataSource)
+                .setValidationQuery("SELECT * FROM NOT_THERE").build().executeExtended();
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertTrue(pingResult.getMessage().startsWith("FAILURE - Problem while checking"));
+    }
+
+    @Test
+    public void testBasic_noConnection() throws Exception {
+        JdbcDataSource wrongDataSource = new JdbcDataSource();
+        wrongDataSource.setURL("jdbc:h2:file:target/not-there/pingtest;IFEXISTS=TRUE");
+
+        PingResult pingResult = DataSourcePingExecutorBuilder.create().setDataSource(wrongDataSource).build().execute();
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertTrue(pingResult.getMessage().startsWith("FAILURE - Could not obtain"));
+    }
+
+    @Test
+    public void testExtended_slowQuery() throws Exception {
+        PingResult pingResult = DataSourcePingExecutorBuilder.create().setDataSource(dataSource)
+                .setValidationQuery("CALL SLEEP_MS(50)").setWarningLatency(10).build().executeExtended();
+
+        assertEquals(SystemStatus.WARNING, pingResult.getSystemStatus());
+    }
+
+    @Test
+    public void testThorough() throws Exception {
+        dataSource.active = 2;
+        ThoroughPingResult pingResult = DataSourcePingExecutorBuilder.create().setDataSource(dataSource).build()
+                .executeThorough();
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+        Map<String, String> values = pingResult.getThoroughExtraValues();
+        assertEquals("2", values.get("pool.active"));
+        assertEquals("3", values.get("pool.idle"));
+        assertEquals("10", values.get("pool.max"));
+        assertEquals("20", values.get("pool.usage_percentage"));
+        assertNotNull(values.get("database.query_ms"));
+        assertTrue(values.get("database.product").startsWith("H2"));
+    }
+
+    @Test
+    public void testThorough_poolSaturated() throws Exception {
+        dataSource.active = 10;
+        ThoroughPingResult pingResult = DataSourcePingExecutorBuilder.create().setDataSource(dataSource).build()
+                .executeThorough();
+
+        assertEquals(SystemStatus.WARNING, pingResult.getSystemStatus());
+        assertEquals("WARNING - The connection pool is 100% in use.", pingResult.getMessage());
+    }
+
+    @Test
+    public void testThorough_withoutPoolValues() throws Exception {
+        JdbcDataSource plainDataSource = new JdbcDataSource();
+        plainDataSource.setURL("jdbc:h2:mem:pingtest");
+
+        ThoroughPingResult pingResult = DataSourcePingExecutorBuilder.create().setDataSource(plainDataSource).build()
+                .executeThorough();
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+        assertNull(pingResult.getThoroughExtraValues().get("pool.usage_percentage"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuild_noDataSource() throws Exception {
+        DataSourcePingExecutorBuilder.create().build();
+    }
+
+    /**
+     * DataSource with the getters of commons-dbcp for the usage of the pool.
+     */
+    public static class PoolDataSource extends JdbcDataSource {
+        int active = 0;
+
+        public int getNumActive() {
+            return active;
+        }
+
+        public int getNumIdle() {
+            return 3;
+        }
+
+        public int getMaxActive() {
+            return 10;
+        }
+    }
+}
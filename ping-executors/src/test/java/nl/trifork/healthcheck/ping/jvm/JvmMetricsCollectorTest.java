@@ -0,0 +1,86 @@
+package nl.trifork.healthcheck.ping.jvm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JvmMetricsCollectorTest {
+    JvmMetricsCollector collector;
+
+    @Before
+    public void setUp() throws Exception {
+        collector = new JvmMetricsCollector(50);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        collector.stop();
+    }
+
+    @Test
+    public void testSnapshot_emptyBeforeStart() throws Exception {
+        assertTrue(collector.getSnapshot().getValues().isEmpty());
+        assertEquals(0, collector.getSnapshot().getTimestamp());
+    }
+
+    @Test
+    public void testSample() throws Exception {
+        JvmMetricsSnapshot snapshot = collector.sample();
+
+        assertSame(snapshot, collector.getSnapshot());
+        assertTrue(Integer.parseInt(snapshot.getValue("jvm.threads.live")) > 0);
+        assertTrue(Long.parseLong(snapshot.getValue("jvm.memory.heap.used_bytes")) > 0);
+        assertTrue(Integer.parseInt(snapshot.getValue("jvm.classes.loaded")) > 0);
+        assertNotNull(snapshot.getValue("jvm.memory.non_heap.max_bytes"));
+        boolean hasCollector = false;
+        boolean hasPool = false;
+        for (String key : snapshot.getValues().keySet()) {
+            hasCollector |= key.startsWith("jvm.gc.") && key.endsWith(".count");
+            hasPool |= key.startsWith("jvm.memory.pool.");
+        }
+        assertTrue(hasCollector);
+        assertTrue(hasPool);
+    }
+
+    @Test
+    public void testSample_cpuLoadFromSecondSample() throws Exception {
+        assertEquals(null, collector.sample().getValue("jvm.process.cpu_load"));
+        Thread.sleep(10);
+        String cpuLoad = collector.sample().getValue("jvm.process.cpu_load");
+        if (cpuLoad != null) {
+            double load = Double.parseDouble(cpuLoad);
+            assertTrue(load >= 0.0 && load <= 100.0);
+        }
+    }
+
+    @Test
+    public void testStart_samplesInBackground() throws Exception {
+        collector.start();
+        JvmMetricsSnapshot first = collector.getSnapshot();
+        assertTrue(first.getTimestamp() > 0);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (collector.getSnapshot() == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertNotSame(first, collector.getSnapshot());
+    }
+
+    @Test
+    public void testToKey() throws Exception {
+        assertEquals("ps_eden_space", JvmMetricsCollector.toKey("PS Eden Space"));
+        assertEquals("g1_old_gen", JvmMetricsCollector.toKey("G1 Old Gen"));
+        assertEquals("code_cache", JvmMetricsCollector.toKey("Code Cache"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshot_isImmutable() throws Exception {
+        collector.sample().getValues().put("jvm.threads.live", "0");
+    }
+}
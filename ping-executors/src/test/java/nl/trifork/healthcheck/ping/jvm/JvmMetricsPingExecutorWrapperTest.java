@@ -0,0 +1,63 @@
+package nl.trifork.healthcheck.ping.jvm;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class JvmMetricsPingExecutorWrapperTest {
+
+    @Mock
+    PingExecutor delegate;
+
+    JvmMetricsCollector collector;
+    JvmMetricsPingExecutorWrapper wrapper;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        collector = new JvmMetricsCollector(1000);
+        collector.sample();
+        wrapper = new JvmMetricsPingExecutorWrapper(delegate, collector);
+    }
+
+    @Test
+    public void testExecute_basicIsNotChanged() throws Exception {
+        PingResult result = new PingResult("mock", SystemStatus.OK, "nothing");
+        when(delegate.execute(PingLevel.BASIC)).thenReturn(result);
+
+        assertSame(result, wrapper.execute());
+    }
+
+    @Test
+    public void testExecute_thoroughContainsMetrics() throws Exception {
+        when(delegate.execute(PingLevel.THOROUGH)).thenReturn(new ThoroughPingResult("mock", SystemStatus.WARNING,
+                "something", Collections.singletonMap("own", "value")));
+
+        PingResult result = wrapper.execute(PingLevel.THOROUGH);
+
+        assertEquals(SystemStatus.WARNING, result.getSystemStatus());
+        Map<String, String> values = ((ThoroughPingResult) result).getThoroughExtraValues();
+        assertEquals("value", values.get("own"));
+        assertNotNull(values.get("jvm.threads.live"));
+    }
+
+    @Test
+    public void testExecute_thoroughNullResult() throws Exception {
+        assertNull(wrapper.execute(PingLevel.THOROUGH));
+    }
+}
@@ -0,0 +1,207 @@
+package nl.trifork.healthcheck.ping.jvm;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.junit.Test;
+
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JvmPingExecutorTest {
+
+    @Test
+    public void testExecute_realJvm() throws Exception {
+        JvmPingExecutor executor = JvmPingExecutorBuilder.create()
+                .setOldGenWarningPercentage(101)
+                .setOldGenErrorPercentage(101)
+                .setGcWarningPercentage(101)
+                .setGcErrorPercentage(101)
+                .build();
+
+        executor.execute(PingLevel.THOROUGH);
+        Thread.sleep(5);
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+
+        assertEquals(pingResult.getMessage(), SystemStatus.OK, pingResult.getSystemStatus());
+        Map<String, String> values = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+        assertEquals("0", values.get("jvm.deadlock.threads"));
+        assertTrue(values.containsKey("jvm.gc.overhead_percentage"));
+    }
+
+    @Test
+    public void testExecute_gcOverheadOverWindow() throws Exception {
+        FakeJvmPingExecutor executor = new FakeJvmPingExecutor();
+
+        assertEquals(SystemStatus.OK, executor.execute(PingLevel.BASIC).getSystemStatus());
+        executor.now = 1000;
+        executor.gcTime = 150;
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+        assertEquals(SystemStatus.WARNING, pingResult.getSystemStatus());
+        assertEquals("WARNING - 15.0% time spent in gc", pingResult.getMessage());
+        assertEquals("1000", ((ThoroughPingResult) pingResult).getThoroughExtraValues().get("jvm.gc.window_ms"));
+
+        executor.now = 2000;
+        executor.gcTime = 700;
+        pingResult = executor.execute(PingLevel.BASIC);
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertEquals("FAILURE - 35.0% time spent in gc", pingResult.getMessage());
+
+        // The window of 10 seconds slides past the collections
+        executor.now = 13000;
+        executor.execute(PingLevel.BASIC);
+        executor.now = 14000;
+        pingResult = executor.execute(PingLevel.THOROUGH);
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+        assertEquals("0.0", ((ThoroughPingResult) pingResult).getThoroughExtraValues().get("jvm.gc.overhead_percentage"));
+    }
+
+    @Test
+    public void testExecute_oldGenAfterGc() throws Exception {
+        FakeJvmPingExecutor executor = new FakeJvmPingExecutor();
+
+        executor.oldGen = new MemoryUsage(0, 850, 900, 1000);
+        assertEquals(SystemStatus.WARNING, executor.execute(PingLevel.BASIC).getSystemStatus());
+
+        executor.oldGen = new MemoryUsage(0, 960, 1000, 1000);
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+        assertEquals("FAILURE - 96.0% old generation in use after gc", pingResult.getMessage());
+        assertEquals("960", ((ThoroughPingResult) pingResult).getThoroughExtraValues().get("jvm.old_gen.after_gc_bytes"));
+
+        executor.oldGen = new MemoryUsage(0, 200, 1000, -1);
+        assertEquals(SystemStatus.OK, executor.execute(PingLevel.BASIC).getSystemStatus());
+    }
+
+    @Test
+    public void testExecute_deadlockCheckIsThrottled() throws Exception {
+        FakeJvmPingExecutor executor = new FakeJvmPingExecutor();
+
+        executor.execute(PingLevel.BASIC);
+        executor.deadlocked = Arrays.asList("worker-1", "worker-2");
+        executor.now = 30000;
+        assertEquals(SystemStatus.OK, executor.execute(PingLevel.BASIC).getSystemStatus());
+        assertEquals(1, executor.deadlockChecks);
+
+        executor.now = 60000;
+        PingResult pingResult = executor.execute(PingLevel.BASIC);
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertEquals("FAILURE - deadlocked threads: worker-1, worker-2", pingResult.getMessage());
+        assertEquals(2, executor.deadlockChecks);
+    }
+
+    @Test
+    public void testExecute_negativeClockValues() throws Exception {
+        // The monotonic clock can have any origin, also a negative one
+        FakeJvmPingExecutor executor = new FakeJvmPingExecutor();
+        executor.now = -90000;
+
+        executor.execute(PingLevel.BASIC);
+        executor.deadlocked = Arrays.asList("worker-1");
+        executor.now = -60000;
+        executor.execute(PingLevel.BASIC);
+        assertEquals(1, executor.deadlockChecks);
+
+        executor.now = -30000;
+        executor.gcTime = 6000;
+        PingResult pingResult = executor.execute(PingLevel.BASIC);
+
+        assertEquals(2, executor.deadlockChecks);
+        assertEquals("FAILURE - deadlocked threads: worker-1, 20.0% time spent in gc", pingResult.getMessage());
+    }
+
+    @Test
+    public void testFindDeadlockedThreads() throws Exception {
+        final ReentrantLock first = new ReentrantLock();
+        final ReentrantLock second = new ReentrantLock();
+        final CountDownLatch locked = new CountDownLatch(2);
+        Thread one = new Thread(new LockInOrder(first, second, locked), "deadlock-one");
+        Thread two = new Thread(new LockInOrder(second, first, locked), "deadlock-two");
+        one.setDaemon(true);
+        two.setDaemon(true);
+        one.start();
+        two.start();
+        try {
+            locked.await();
+            JvmPingExecutor executor = JvmPingExecutorBuilder.create().build();
+            List<String> deadlocked = new ArrayList<String>();
+            for (int i = 0; i < 100 && deadlocked.size() < 2; i++) {
+                Thread.sleep(10);
+                deadlocked = executor.findDeadlockedThreads();
+            }
+            assertTrue(deadlocked.toString(), deadlocked.containsAll(Arrays.asList("deadlock-one", "deadlock-two")));
+        } finally {
+            one.interrupt();
+            two.interrupt();
+        }
+    }
+
+    private static class LockInOrder implements Runnable {
+        private final ReentrantLock outer;
+        private final ReentrantLock inner;
+        private final CountDownLatch locked;
+
+        private LockInOrder(ReentrantLock outer, ReentrantLock inner, CountDownLatch locked) {
+            this.outer = outer;
+            this.inner = inner;
+            this.locked = locked;
+        }
+
+        @Override
+        public void run() {
+            outer.lock();
+            try {
+                locked.countDown();
+                locked.await();
+                inner.lockInterruptibly();
+                inner.unlock();
+            } catch (InterruptedException e) {
+                // released by the test
+            } finally {
+                outer.unlock();
+            }
+        }
+    }
+
+    private static class FakeJvmPingExecutor extends JvmPingExecutor {
+        long now = 0;
+        long gcTime = 0;
+        MemoryUsage oldGen = null;
+        List<String> deadlocked = new ArrayList<String>();
+        int deadlockChecks = 0;
+
+        private FakeJvmPingExecutor() {
+            super("jvm", 60000, 10000, 10, 25, 80, 95);
+        }
+
+        @Override
+        protected long currentTimeNanos() {
+            return TimeUnit.MILLISECONDS.toNanos(now);
+        }
+
+        @Override
+        long totalCollectionTimeMillis() {
+            return gcTime;
+        }
+
+        @Override
+        MemoryUsage oldGenCollectionUsage() {
+            return oldGen;
+        }
+
+        @Override
+        List<String> findDeadlockedThreads() {
+            deadlockChecks++;
+            return deadlocked;
+        }
+    }
+}
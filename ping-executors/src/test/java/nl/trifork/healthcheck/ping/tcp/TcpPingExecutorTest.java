@@ -0,0 +1,227 @@
+package nl.trifork.healthcheck.ping.tcp;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import nl.trifork.healthcheck.ping.AddressResolver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Executes the {@link TcpPingExecutor} against local server sockets.
+ */
+public class TcpPingExecutorTest {
+    ServerSocket first;
+    ServerSocket second;
+    int closedPort;
+    TcpPingExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        first = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        second = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        ServerSocket closed = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        closedPort = closed.getLocalPort();
+        closed.close();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (executor != null) {
+            executor.close();
+        }
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void testExecute_allReachable() throws Exception {
+        executor = TcpPingExecutorBuilder.create()
+                .addTarget("127.0.0.1:" + first.getLocalPort())
+                .addTarget("second", "127.0.0.1", second.getLocalPort())
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+
+        assertEquals(pingResult.getMessage(), SystemStatus.OK, pingResult.getSystemStatus());
+        assertEquals("OK - 2 of 2 tcp targets are reachable.", pingResult.getMessage());
+        Map<String, String> values = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+        assertEquals("OK", values.get("second.result"));
+        assertTrue(values.containsKey("second.latency_ms"));
+        assertEquals("OK", values.get("127.0.0.1:" + first.getLocalPort() + ".result"));
+        assertEquals("2", values.get("tcp.reachable"));
+    }
+
+    @Test
+    public void testExecute_releasesConnections() throws Exception {
+        executor = TcpPingExecutorBuilder.create()
+                .addTarget("first", "127.0.0.1", first.getLocalPort())
+                .addTarget("closed", "127.0.0.1", closedPort)
+                .setWarningQuorumPercentage(0)
+                .build();
+
+        executor.execute(PingLevel.BASIC);
+
+        assertEquals(0, executor.countRegisteredChannels());
+    }
+
+    @Test
+    public void testExecute_belowOkQuorum() throws Exception {
+        executor = TcpPingExecutorBuilder.create()
+                .addTarget("first", "127.0.0.1", first.getLocalPort())
+                .addTarget("second", "127.0.0.1", second.getLocalPort())
+                .addTarget("closed", "127.0.0.1", closedPort)
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+
+        assertEquals(SystemStatus.WARNING, pingResult.getSystemStatus());
+        assertTrue(pingResult.getMessage(), pingResult.getMessage().startsWith(
+                "WARNING - 2 of 3 tcp targets are reachable, not reachable: closed ("));
+        Map<String, String> values = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+        assertTrue(!"OK".equals(values.get("closed.result")));
+        assertTrue(!values.containsKey("closed.latency_ms"));
+    }
+
+    @Test
+    public void testExecute_belowWarningQuorum() throws Exception {
+        executor = TcpPingExecutorBuilder.create()
+                .setWarningQuorumPercentage(75)
+                .addTarget("first", "127.0.0.1", first.getLocalPort())
+                .addTarget("second", "127.0.0.1", second.getLocalPort())
+                .addTarget("closed", "127.0.0.1", closedPort)
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertTrue(pingResult.getMessage().startsWith("FAILURE - 2 of 3 tcp targets are reachable"));
+    }
+
+    @Test
+    public void testExecute_withinOkQuorum() throws Exception {
+        executor = TcpPingExecutorBuilder.create()
+                .setOkQuorumPercentage(60)
+                .addTarget("first", "127.0.0.1", first.getLocalPort())
+                .addTarget("second", "127.0.0.1", second.getLocalPort())
+                .addTarget("closed", "127.0.0.1", closedPort)
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.BASIC);
+
+        assertEquals(SystemStatus.OK, pingResult.getSystemStatus());
+    }
+
+    @Test
+    public void testExecute_unknownHost() throws Exception {
+        executor = TcpPingExecutorBuilder.create()
+                .addTarget("unknown", "host.that.does.not.exist.invalid", 1099)
+                .build();
+
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+
+        assertEquals(SystemStatus.ERROR, pingResult.getSystemStatus());
+        assertEquals("unknown host", ((ThoroughPingResult) pingResult).getThoroughExtraValues().get("unknown.result"));
+    }
+
+    @Test
+    public void testExecute_noConnectsAfterTimeout() throws Exception {
+        final AtomicInteger lookups = new AtomicInteger();
+        AddressResolver slowResolver = new AddressResolver(60000) {
+            @Override
+            protected InetSocketAddress lookup(String host, int port) {
+                lookups.incrementAndGet();
+                try {
+                    Thread.sleep(150);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.lookup(host, port);
+            }
+        };
+        executor = new TcpPingExecutor("tcp", Arrays.asList(
+                new TcpTarget("first", "127.0.0.1", first.getLocalPort()),
+                new TcpTarget("second", "127.0.0.1", second.getLocalPort())), 100, 100, 50, slowResolver);
+
+        PingResult pingResult = executor.execute(PingLevel.THOROUGH);
+
+        Map<String, String> values = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+        assertEquals("no connection within 100 ms", values.get("second.result"));
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void testExecute_addressesAreKept() throws Exception {
+        final AtomicInteger lookups = new AtomicInteger();
+        AddressResolver countingResolver = new AddressResolver(60000) {
+            @Override
+            protected InetSocketAddress lookup(String host, int port) {
+                lookups.incrementAndGet();
+                return super.lookup(host, port);
+            }
+        };
+        executor = new TcpPingExecutor("tcp", Arrays.asList(
+                new TcpTarget("first", "127.0.0.1", first.getLocalPort())), 1000, 100, 50, countingResolver);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(SystemStatus.OK, executor.execute(PingLevel.BASIC).getSystemStatus());
+        }
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void testExecute_repeatedPings() throws Exception {
+        executor = TcpPingExecutorBuilder.create()
+                .addTarget("first", "127.0.0.1", first.getLocalPort())
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(SystemStatus.OK, executor.execute(PingLevel.BASIC).getSystemStatus());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_withoutPort() {
+        TcpTarget.parse("localhost");
+    }
+
+    @Test
+    public void testParse() {
+        TcpTarget target = TcpTarget.parse("localhost:1099");
+
+        assertEquals("localhost", target.getHost());
+        assertEquals(1099, target.getPort());
+        assertEquals("localhost:1099", target.getName());
+    }
+
+    @Test
+    public void testParse_url() {
+        TcpTarget target = TcpTarget.parse("rmi://localhost:1099");
+
+        assertEquals("localhost", target.getHost());
+        assertEquals(1099, target.getPort());
+        assertEquals("rmi://localhost:1099", target.getName());
+
+        target = TcpTarget.parse("rmi://localhost:1099/hipporepository");
+
+        assertEquals("localhost", target.getHost());
+        assertEquals(1099, target.getPort());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParse_urlWithoutPort() {
+        TcpTarget.parse("rmi://localhost/hipporepository");
+    }
+}
@@ -0,0 +1,177 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>Variant of the {@link BasePingServlet} that uses the asynchronous support of Servlet 3.0. Results that are
+ * available without calling the backend, because they are refreshed in the background or are still fresh, are written
+ * immediately. In all other cases the request is put in asynchronous mode and the container thread is released. The
+ * ping is executed on a small pool of daemon threads owned by this servlet and the response is written when the ping
+ * finishes.</p>
+ * <p>If the ping does not finish within the number of milliseconds configured with the init-param
+ * <strong>{@value AsyncBasePingServlet#PARAM_ASYNCTIMEOUT}</strong> (also overridable per level), the response is
+ * written with the status {@link SystemStatus#TIMEOUT_ERROR}. All other init-params of the BasePingServlet are
+ * supported as well.</p>
+ * <p>The servlet must be marked as supporting asynchronous requests, otherwise the request is handled like the
+ * BasePingServlet does.</p>
+ * <pre>
+ * &lt;servlet&gt;
+ *     &lt;servlet-name&gt;PingServlet&lt;/servlet-name&gt;
+ *     &lt;servlet-class&gt;com.mycompany.ping.AsyncPingServlet&lt;/servlet-class&gt;
+ *     &lt;init-param&gt;
+ *         &lt;param-name&gt;asynctimeout&lt;/param-name&gt;
+ *         &lt;param-value&gt;5000&lt;/param-value&gt;
+ *     &lt;/init-param&gt;
+ *     &lt;async-supported&gt;true&lt;/async-supported&gt;
+ * &lt;/servlet&gt;
+ * </pre>
+ */
+public abstract class AsyncBasePingServlet extends BasePingServlet {
+    private static final Logger logger = LoggerFactory.getLogger(AsyncBasePingServlet.class);
+
+    static final String PARAM_ASYNCTIMEOUT = "asynctimeout";
+    static final long DEFAULT_ASYNCTIMEOUT = 10000;
+
+    private final Map<PingLevel, Long> asyncTimeouts = new EnumMap<PingLevel, Long>(PingLevel.class);
+    private ExecutorService pingExecutorService;
+
+    /**
+     * Reads the asynchronous timeouts and creates the threads that execute the pings. Only one ping per level runs at
+     * the same time, so we need at most one thread per level.
+     *
+     * @param config ServletConfig used to read the init parameters from.
+     * @throws ServletException Exception thrown when interacting with ServletConfig
+     */
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        for (PingLevel pingLevel : PingLevel.values()) {
+            asyncTimeouts.put(pingLevel, getLongParameter(config, PARAM_ASYNCTIMEOUT, pingLevel, DEFAULT_ASYNCTIMEOUT));
+        }
+
+        final String threadName = "ping-async-" + config.getServletName();
+        pingExecutorService = Executors.newFixedThreadPool(PingLevel.values().length, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Stops the threads executing the pings.
+     */
+    @Override
+    public void destroy() {
+        if (pingExecutorService != null) {
+            pingExecutorService.shutdownNow();
+        }
+        super.destroy();
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        PingLevel pingLevel = obtainRequestedPingLevel(req);
+
+        PingResult availableResult = obtainAvailablePingResult(pingLevel);
+        if (availableResult != null) {
+            writeResponse(req, res, pingLevel, availableResult);
+            return;
+        }
+        if (!req.isAsyncSupported()) {
+            logger.debug("Asynchronous requests are not supported for this servlet, executing the ping now");
+            writeResponse(req, res, pingLevel, obtainPingResult(pingLevel));
+            return;
+        }
+
+        long asyncTimeout = asyncTimeouts.get(pingLevel);
+        AsyncContext asyncContext = req.startAsync(req, res);
+        asyncContext.setTimeout(asyncTimeout);
+        AsyncPingResponse asyncPingResponse = new AsyncPingResponse(asyncContext, pingLevel, asyncTimeout);
+        asyncContext.addListener(asyncPingResponse);
+        obtainPingResult(pingLevel, pingExecutorService, asyncPingResponse);
+    }
+
+    /**
+     * Writes the response of an asynchronous request exactly once, either with the result of the ping or with a
+     * TIMEOUT_ERROR when the container signals that the request timed out.
+     */
+    private class AsyncPingResponse implements AsyncListener, PingResultCache.PingResultCallback {
+        private final AsyncContext asyncContext;
+        private final PingLevel pingLevel;
+        private final long asyncTimeout;
+        private final AtomicBoolean responded = new AtomicBoolean(false);
+
+        AsyncPingResponse(AsyncContext asyncContext, PingLevel pingLevel, long asyncTimeout) {
+            this.asyncContext = asyncContext;
+            this.pingLevel = pingLevel;
+            this.asyncTimeout = asyncTimeout;
+        }
+
+        @Override
+        public void onResult(PingResult pingResult) {
+            respond(pingResult);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            logger.warn("The ping with level {} did not finish within {} ms", pingLevel.name(), asyncTimeout);
+            removePingResultCallback(pingLevel, this);
+            respond(new PingResult(getPingExecutor().getName(), SystemStatus.TIMEOUT_ERROR,
+                    "FAILURE - The ping with level " + pingLevel.name() + " did not finish within " + asyncTimeout + " ms."));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) throws IOException {
+            // The connection is gone, there is no one to respond to
+            removePingResultCallback(pingLevel, this);
+            if (responded.compareAndSet(false, true)) {
+                logger.debug("Asynchronous ping request failed", event.getThrowable());
+                asyncContext.complete();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) throws IOException {
+        }
+
+        private void respond(PingResult pingResult) {
+            if (!responded.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                writeResponse((HttpServletRequest) asyncContext.getRequest(),
+                        (HttpServletResponse) asyncContext.getResponse(), pingLevel, pingResult);
+            } catch (IOException e) {
+                logger.debug("Could not write the asynchronous ping response", e);
+            } finally {
+                asyncContext.complete();
+            }
+        }
+    }
+}
@@ -3,6 +3,7 @@ package nl.trifork.healthcheck.servlet;
 import nl.trifork.healthcheck.api.PingExecutor;
 import nl.trifork.healthcheck.api.PingLevel;
 import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
 import nl.trifork.healthcheck.api.ThoroughPingResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -13,14 +14,21 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
-import static nl.trifork.healthcheck.api.SystemStatus.OK;
-
 /**
  * <p>Abstract base class for your servlet exposing a ping executor. Based on the requested content type, the servlet
  * can return json or html. If you need json, provide <em>application/json</em> as the requested content type or add
@@ -41,7 +49,48 @@ import static nl.trifork.healthcheck.api.SystemStatus.OK;
  * Valid options are the text representations of the {@link PingLevel} items. Use the parameter
  * <strong>{@value BasePingServlet#PARAM_PINGLEVEL}</strong> to provide your own value. You can also pass a number from
  * 1 to and including 3 that we translate into the three levels of ping. 1 being Basic, 2 extended and 3 Thorough.</p>
- * <p>The servlet contains a mechanism that only one request at a time is actually going to the backend.</p>
+ * <p>The json and html responses of a result are rendered only once. Each response carries an <em>ETag</em> header
+ * derived from the content, a request with a matching <em>If-None-Match</em> header for a result that would be
+ * returned with status 200 receives a <em>304 Not Modified</em> without a body. A subclass that still overrides
+ * {@link #writeJsonResponse(HttpServletResponse, PingResult)} or
+ * {@link #writeHtmlToResponse(HttpServletResponse, PingResult)} keeps its own output, that format is then written for
+ * every request without an ETag.</p>
+ * <p>The servlet contains a mechanism that only one request at a time per level is actually going to the backend.
+ * The results are cached per {@link PingLevel}. With the init-param <strong>{@value BasePingServlet#PARAM_MAXAGE}</strong>
+ * you configure how many milliseconds a result can be returned without calling the backend again. Just like the
+ * refresh interval below it can be overridden per level, like <em>maxage.thorough</em>. The default of 0 executes a
+ * ping for every request.</p>
+ * <p>Requests that arrive while a ping for the same level is being executed wait for the outcome of that ping, for at
+ * most the number of milliseconds configured with <strong>{@value BasePingServlet#PARAM_MAXWAIT}</strong> (also
+ * overridable per level). After that they receive the previous result of the level. If no ping has finished yet, the
+ * result has the status {@link SystemStatus#TIMEOUT_ERROR}.</p>
+ * <p>The status and the execution time of the pings, together with the number of requests that waited for another
+ * request or received an older result, are kept in memory. Use the {@link MetricsServlet} to expose them.</p>
+ * <p>By default the ping is executed on the thread of the request. By setting the init-param
+ * <strong>{@value BasePingServlet#PARAM_REFRESHMODE}</strong> to <em>{@value BasePingServlet#REFRESHMODE_BACKGROUND}</em>
+ * background threads refresh the results and requests only read the last published result, a request never calls the
+ * ping executor for a level that is refreshed in the background. Until the first background ping of a level has
+ * finished, requests receive a result with the status {@link SystemStatus#TIMEOUT_ERROR}. Every level has its own
+ * thread, a ping that hangs on one level does not delay the refresh of the other levels. The interval in
+ * milliseconds is configured with <strong>{@value BasePingServlet#PARAM_REFRESHINTERVAL}</strong> and applies to the
+ * configured ping level. Other levels are only refreshed in the background when they have their own interval, the
+ * parameter name followed by the lower case level, like <em>refreshinterval.thorough</em>. An interval of 0 disables the
+ * background refresh for that level, requests for levels that are not refreshed are executed on the request thread.</p>
+ * <p>A published result is returned for at most <strong>{@value BasePingServlet#PARAM_MAXSTALENESS}</strong>
+ * milliseconds, by default three times the refresh interval of the level. When the background thread does not publish
+ * a new result in time, for instance because the backend hangs, requests receive a result with the status
+ * {@link SystemStatus#TIMEOUT_ERROR}. All requests receive the same TIMEOUT_ERROR result until a new result is
+ * published, so its responses are rendered only once. A value of 0 disables the check.</p>
+ * <pre>
+ * &lt;init-param&gt;
+ *     &lt;param-name&gt;refreshmode&lt;/param-name&gt;
+ *     &lt;param-value&gt;background&lt;/param-value&gt;
+ * &lt;/init-param&gt;
+ * &lt;init-param&gt;
+ *     &lt;param-name&gt;refreshinterval.thorough&lt;/param-name&gt;
+ *     &lt;param-value&gt;60000&lt;/param-value&gt;
+ * &lt;/init-param&gt;
+ * </pre>
  *
  * @author Jettro Coenradie
  */
@@ -50,13 +99,40 @@ public abstract class BasePingServlet extends HttpServlet {
 
     static final String PARAM_PINGLEVEL = "pinglevel";
     static final PingLevel DEFAULT_LEVEL = PingLevel.BASIC;
+    static final String PARAM_REFRESHMODE = "refreshmode";
+    static final String PARAM_REFRESHINTERVAL = "refreshinterval";
+    static final String REFRESHMODE_REQUEST = "request";
+    static final String REFRESHMODE_BACKGROUND = "background";
+    static final long DEFAULT_REFRESHINTERVAL = 10000;
+    static final String PARAM_MAXSTALENESS = "maxstaleness";
+    static final String PARAM_MAXAGE = "maxage";
+    static final long DEFAULT_MAXAGE = 0;
+    static final String PARAM_MAXWAIT = "maxwait";
+    static final long DEFAULT_MAXWAIT = 5000;
 
     private PingExecutor pingExecutor;
     private PingLevel level;
 
-    // Binary semaphore, only one thread can have acquire access
-    private final Semaphore pingResultSemaphore = new Semaphore(1);
-    private final AtomicReference<PingResult> pingResultReference = new AtomicReference<PingResult>();
+    private PingResultCache pingResultCache;
+    private PingMetrics pingMetrics;
+
+    // Only filled in background refresh mode, contains the levels that are refreshed by the scheduler
+    private final Set<PingLevel> backgroundLevels = EnumSet.noneOf(PingLevel.class);
+    // The result per background level that is returned until the first background ping has finished
+    private final Map<PingLevel, PingResult> notRefreshedResults = new EnumMap<PingLevel, PingResult>(PingLevel.class);
+    private final Map<PingLevel, Long> maxStalenesses = new EnumMap<PingLevel, Long>(PingLevel.class);
+    private final Map<PingLevel, AtomicReference<StalePingResult>> staleResults =
+            new EnumMap<PingLevel, AtomicReference<StalePingResult>>(PingLevel.class);
+    private final Map<PingLevel, ScheduledExecutorService> refreshSchedulers =
+            new EnumMap<PingLevel, ScheduledExecutorService>(PingLevel.class);
+
+    // Set when a subclass overrides the write methods, that format is then written by the subclass for every request
+    private boolean writesOwnJson;
+    private boolean writesOwnHtml;
+
+    // The rendered responses of the last result returned per level
+    private final Map<PingLevel, AtomicReference<RenderedPingResult>> renderedResults =
+            new EnumMap<PingLevel, AtomicReference<RenderedPingResult>>(PingLevel.class);
 
     /**
      * Returns the {@link PingExecutor} to execute. The ServletConfig is provided to the subclass to be able to obtain
@@ -79,27 +155,144 @@ public abstract class BasePingServlet extends HttpServlet {
         super.init(config);
         level = PingLevel.valueOf(getParameter(config, PARAM_PINGLEVEL, DEFAULT_LEVEL.toString()));
         pingExecutor = obtainExecutor(config);
-        pingResultReference.set(new PingResult("init", OK, "only for initialization"));
+
+        Map<PingLevel, Long> maxAges = new EnumMap<PingLevel, Long>(PingLevel.class);
+        Map<PingLevel, Long> maxWaits = new EnumMap<PingLevel, Long>(PingLevel.class);
+        for (PingLevel pingLevel : PingLevel.values()) {
+            maxAges.put(pingLevel, getLongParameter(config, PARAM_MAXAGE, pingLevel, DEFAULT_MAXAGE));
+            maxWaits.put(pingLevel, getLongParameter(config, PARAM_MAXWAIT, pingLevel, DEFAULT_MAXWAIT));
+            renderedResults.put(pingLevel, new AtomicReference<RenderedPingResult>());
+        }
+        pingMetrics = new PingMetrics(config.getServletName(), pingExecutor.getName());
+        pingResultCache = new PingResultCache(pingExecutor, maxAges, maxWaits, pingMetrics);
+        PingMetricsRegistry.obtain(config.getServletContext()).register(pingMetrics);
+
+        writesOwnJson = overridesWriteMethod("writeJsonResponse");
+        writesOwnHtml = overridesWriteMethod("writeHtmlToResponse");
+
+        String refreshMode = getParameter(config, PARAM_REFRESHMODE, REFRESHMODE_REQUEST);
+        if (REFRESHMODE_BACKGROUND.equalsIgnoreCase(refreshMode)) {
+            startBackgroundRefresh(config);
+        }
+    }
+
+    /**
+     * Checks if a subclass overrides one of the deprecated write methods. The servlet keeps calling an overridden
+     * method, so the customisation of the subclass is not lost.
+     *
+     * @param methodName String containing the name of the write method
+     * @return true if a subclass overrides the method
+     */
+    private boolean overridesWriteMethod(String methodName) {
+        for (Class<?> type = getClass(); type != BasePingServlet.class; type = type.getSuperclass()) {
+            try {
+                type.getDeclaredMethod(methodName, HttpServletResponse.class, PingResult.class);
+                logger.info("{} overrides {}, the response is written for every request without an ETag. Override "
+                        + "renderJson or renderHtml to render it once per result.", type.getName(), methodName);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // not overridden by this class
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the background refresh of the ping results if it was started and removes the metrics of this servlet.
+     */
+    @Override
+    public void destroy() {
+        for (ScheduledExecutorService refreshScheduler : refreshSchedulers.values()) {
+            refreshScheduler.shutdownNow();
+        }
+        if (pingMetrics != null) {
+            PingMetricsRegistry registry = PingMetricsRegistry.find(getServletContext());
+            if (registry != null) {
+                registry.unregister(pingMetrics);
+            }
+        }
+        super.destroy();
     }
 
     @Override
     protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        PingLevel pingLevel = obtainRequestedPingLevel(req);
+        PingResult pingResult = obtainPingResult(pingLevel);
+        writeResponse(req, res, pingLevel, pingResult);
+    }
+
+    /**
+     * Returns the PingLevel requested by the client or the configured level if the client did not ask for a level.
+     *
+     * @param req HttpServletRequest to read the requested level from
+     * @return PingLevel to execute
+     */
+    PingLevel obtainRequestedPingLevel(HttpServletRequest req) {
         String reqPingLevel = req.getParameter(PARAM_PINGLEVEL);
         PingLevel pingLevel = obtainPingLevel(reqPingLevel, level);
 
         logger.debug("Receiving a request for a ping with level {}", pingLevel.name());
+        return pingLevel;
+    }
 
-        PingResult pingResult = obtainPingResult(pingLevel);
+    /**
+     * Writes the status, headers and body for the result to the response and closes the http session. The body is
+     * rendered only once per result, if the client already has the body a 304 is returned. When the subclass overrides
+     * the write method of the requested format, that method writes the body instead.
+     *
+     * @param req        HttpServletRequest used to determine the format and to obtain the session from
+     * @param res        HttpServletResponse to write to
+     * @param pingLevel  PingLevel the result belongs to
+     * @param pingResult PingResult to write
+     * @throws IOException Thrown if writing to the response goes wrong.
+     */
+    void writeResponse(HttpServletRequest req, HttpServletResponse res, PingLevel pingLevel, PingResult pingResult)
+            throws IOException {
+        boolean json = "application/json".equals(req.getHeader("Content-Type"))
+                || "json".equals(req.getParameter("type"));
+        if (json ? writesOwnJson : writesOwnHtml) {
+            writeOwnResponse(req, res, pingResult, json);
+            return;
+        }
+
+        RenderedPingResult renderedPingResult = obtainRenderedPingResult(pingLevel, pingResult);
+        RenderedPingResult.Representation representation =
+                json ? renderedPingResult.getJson() : renderedPingResult.getHtml();
+
+        // Clients may keep the response, but must revalidate it using the ETag before every use
+        res.setHeader("Cache-Control", "no-cache"); // HTTP 1.1.
+        res.setHeader("Pragma", "no-cache"); // HTTP 1.0.
+        res.setDateHeader("Expires", 0); // Proxies.
+        res.setHeader("ETag", representation.getETag());
 
         int responseCode = obtainStatusOfResponse(pingResult);
-        res.setStatus(responseCode);
+        if (responseCode == HttpServletResponse.SC_OK && representation.matches(req.getHeader("If-None-Match"))) {
+            res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        } else {
+            res.setStatus(responseCode);
+            res.setContentType(representation.getContentType());
+            res.setContentLength(representation.getBytes().length);
+            res.getOutputStream().write(representation.getBytes());
+        }
+
+        closeHttpSession(req);
+    }
+
+    /**
+     * Writes the response using the write method that is overridden by the subclass, like the servlet did before the
+     * responses were rendered once per result.
+     */
+    @SuppressWarnings("deprecation")
+    private void writeOwnResponse(HttpServletRequest req, HttpServletResponse res, PingResult pingResult, boolean json)
+            throws IOException {
+        res.setStatus(obtainStatusOfResponse(pingResult));
 
         // Disable Caching
         res.setHeader("Cache-Control", "no-cache, no-store, must-revalidate"); // HTTP 1.1.
         res.setHeader("Pragma", "no-cache"); // HTTP 1.0.
         res.setDateHeader("Expires", 0); // Proxies.
 
-        if ("application/json".equals(req.getHeader("Content-Type")) || "json".equals(req.getParameter("type"))) {
+        if (json) {
             writeJsonResponse(res, pingResult);
         } else {
             writeHtmlToResponse(res, pingResult);
@@ -108,6 +301,37 @@ public abstract class BasePingServlet extends HttpServlet {
         closeHttpSession(req);
     }
 
+    /**
+     * Returns the rendered responses for the result. The last rendered result of the level is reused if it belongs to
+     * the same result, otherwise the result is rendered and kept for the next requests.
+     *
+     * @param pingLevel  PingLevel the result belongs to
+     * @param pingResult PingResult to render
+     * @return RenderedPingResult for the provided result
+     * @throws IOException Thrown if rendering the result goes wrong
+     */
+    RenderedPingResult obtainRenderedPingResult(PingLevel pingLevel, PingResult pingResult) throws IOException {
+        AtomicReference<RenderedPingResult> renderedResult = renderedResults.get(pingLevel);
+        RenderedPingResult rendered = renderedResult.get();
+        if (rendered == null || rendered.getPingResult() != pingResult) {
+            rendered = new RenderedPingResult(pingResult, renderToBytes(pingResult, true), renderToBytes(pingResult, false));
+            renderedResult.set(rendered);
+        }
+        return rendered;
+    }
+
+    private byte[] renderToBytes(PingResult pingResult, boolean json) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(bytes, "UTF-8"));
+        if (json) {
+            renderJson(writer, pingResult);
+        } else {
+            renderHtml(writer, pingResult);
+        }
+        writer.flush();
+        return bytes.toByteArray();
+    }
+
     /**
      * Returns the PingLevel that belongs to the requestedPingLevel. If the requested ping level does not result in a
      * valid PingLevel, we return the provided defaultLevel. You can provide the name of the item in the enum PingLevel
@@ -174,10 +398,23 @@ public abstract class BasePingServlet extends HttpServlet {
      * @param res        The HttpServletResponse object to write the html content to
      * @param pingResult PingResult containing the information to write to the response.
      * @throws IOException Thrown if writing to the response goes wrong.
+     * @deprecated Only called when a subclass overrides it, the html is then written for every request without an
+     *             ETag. Override {@link #renderHtml(PrintWriter, PingResult)} instead, that renders every result once.
      */
+    @Deprecated
     protected void writeHtmlToResponse(HttpServletResponse res, PingResult pingResult) throws IOException {
-        res.setContentType("text/html");
-        PrintWriter writer = res.getWriter();
+        res.setContentType(RenderedPingResult.HTML_CONTENT_TYPE);
+        renderHtml(res.getWriter(), pingResult);
+    }
+
+    /**
+     * Writes the PingResult in html format to the provided writer. This is used to render the html response of
+     * every result once, override this method to change the html.
+     *
+     * @param writer     The PrintWriter to write the html content to
+     * @param pingResult PingResult containing the information to write.
+     */
+    protected void renderHtml(PrintWriter writer, PingResult pingResult) {
         writer.println("<html><head><title>Ping Result</title></head><body><h1>Ping Result</h1>");
         writer.println("<h2>" + pingResult.getPingExecutorName() + "</h2>");
         writer.println("<p>" + pingResult.getMessage() + "</p>");
@@ -199,55 +436,198 @@ public abstract class BasePingServlet extends HttpServlet {
      * @param res        The HttpServletResponse object to write the json content to
      * @param pingResult PingResult containing the information to write to the response.
      * @throws IOException Thrown if writing to the response goed wrong
+     * @deprecated Only called when a subclass overrides it, the json is then written for every request without an
+     *             ETag. Override {@link #renderJson(PrintWriter, PingResult)} instead, that renders every result once.
      */
+    @Deprecated
     protected void writeJsonResponse(HttpServletResponse res, PingResult pingResult) throws IOException {
-        res.setContentType("application/json");
-        PrintWriter writer = res.getWriter();
-        StringBuilder sb = new StringBuilder();
-        sb.append("{")
-                .append("\"executorName\":\"").append(pingResult.getPingExecutorName()).append("\",")
-                .append("\"message\":\"").append(pingResult.getMessage()).append("\"");
-        if (pingResult instanceof ThoroughPingResult) {
-            sb.append(",\"thoroughResults\" : {");
-            ThoroughPingResult thoroughPingResult = (ThoroughPingResult) pingResult;
-            Map<String, String> thoroughExtraValues = thoroughPingResult.getThoroughExtraValues();
-            boolean firstItem = true;
-            for (String key : thoroughExtraValues.keySet()) {
-                if (!firstItem) {
-                    sb.append(",");
-                } else {
-                    firstItem = false;
-                }
-                sb.append("\"").append(key).append("\":\"").append(thoroughExtraValues.get(key)).append("\"");
-            }
-            sb.append("}");
-        }
-        sb.append("}");
-        writer.println(sb.toString());
+        res.setContentType(RenderedPingResult.JSON_CONTENT_TYPE);
+        renderJson(res.getWriter(), pingResult);
+    }
+
+    /**
+     * Writes the results of the PingExecutor in JSON format to the provided writer. This is used to render the json
+     * response of every result once, override this method to change the json. The json itself is written by the
+     * {@link PingResultJsonWriter}.
+     *
+     * @param writer     The PrintWriter to write the json content to
+     * @param pingResult PingResult containing the information to write.
+     * @throws IOException Thrown if writing the json goes wrong
+     */
+    protected void renderJson(PrintWriter writer, PingResult pingResult) throws IOException {
+        PingResultJsonWriter.write(writer, pingResult);
+        writer.println();
     }
 
     /**
-     * Makes use of the ping executor that is provided by the subclass. This method returns when another thread is updating
-     * the ping response. In that case it returns the old response.
+     * Returns the result for the provided level. If the level is refreshed in the background, the last published result
+     * is returned and the ping executor is never called. In all other cases the cached result is returned if it is still
+     * fresh, otherwise the ping executor that is provided by the subclass is used. When another thread is updating the
+     * ping response for the same level, this method waits for that response for a limited time.
      *
      * @return PingResult as obtained using the ping executor
      */
     protected PingResult obtainPingResult(PingLevel level) {
-        PingResult result;
-        if (pingResultSemaphore.tryAcquire()) {
-            try {
-                logger.debug("About to execute a real ping to the backend with level {}", level.name());
-                result = pingExecutor.execute(level);
-                if (result != null) {
-                    pingResultReference.set(result);
-                }
-            } finally {
-                pingResultSemaphore.release();
-            }
+        if (backgroundLevels.contains(level)) {
+            return obtainBackgroundResult(level);
+        }
+        return pingResultCache.obtain(level);
+    }
+
+    /**
+     * Returns the result for the provided level if it can be returned without calling the ping executor. That is the
+     * case for a published background result or a result that is still fresh.
+     *
+     * @param level PingLevel to obtain the result for
+     * @return PingResult that is available or null if the executor must be called
+     */
+    PingResult obtainAvailablePingResult(PingLevel level) {
+        if (backgroundLevels.contains(level)) {
+            return obtainBackgroundResult(level);
+        }
+        return pingResultCache.getFresh(level);
+    }
+
+    /**
+     * Returns the last result published by the background refresh. A result that is older than the maximum staleness
+     * of the level is replaced by a result with status TIMEOUT_ERROR, the background ping is apparently stuck. The
+     * TIMEOUT_ERROR result is created once per published result, so it is rendered only once as well. Before the first
+     * result is published, the same TIMEOUT_ERROR result is returned for every request.
+     *
+     * @param level PingLevel to obtain the result for
+     * @return PingResult published for the level, or a TIMEOUT_ERROR result if it is not available
+     */
+    private PingResult obtainBackgroundResult(PingLevel level) {
+        PingResult result = pingResultCache.getLatest(level);
+        if (result == null) {
+            return notRefreshedResults.get(level);
+        }
+        long maxStaleness = maxStalenesses.get(level);
+        if (maxStaleness <= 0 || pingResultCache.getLatestAgeMillis(level) <= maxStaleness) {
+            return result;
+        }
+        pingMetrics.recordStale(level);
+        AtomicReference<StalePingResult> staleResult = staleResults.get(level);
+        StalePingResult stale = staleResult.get();
+        if (stale == null || stale.publishedResult != result) {
+            logger.warn("The background result of level {} is more than {} ms old", level.name(), maxStaleness);
+            stale = new StalePingResult(result, new PingResult(pingExecutor.getName(), SystemStatus.TIMEOUT_ERROR,
+                    "FAILURE - The last background ping with level " + level.name()
+                            + " finished more than the maximum of " + maxStaleness + " ms ago."));
+            staleResult.set(stale);
+        }
+        return stale.timeoutResult;
+    }
+
+    /**
+     * Non blocking variant of {@link #obtainPingResult(PingLevel)}. The ping executor is called using the provided
+     * executor and the callback receives the result.
+     *
+     * @param level    PingLevel to obtain the result for
+     * @param executor Executor used to call the ping executor
+     * @param callback Callback that receives the result
+     */
+    void obtainPingResult(PingLevel level, Executor executor, PingResultCache.PingResultCallback callback) {
+        PingResult result = obtainAvailablePingResult(level);
+        if (result != null) {
+            callback.onResult(result);
         } else {
-            logger.debug("returning the previous message of ping since a new ping is being executed");
+            pingResultCache.obtain(level, executor, callback);
+        }
+    }
+
+    /**
+     * Stops notifying the callback that was passed to {@link #obtainPingResult(PingLevel, Executor,
+     * PingResultCache.PingResultCallback)}, for instance because the request timed out.
+     *
+     * @param level    PingLevel the callback was registered for
+     * @param callback Callback to remove
+     */
+    void removePingResultCallback(PingLevel level, PingResultCache.PingResultCallback callback) {
+        pingResultCache.removeCallback(level, callback);
+    }
+
+    /**
+     * Returns the executor that was provided by the subclass during initialisation.
+     *
+     * @return PingExecutor exposed by this servlet
+     */
+    PingExecutor getPingExecutor() {
+        return pingExecutor;
+    }
+
+    /**
+     * Schedules a refresh task for the configured PingLevel and for each other PingLevel that has its own interval
+     * larger than 0. Every level gets its own daemon thread, a ping that hangs on one level does not keep the other
+     * levels from being refreshed.
+     *
+     * @param config ServletConfig used to read the refresh intervals from.
+     * @throws ServletException thrown when a configured interval is not a number
+     */
+    private void startBackgroundRefresh(ServletConfig config) throws ServletException {
+        for (PingLevel pingLevel : PingLevel.values()) {
+            long interval = obtainRefreshInterval(config, pingLevel);
+            if (interval > 0) {
+                backgroundLevels.add(pingLevel);
+                maxStalenesses.put(pingLevel, getLongParameter(config, PARAM_MAXSTALENESS, pingLevel, 3 * interval));
+                staleResults.put(pingLevel, new AtomicReference<StalePingResult>());
+                notRefreshedResults.put(pingLevel, new PingResult(pingExecutor.getName(), SystemStatus.TIMEOUT_ERROR,
+                        "FAILURE - No background ping with level " + pingLevel.name() + " has finished yet."));
+                final String threadName = "ping-refresher-" + config.getServletName() + "-"
+                        + pingLevel.name().toLowerCase();
+                ScheduledExecutorService refreshScheduler = Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactory() {
+                            @Override
+                            public Thread newThread(Runnable runnable) {
+                                Thread thread = new Thread(runnable, threadName);
+                                thread.setDaemon(true);
+                                return thread;
+                            }
+                        });
+                refreshSchedulers.put(pingLevel, refreshScheduler);
+                refreshScheduler.scheduleWithFixedDelay(
+                        new BackgroundRefreshTask(pingLevel), 0, interval, TimeUnit.MILLISECONDS);
+                logger.info("Refreshing ping level {} in the background every {} ms", pingLevel.name(), interval);
+            }
+        }
+    }
+
+    /**
+     * Returns the refresh interval of the level. The general interval only applies to the configured ping level, the
+     * other levels are refreshed only if an interval is configured for that level specifically.
+     */
+    private long obtainRefreshInterval(ServletConfig config, PingLevel pingLevel) throws ServletException {
+        if (pingLevel == level) {
+            return getLongParameter(config, PARAM_REFRESHINTERVAL, pingLevel, DEFAULT_REFRESHINTERVAL);
+        }
+        String levelParamName = PARAM_REFRESHINTERVAL + "." + pingLevel.name().toLowerCase();
+        if (getParameter(config, levelParamName, null) == null) {
+            return 0;
+        }
+        return getLongParameter(config, PARAM_REFRESHINTERVAL, pingLevel, 0);
+    }
+
+    /**
+     * Obtains a numeric parameter that can be overridden per PingLevel. The level specific parameter has the name of
+     * the parameter followed by a dot and the lower case name of the level.
+     *
+     * @param config       ServletConfig to obtain the parameter values from.
+     * @param paramName    String containing the name of the parameter to obtain.
+     * @param pingLevel    PingLevel to obtain the specific value for.
+     * @param defaultValue The default value for the parameter. If no value could be found, this value is used.
+     * @return long containing the value for the provided parameter and level.
+     * @throws ServletException thrown when the configured value is not a number
+     */
+    long getLongParameter(ServletConfig config, String paramName, PingLevel pingLevel, long defaultValue)
+            throws ServletException {
+        String value = getParameter(config, paramName, String.valueOf(defaultValue));
+        value = getParameter(config, paramName + "." + pingLevel.name().toLowerCase(), value);
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new ServletException("The init-param " + paramName + " for level " + pingLevel.name()
+                    + " must be a number, but was '" + value + "'", e);
         }
-        return pingResultReference.get();
     }
 
     /**
@@ -297,4 +677,55 @@ public abstract class BasePingServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Makes the result of a background ping available to the requests.
+     *
+     * @param pingLevel  PingLevel the result belongs to
+     * @param pingResult PingResult to publish
+     */
+    void publishBackgroundResult(PingLevel pingLevel, PingResult pingResult) {
+        pingResultCache.put(pingLevel, pingResult);
+    }
+
+    /**
+     * Result with status TIMEOUT_ERROR that replaces a published result that is too old.
+     */
+    private static class StalePingResult {
+        private final PingResult publishedResult;
+        private final PingResult timeoutResult;
+
+        StalePingResult(PingResult publishedResult, PingResult timeoutResult) {
+            this.publishedResult = publishedResult;
+            this.timeoutResult = timeoutResult;
+        }
+    }
+
+    /**
+     * Task executing the ping for one level and publishing the result for the requests to read.
+     */
+    private class BackgroundRefreshTask implements Runnable {
+        private final PingLevel pingLevel;
+
+        BackgroundRefreshTask(PingLevel pingLevel) {
+            this.pingLevel = pingLevel;
+        }
+
+        @Override
+        public void run() {
+            // Never let an exception escape, the scheduler would stop refreshing this level
+            try {
+                logger.debug("About to execute a background ping to the backend with level {}", pingLevel.name());
+                long startNanos = System.nanoTime();
+                PingResult result = pingExecutor.execute(pingLevel);
+                pingMetrics.recordExecution(pingLevel, result, System.nanoTime() - startNanos);
+                if (result != null) {
+                    publishBackgroundResult(pingLevel, result);
+                }
+            } catch (RuntimeException e) {
+                logger.error("Problem while executing a background ping with level " + pingLevel.name(), e);
+                publishBackgroundResult(pingLevel, new PingResult(pingExecutor.getName(), SystemStatus.ERROR,
+                        "FAILURE - Background ping failed: " + e.getClass().getName() + ": " + e.getMessage()));
+            }
+        }
+    }
 }
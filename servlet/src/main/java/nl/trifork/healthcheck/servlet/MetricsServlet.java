@@ -0,0 +1,82 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.SystemStatus;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * <p>Servlet that exposes the outcome of the pings of all {@link BasePingServlet}s in the web application in the
+ * OpenMetrics text format, to be scraped by Prometheus or a compatible system. The servlet only reads the metrics
+ * that are kept in memory by the ping servlets, a scrape never executes a ping. Levels that were never executed
+ * are not reported.</p>
+ * <p>The following metrics are written, all with the labels <em>servlet</em>, <em>executor</em> and <em>level</em>:</p>
+ * <ul>
+ * <li><strong>healthcheck_status</strong>: one gauge per {@link SystemStatus}, 1 for the status of the last result</li>
+ * <li><strong>healthcheck_ping_duration_seconds</strong>: histogram of the execution time of the ping executor</li>
+ * <li><strong>healthcheck_requests_coalesced_total</strong>: requests that waited for a ping of another request</li>
+ * <li><strong>healthcheck_requests_stale_total</strong>: requests that received an older result because the running
+ * ping did not finish within the maximum wait time</li>
+ * <li><strong>healthcheck_thorough_value</strong>: the numeric thorough values of the last result, with the label
+ * <em>key</em></li>
+ * </ul>
+ * <pre>
+ * &lt;servlet&gt;
+ *     &lt;servlet-name&gt;MetricsServlet&lt;/servlet-name&gt;
+ *     &lt;servlet-class&gt;nl.trifork.healthcheck.servlet.MetricsServlet&lt;/servlet-class&gt;
+ * &lt;/servlet&gt;
+ * </pre>
+ */
+public class MetricsServlet extends HttpServlet {
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        res.setHeader("Cache-Control", "no-cache, no-store, must-revalidate");
+        res.setStatus(HttpServletResponse.SC_OK);
+        res.setContentType(CONTENT_TYPE);
+        PrintWriter writer = res.getWriter();
+        writeMetrics(new OpenMetricsWriter(writer));
+        writer.flush();
+    }
+
+    /**
+     * Writes all metric families, the samples of all registered ping servlets are grouped per family.
+     *
+     * @param writer OpenMetricsWriter to write the metrics to
+     * @throws IOException Thrown if writing the metrics goes wrong
+     */
+    void writeMetrics(OpenMetricsWriter writer) throws IOException {
+        PingMetricsRegistry registry = PingMetricsRegistry.find(getServletContext());
+        if (registry != null) {
+            List<PingMetrics> allMetrics = registry.getMetrics();
+
+            writer.writeFamily(PingMetrics.FAMILY_STATUS, "gauge", "Status of the last ping result, 1 for the active status.");
+            for (PingMetrics metrics : allMetrics) {
+                metrics.writeStatus(writer);
+            }
+            writer.writeFamily(PingMetrics.FAMILY_DURATION, "histogram", "Execution time of the ping executor.");
+            for (PingMetrics metrics : allMetrics) {
+                metrics.writeDuration(writer);
+            }
+            writer.writeFamily(PingMetrics.FAMILY_COALESCED, "counter", "Requests that waited for the ping of another request.");
+            for (PingMetrics metrics : allMetrics) {
+                metrics.writeCoalesced(writer);
+            }
+            writer.writeFamily(PingMetrics.FAMILY_STALE, "counter", "Requests that received an older result because the ping did not finish in time.");
+            for (PingMetrics metrics : allMetrics) {
+                metrics.writeStale(writer);
+            }
+            writer.writeFamily(PingMetrics.FAMILY_THOROUGH_VALUE, "gauge", "Numeric values of the last thorough ping result.");
+            for (PingMetrics metrics : allMetrics) {
+                metrics.writeThoroughValues(writer);
+            }
+        }
+        writer.writeEof();
+    }
+}
@@ -0,0 +1,93 @@
+package nl.trifork.healthcheck.servlet;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes the parts of the OpenMetrics text format to a {@link Writer}. Numbers are converted using a small buffer
+ * that is reused for all numbers, so writing them does not create strings.
+ */
+class OpenMetricsWriter {
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final Writer writer;
+    private final char[] digits = new char[20];
+
+    OpenMetricsWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    void writeFamily(String name, String type, String help) throws IOException {
+        writer.write("# TYPE ");
+        writer.write(name);
+        writer.write(' ');
+        writer.write(type);
+        writer.write("\n# HELP ");
+        writer.write(name);
+        writer.write(' ');
+        writer.write(help);
+        writer.write('\n');
+    }
+
+    void writeEof() throws IOException {
+        writer.write("# EOF\n");
+    }
+
+    void write(String value) throws IOException {
+        writer.write(value);
+    }
+
+    void write(char value) throws IOException {
+        writer.write(value);
+    }
+
+    /**
+     * Writes a value that is not negative.
+     */
+    void writeLong(long value) throws IOException {
+        int position = digits.length;
+        do {
+            digits[--position] = (char) ('0' + (value % 10));
+            value /= 10;
+        } while (value > 0);
+        writer.write(digits, position, digits.length - position);
+    }
+
+    /**
+     * Writes a duration in nanoseconds as seconds with nine decimals.
+     */
+    void writeSeconds(long nanos) throws IOException {
+        writeLong(nanos / NANOS_PER_SECOND);
+        writer.write('.');
+        long fraction = nanos % NANOS_PER_SECOND;
+        int position = digits.length;
+        for (int i = 0; i < 9; i++) {
+            digits[--position] = (char) ('0' + (fraction % 10));
+            fraction /= 10;
+        }
+        writer.write(digits, position, 9);
+    }
+
+    /**
+     * Escapes a value to be used between the quotes of a label.
+     */
+    static String escapeLabelValue(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                sb.append("\\\\");
+            } else if (c == '"') {
+                sb.append("\\\"");
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,244 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * <p>In memory metrics of the pings executed for one servlet. The {@link PingResultCache} and the background refresh
+ * record every execution of the ping executor and every request that did not get a result of its own. The
+ * {@link MetricsServlet} writes the metrics in the OpenMetrics text format.</p>
+ * <p>Every series is labelled with the name of the servlet, so servlets that wrap the same executor, like a
+ * synchronous and an asynchronous servlet, write separate series.</p>
+ * <p>All label strings are created once per level and the numeric thorough values once per result, so writing the
+ * metrics only reads counters and writes existing strings.</p>
+ */
+class PingMetrics {
+    static final String FAMILY_STATUS = "healthcheck_status";
+    static final String FAMILY_DURATION = "healthcheck_ping_duration_seconds";
+    static final String FAMILY_COALESCED = "healthcheck_requests_coalesced";
+    static final String FAMILY_STALE = "healthcheck_requests_stale";
+    static final String FAMILY_THOROUGH_VALUE = "healthcheck_thorough_value";
+
+    private static final long[] BUCKET_BOUNDS_MILLIS = {1, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+    private static final Pattern NUMBER = Pattern.compile("-?[0-9]+(\\.[0-9]+)?([eE][-+]?[0-9]+)?");
+
+    private final String servletName;
+    private final String executorName;
+    private final Map<PingLevel, LevelMetrics> levels = new EnumMap<PingLevel, LevelMetrics>(PingLevel.class);
+
+    PingMetrics(String servletName, String executorName) {
+        this.servletName = servletName == null ? "" : servletName;
+        this.executorName = executorName;
+        for (PingLevel pingLevel : PingLevel.values()) {
+            levels.put(pingLevel, new LevelMetrics(pingLevel));
+        }
+    }
+
+    String getServletName() {
+        return servletName;
+    }
+
+    String getExecutorName() {
+        return executorName;
+    }
+
+    /**
+     * Records an execution of the ping executor.
+     *
+     * @param pingLevel     PingLevel that was executed
+     * @param pingResult    PingResult of the execution
+     * @param durationNanos duration of the execution in nanoseconds
+     */
+    void recordExecution(PingLevel pingLevel, PingResult pingResult, long durationNanos) {
+        levels.get(pingLevel).recordExecution(pingResult, durationNanos);
+    }
+
+    /**
+     * Records a request that received the result of a ping that was started for another request.
+     */
+    void recordCoalesced(PingLevel pingLevel) {
+        levels.get(pingLevel).coalesced.incrementAndGet();
+    }
+
+    /**
+     * Records a request that received an older result because the running ping did not finish in time.
+     */
+    void recordStale(PingLevel pingLevel) {
+        levels.get(pingLevel).stale.incrementAndGet();
+    }
+
+    /*
+     * The write methods write the samples of one metric family, levels that were never executed are skipped.
+     */
+
+    void writeStatus(OpenMetricsWriter writer) throws IOException {
+        for (LevelMetrics level : levels.values()) {
+            LastResult lastResult = level.lastResult.get();
+            if (lastResult != null) {
+                for (SystemStatus status : SystemStatus.values()) {
+                    writer.write(level.statusPrefixes[status.ordinal()]);
+                    writer.write(status == lastResult.status ? "1\n" : "0\n");
+                }
+            }
+        }
+    }
+
+    void writeDuration(OpenMetricsWriter writer) throws IOException {
+        for (LevelMetrics level : levels.values()) {
+            if (level.lastResult.get() == null) {
+                continue;
+            }
+            long cumulative = 0;
+            for (int i = 0; i < level.bucketPrefixes.length; i++) {
+                cumulative += level.bucketCounts.get(i);
+                writer.write(level.bucketPrefixes[i]);
+                writer.writeLong(cumulative);
+                writer.write('\n');
+            }
+            writer.write(level.countPrefix);
+            writer.writeLong(cumulative);
+            writer.write('\n');
+            writer.write(level.sumPrefix);
+            writer.writeSeconds(level.sumNanos.get());
+            writer.write('\n');
+        }
+    }
+
+    void writeCoalesced(OpenMetricsWriter writer) throws IOException {
+        for (LevelMetrics level : levels.values()) {
+            if (level.lastResult.get() != null) {
+                writer.write(level.coalescedPrefix);
+                writer.writeLong(level.coalesced.get());
+                writer.write('\n');
+            }
+        }
+    }
+
+    void writeStale(OpenMetricsWriter writer) throws IOException {
+        for (LevelMetrics level : levels.values()) {
+            if (level.lastResult.get() != null) {
+                writer.write(level.stalePrefix);
+                writer.writeLong(level.stale.get());
+                writer.write('\n');
+            }
+        }
+    }
+
+    void writeThoroughValues(OpenMetricsWriter writer) throws IOException {
+        for (LevelMetrics level : levels.values()) {
+            LastResult lastResult = level.lastResult.get();
+            if (lastResult != null) {
+                for (String line : lastResult.thoroughValueLines) {
+                    writer.write(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index of the histogram bucket for the duration, the last bucket is the +Inf bucket. The upper bound
+     * of a bucket is inclusive, like the <em>le</em> label says.
+     */
+    static int bucketIndex(long durationNanos) {
+        for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+            if (durationNanos <= TimeUnit.MILLISECONDS.toNanos(BUCKET_BOUNDS_MILLIS[i])) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MILLIS.length;
+    }
+
+    private String labels(PingLevel pingLevel) {
+        return "servlet=\"" + OpenMetricsWriter.escapeLabelValue(servletName)
+                + "\",executor=\"" + OpenMetricsWriter.escapeLabelValue(executorName)
+                + "\",level=\"" + pingLevel.name().toLowerCase() + "\"";
+    }
+
+    /**
+     * Status and numeric thorough values of the last result of a level.
+     */
+    private static class LastResult {
+        private final SystemStatus status;
+        private final List<String> thoroughValueLines;
+
+        LastResult(SystemStatus status, List<String> thoroughValueLines) {
+            this.status = status;
+            this.thoroughValueLines = thoroughValueLines;
+        }
+    }
+
+    /**
+     * Counters and precomputed sample prefixes of one level.
+     */
+    private class LevelMetrics {
+        private final String labels;
+        private final String[] statusPrefixes;
+        private final String[] bucketPrefixes;
+        private final String countPrefix;
+        private final String sumPrefix;
+        private final String coalescedPrefix;
+        private final String stalePrefix;
+
+        private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+        private final AtomicLong sumNanos = new AtomicLong();
+        private final AtomicLong coalesced = new AtomicLong();
+        private final AtomicLong stale = new AtomicLong();
+        private final AtomicReference<LastResult> lastResult = new AtomicReference<LastResult>();
+
+        LevelMetrics(PingLevel pingLevel) {
+            labels = labels(pingLevel);
+            statusPrefixes = new String[SystemStatus.values().length];
+            for (SystemStatus status : SystemStatus.values()) {
+                statusPrefixes[status.ordinal()] = FAMILY_STATUS + "{" + labels + ",status=\"" + status.name() + "\"} ";
+            }
+            bucketPrefixes = new String[BUCKET_BOUNDS_MILLIS.length + 1];
+            for (int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++) {
+                bucketPrefixes[i] = FAMILY_DURATION + "_bucket{" + labels + ",le=\""
+                        + (BUCKET_BOUNDS_MILLIS[i] / 1000.0) + "\"} ";
+            }
+            bucketPrefixes[BUCKET_BOUNDS_MILLIS.length] = FAMILY_DURATION + "_bucket{" + labels + ",le=\"+Inf\"} ";
+            countPrefix = FAMILY_DURATION + "_count{" + labels + "} ";
+            sumPrefix = FAMILY_DURATION + "_sum{" + labels + "} ";
+            coalescedPrefix = FAMILY_COALESCED + "_total{" + labels + "} ";
+            stalePrefix = FAMILY_STALE + "_total{" + labels + "} ";
+        }
+
+        void recordExecution(PingResult pingResult, long durationNanos) {
+            bucketCounts.incrementAndGet(bucketIndex(durationNanos));
+            sumNanos.addAndGet(durationNanos);
+            if (pingResult != null) {
+                lastResult.set(new LastResult(pingResult.getSystemStatus(), thoroughValueLines(pingResult)));
+            }
+        }
+
+        private List<String> thoroughValueLines(PingResult pingResult) {
+            List<String> lines = new ArrayList<String>();
+            if (pingResult instanceof ThoroughPingResult) {
+                Map<String, String> values = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+                if (values != null) {
+                    for (Map.Entry<String, String> entry : values.entrySet()) {
+                        String value = entry.getValue() == null ? "" : entry.getValue().trim();
+                        if (NUMBER.matcher(value).matches()) {
+                            lines.add(FAMILY_THOROUGH_VALUE + "{" + labels + ",key=\""
+                                    + OpenMetricsWriter.escapeLabelValue(entry.getKey()) + "\"} " + value + "\n");
+                        }
+                    }
+                }
+            }
+            return lines;
+        }
+    }
+}
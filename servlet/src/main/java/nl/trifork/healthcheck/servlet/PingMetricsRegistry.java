@@ -0,0 +1,56 @@
+package nl.trifork.healthcheck.servlet;
+
+import javax.servlet.ServletContext;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the {@link PingMetrics} of all ping servlets in a web application. The registry is stored as an
+ * attribute of the {@link ServletContext}, the ping servlets register their metrics and the {@link MetricsServlet}
+ * reads them.
+ */
+class PingMetricsRegistry {
+    static final String ATTRIBUTE_NAME = PingMetricsRegistry.class.getName();
+
+    private final List<PingMetrics> metrics = new CopyOnWriteArrayList<PingMetrics>();
+
+    /**
+     * Returns the registry of the servlet context, it is created when it does not exist yet.
+     *
+     * @param servletContext ServletContext the registry belongs to
+     * @return PingMetricsRegistry of the servlet context
+     */
+    static PingMetricsRegistry obtain(ServletContext servletContext) {
+        synchronized (PingMetricsRegistry.class) {
+            PingMetricsRegistry registry = find(servletContext);
+            if (registry == null) {
+                registry = new PingMetricsRegistry();
+                servletContext.setAttribute(ATTRIBUTE_NAME, registry);
+            }
+            return registry;
+        }
+    }
+
+    /**
+     * Returns the registry of the servlet context without creating it.
+     *
+     * @param servletContext ServletContext the registry belongs to
+     * @return PingMetricsRegistry of the servlet context or null if no ping servlet registered its metrics
+     */
+    static PingMetricsRegistry find(ServletContext servletContext) {
+        Object registry = servletContext.getAttribute(ATTRIBUTE_NAME);
+        return registry instanceof PingMetricsRegistry ? (PingMetricsRegistry) registry : null;
+    }
+
+    void register(PingMetrics pingMetrics) {
+        metrics.add(pingMetrics);
+    }
+
+    void unregister(PingMetrics pingMetrics) {
+        metrics.remove(pingMetrics);
+    }
+
+    List<PingMetrics> getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,387 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>Cache for the results of a {@link PingExecutor}, with one entry per {@link PingLevel}. Each level has its own
+ * maximum age in milliseconds. A result that is younger than the maximum age is returned without calling the
+ * executor. A maximum age of 0 means a result is never fresh, so every call tries to refresh it.</p>
+ * <p>Only one thread at a time refreshes the result of a level. Threads that ask for the same level while the refresh
+ * is running attach to that refresh and wait for its result, at most for the configured maximum wait time of the
+ * level. When the wait time passes they receive the previous real result of the level. If there is no previous
+ * result yet, they receive a result with status {@link SystemStatus#TIMEOUT_ERROR}.</p>
+ * <p>Callers that do not want to block can register a {@link PingResultCallback} instead. The refresh is then
+ * executed by the provided {@link Executor} and the callback is notified when it finishes.</p>
+ */
+class PingResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(PingResultCache.class);
+
+    private final PingExecutor pingExecutor;
+    private final PingMetrics pingMetrics;
+    private final Map<PingLevel, CacheEntry> entries = new EnumMap<PingLevel, CacheEntry>(PingLevel.class);
+
+    /**
+     * Creates the cache for the provided executor.
+     *
+     * @param pingExecutor PingExecutor used to refresh the results
+     * @param maxAges      Map containing the maximum age in milliseconds per PingLevel, missing levels get 0
+     * @param maxWaits     Map containing the maximum time in milliseconds a thread waits for a running refresh per
+     *                     PingLevel, missing levels get 0
+     * @param pingMetrics  PingMetrics that records the executions and the requests that share a refresh
+     */
+    PingResultCache(PingExecutor pingExecutor, Map<PingLevel, Long> maxAges, Map<PingLevel, Long> maxWaits,
+                    PingMetrics pingMetrics) {
+        this.pingExecutor = pingExecutor;
+        this.pingMetrics = pingMetrics;
+        for (PingLevel pingLevel : PingLevel.values()) {
+            entries.put(pingLevel, new CacheEntry(valueOrZero(maxAges.get(pingLevel)), valueOrZero(maxWaits.get(pingLevel))));
+        }
+    }
+
+    /**
+     * Returns a fresh result for the level, refreshing it with the executor if required. If another thread is
+     * refreshing the level, we wait for that refresh to finish for at most the maximum wait time. After that, the
+     * previous result is returned.
+     *
+     * @param pingLevel PingLevel to obtain the result for
+     * @return PingResult for the level, never null
+     */
+    PingResult obtain(PingLevel pingLevel) {
+        CacheEntry entry = entries.get(pingLevel);
+        PingResult result = entry.getFresh();
+        if (result != null) {
+            logger.debug("Returning the cached result for level {}", pingLevel.name());
+            return result;
+        }
+
+        PingFlight newFlight = new PingFlight(pingLevel, entry);
+        PingFlight flight = entry.joinOrStart(newFlight);
+        if (flight == newFlight) {
+            flight.run();
+            return resultOrFallback(flight, 0);
+        }
+        logger.debug("Waiting for the ping with level {} that is being executed by another thread", pingLevel.name());
+        pingMetrics.recordCoalesced(pingLevel);
+        return resultOrFallback(flight, entry.maxWaitMillis);
+    }
+
+    /**
+     * Non blocking variant of {@link #obtain(PingLevel)}. A fresh result is passed to the callback immediately on the
+     * calling thread. Otherwise the callback is attached to the running refresh of the level, or to a new refresh
+     * that is started using the provided executor. If the executor does not accept the refresh, the callback receives
+     * the previous result of the level or a result with status TIMEOUT_ERROR. The ping is never executed on the calling
+     * thread.
+     *
+     * @param pingLevel PingLevel to obtain the result for
+     * @param executor  Executor used to execute a new refresh
+     * @param callback  PingResultCallback that receives the result, never with null
+     */
+    void obtain(PingLevel pingLevel, Executor executor, PingResultCallback callback) {
+        CacheEntry entry = entries.get(pingLevel);
+        PingResult result = entry.getFresh();
+        if (result != null) {
+            logger.debug("Returning the cached result for level {}", pingLevel.name());
+            callback.onResult(result);
+            return;
+        }
+
+        PingFlight newFlight = new PingFlight(pingLevel, entry);
+        PingFlight flight = entry.joinOrStart(newFlight);
+        flight.addCallback(callback);
+        if (flight != newFlight) {
+            pingMetrics.recordCoalesced(pingLevel);
+        } else {
+            try {
+                executor.execute(flight);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Could not hand over the ping with level {}, answering with the previous result",
+                        pingLevel.name());
+                // Cancelling completes the flight, the attached callbacks receive the fallback result
+                flight.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Detaches the callback from the running refresh of the level, it will not be notified anymore. Used for callers
+     * that stopped waiting, so they are not kept in memory for as long as the refresh takes.
+     *
+     * @param pingLevel PingLevel the callback was registered for
+     * @param callback  PingResultCallback to remove
+     */
+    void removeCallback(PingLevel pingLevel, PingResultCallback callback) {
+        PingFlight flight = entries.get(pingLevel).inFlight.get();
+        if (flight != null) {
+            flight.removeCallback(callback);
+        }
+    }
+
+    /**
+     * Returns the result for the level if it is younger than the maximum age of the level.
+     *
+     * @param pingLevel PingLevel to obtain the result for
+     * @return PingResult for the level or null if there is no fresh result
+     */
+    PingResult getFresh(PingLevel pingLevel) {
+        return entries.get(pingLevel).getFresh();
+    }
+
+    /**
+     * Returns the last stored result for the level, no matter how old it is.
+     *
+     * @param pingLevel PingLevel to obtain the result for
+     * @return PingResult for the level or null if no result is available yet
+     */
+    PingResult getLatest(PingLevel pingLevel) {
+        return entries.get(pingLevel).getLatest();
+    }
+
+    /**
+     * Returns the number of milliseconds since the last result of the level was stored.
+     *
+     * @param pingLevel PingLevel to obtain the age for
+     * @return age of the last result in milliseconds or -1 if no result is available yet
+     */
+    long getLatestAgeMillis(PingLevel pingLevel) {
+        return entries.get(pingLevel).getLatestAgeMillis();
+    }
+
+    /**
+     * Stores a result that was obtained outside of the cache, for instance by a background task.
+     *
+     * @param pingLevel  PingLevel the result belongs to
+     * @param pingResult PingResult to store
+     */
+    void put(PingLevel pingLevel, PingResult pingResult) {
+        entries.get(pingLevel).put(pingResult);
+    }
+
+    /**
+     * Waits for the flight to finish and returns its result. When the wait times out, or when the flight does not
+     * deliver a result, the latest result of the level is returned. If there is no result at all, a result with
+     * status TIMEOUT_ERROR is returned.
+     */
+    private PingResult resultOrFallback(PingFlight flight, long maxWaitMillis) {
+        PingLevel pingLevel = flight.pingLevel;
+        PingResult result = null;
+        try {
+            result = flight.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.debug("Ping with level {} did not finish within {} ms", pingLevel.name(), maxWaitMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Cannot happen, the RefreshCall handles all exceptions
+            logger.error("Unexpected problem while waiting for a ping with level " + pingLevel.name(), e);
+        } catch (CancellationException e) {
+            logger.debug("Ping with level {} was not executed", pingLevel.name());
+        }
+        if (result == null) {
+            result = flight.entry.getLatest();
+            if (result != null) {
+                pingMetrics.recordStale(pingLevel);
+            }
+        }
+        if (result == null && flight.isCancelled()) {
+            result = new PingResult(pingExecutor.getName(), SystemStatus.TIMEOUT_ERROR,
+                    "FAILURE - No result available yet, the ping with level " + pingLevel.name()
+                            + " could not be executed.");
+        } else if (result == null) {
+            result = new PingResult(pingExecutor.getName(), SystemStatus.TIMEOUT_ERROR,
+                    "FAILURE - No result available yet, the first ping with level " + pingLevel.name()
+                            + " did not finish within " + maxWaitMillis + " ms.");
+        }
+        return result;
+    }
+
+    private static long valueOrZero(Long value) {
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Receives the result of a ping that was requested without blocking.
+     */
+    interface PingResultCallback {
+        void onResult(PingResult pingResult);
+    }
+
+    /**
+     * Executes the actual ping and stores the result. Exceptions thrown by the executor are turned into a result with
+     * status ERROR, that way all waiting threads receive the same outcome.
+     */
+    private class RefreshCall implements Callable<PingResult> {
+        private final PingLevel pingLevel;
+        private final CacheEntry entry;
+
+        RefreshCall(PingLevel pingLevel, CacheEntry entry) {
+            this.pingLevel = pingLevel;
+            this.entry = entry;
+        }
+
+        @Override
+        public PingResult call() {
+            // Another thread could have refreshed the entry just before we started the flight
+            PingResult result = entry.getFresh();
+            if (result != null) {
+                return result;
+            }
+            logger.debug("About to execute a real ping to the backend with level {}", pingLevel.name());
+            long startNanos = System.nanoTime();
+            try {
+                result = pingExecutor.execute(pingLevel);
+            } catch (RuntimeException e) {
+                logger.error("Problem while executing a ping with level " + pingLevel.name(), e);
+                result = new PingResult(pingExecutor.getName(), SystemStatus.ERROR,
+                        "FAILURE - Ping failed: " + e.getClass().getName() + ": " + e.getMessage());
+            }
+            pingMetrics.recordExecution(pingLevel, result, System.nanoTime() - startNanos);
+            if (result != null) {
+                entry.put(result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * One refresh of a level that other threads can attach to. When it finishes it removes itself from the entry and
+     * notifies the registered callbacks.
+     */
+    private class PingFlight extends FutureTask<PingResult> {
+        private final PingLevel pingLevel;
+        private final CacheEntry entry;
+        private final List<PingResultCallback> callbacks = new ArrayList<PingResultCallback>();
+        private boolean finished = false;
+
+        PingFlight(PingLevel pingLevel, CacheEntry entry) {
+            super(new RefreshCall(pingLevel, entry));
+            this.pingLevel = pingLevel;
+            this.entry = entry;
+        }
+
+        void addCallback(PingResultCallback callback) {
+            synchronized (callbacks) {
+                if (!finished) {
+                    callbacks.add(callback);
+                    return;
+                }
+            }
+            notifyCallback(callback, resultOrFallback(this, 0));
+        }
+
+        void removeCallback(PingResultCallback callback) {
+            synchronized (callbacks) {
+                callbacks.remove(callback);
+            }
+        }
+
+        @Override
+        protected void done() {
+            entry.inFlight.compareAndSet(this, null);
+            List<PingResultCallback> toNotify;
+            synchronized (callbacks) {
+                finished = true;
+                toNotify = new ArrayList<PingResultCallback>(callbacks);
+                callbacks.clear();
+            }
+            if (!toNotify.isEmpty()) {
+                PingResult result = resultOrFallback(this, 0);
+                for (PingResultCallback callback : toNotify) {
+                    notifyCallback(callback, result);
+                }
+            }
+        }
+
+        private void notifyCallback(PingResultCallback callback, PingResult result) {
+            try {
+                callback.onResult(result);
+            } catch (RuntimeException e) {
+                logger.error("Problem while handing over the result of a ping with level " + pingLevel.name(), e);
+            }
+        }
+    }
+
+    /**
+     * Result together with the moment it was stored.
+     */
+    private static class CachedPingResult {
+        private final PingResult pingResult;
+        private final long storedAtNanos;
+
+        CachedPingResult(PingResult pingResult, long storedAtNanos) {
+            this.pingResult = pingResult;
+            this.storedAtNanos = storedAtNanos;
+        }
+    }
+
+    /**
+     * All state kept for one level.
+     */
+    private static class CacheEntry {
+        private final long maxAgeNanos;
+        private final long maxWaitMillis;
+        private final AtomicReference<PingFlight> inFlight = new AtomicReference<PingFlight>();
+        private final AtomicReference<CachedPingResult> cachedResult = new AtomicReference<CachedPingResult>();
+
+        CacheEntry(long maxAgeMillis, long maxWaitMillis) {
+            this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAgeMillis);
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        /**
+         * Returns the flight that is running for this level, or installs the provided flight if none is running. The
+         * caller must run the provided flight if it is returned.
+         */
+        PingFlight joinOrStart(PingFlight newFlight) {
+            while (true) {
+                PingFlight flight = inFlight.get();
+                if (flight != null) {
+                    return flight;
+                }
+                if (inFlight.compareAndSet(null, newFlight)) {
+                    return newFlight;
+                }
+            }
+        }
+
+        PingResult getFresh() {
+            CachedPingResult cached = cachedResult.get();
+            if (cached == null || maxAgeNanos <= 0 || System.nanoTime() - cached.storedAtNanos >= maxAgeNanos) {
+                return null;
+            }
+            return cached.pingResult;
+        }
+
+        PingResult getLatest() {
+            CachedPingResult cached = cachedResult.get();
+            return cached == null ? null : cached.pingResult;
+        }
+
+        long getLatestAgeMillis() {
+            CachedPingResult cached = cachedResult.get();
+            return cached == null ? -1 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cached.storedAtNanos);
+        }
+
+        void put(PingResult pingResult) {
+            cachedResult.set(new CachedPingResult(pingResult, System.nanoTime()));
+        }
+    }
+}
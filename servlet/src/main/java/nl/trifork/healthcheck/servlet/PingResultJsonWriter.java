@@ -0,0 +1,122 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * <p>Writes a {@link PingResult} as a json document to a {@link Writer}. Nothing is buffered, the keys and values are
+ * written to the writer while walking through the result. All strings are escaped, so quotes, backslashes and line
+ * breaks in messages of an executor result in valid json.</p>
+ * <p>The document looks like this, the thoroughResults are only present for a {@link ThoroughPingResult}:</p>
+ * <pre>
+ * {"executorName":"Hippo repository ping executor","systemStatus":"OK","message":"OK - Repository online and accessible.",
+ *  "thoroughResults":{"used_memory":"63 Mb"}}
+ * </pre>
+ */
+public final class PingResultJsonWriter {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private PingResultJsonWriter() {
+    }
+
+    /**
+     * Writes the result as json to the writer. The writer is not flushed or closed.
+     *
+     * @param writer     Writer to write the json to
+     * @param pingResult PingResult to write
+     * @throws IOException Thrown if writing to the writer goes wrong
+     */
+    public static void write(Writer writer, PingResult pingResult) throws IOException {
+        writer.write("{\"executorName\":");
+        writeString(writer, pingResult.getPingExecutorName());
+        writer.write(",\"systemStatus\":");
+        writeString(writer, pingResult.getSystemStatus() == null ? null : pingResult.getSystemStatus().name());
+        writer.write(",\"message\":");
+        writeString(writer, pingResult.getMessage());
+        if (pingResult instanceof ThoroughPingResult) {
+            Map<String, String> thoroughExtraValues = ((ThoroughPingResult) pingResult).getThoroughExtraValues();
+            if (thoroughExtraValues != null) {
+                writer.write(",\"thoroughResults\":{");
+                boolean firstItem = true;
+                for (Map.Entry<String, String> entry : thoroughExtraValues.entrySet()) {
+                    if (!firstItem) {
+                        writer.write(',');
+                    } else {
+                        firstItem = false;
+                    }
+                    writeString(writer, entry.getKey());
+                    writer.write(':');
+                    writeString(writer, entry.getValue());
+                }
+                writer.write('}');
+            }
+        }
+        writer.write('}');
+    }
+
+    /**
+     * Writes the value as a quoted and escaped json string, or as null. Runs of characters that do not need escaping
+     * are written in one call.
+     *
+     * @param writer Writer to write the string to
+     * @param value  String to write, can be null
+     * @throws IOException Thrown if writing to the writer goes wrong
+     */
+    public static void writeString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        int start = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+                continue;
+            }
+            if (i > start) {
+                writer.write(value, start, i - start);
+            }
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                case '\b':
+                    writer.write("\\b");
+                    break;
+                case '\f':
+                    writer.write("\\f");
+                    break;
+                default:
+                    // Other control characters and the javascript line separators
+                    writer.write("\\u");
+                    writer.write(HEX_DIGITS[(c >> 12) & 0xF]);
+                    writer.write(HEX_DIGITS[(c >> 8) & 0xF]);
+                    writer.write(HEX_DIGITS[(c >> 4) & 0xF]);
+                    writer.write(HEX_DIGITS[c & 0xF]);
+            }
+        }
+        if (length > start) {
+            writer.write(value, start, length - start);
+        }
+        writer.write('"');
+    }
+}
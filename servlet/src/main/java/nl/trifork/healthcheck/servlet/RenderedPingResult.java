@@ -0,0 +1,90 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingResult;
+
+import java.util.zip.CRC32;
+
+/**
+ * <p>The json and html representations of a {@link PingResult}, rendered once into bytes. A result does not change
+ * after it is created, therefore the bytes can be written to every response that returns the same result.</p>
+ * <p>Each representation has an entity tag that is derived from its content. Clients can send it back in the
+ * <em>If-None-Match</em> header to check whether the result changed.</p>
+ */
+class RenderedPingResult {
+    static final String JSON_CONTENT_TYPE = "application/json;charset=UTF-8";
+    static final String HTML_CONTENT_TYPE = "text/html;charset=UTF-8";
+
+    private final PingResult pingResult;
+    private final Representation json;
+    private final Representation html;
+
+    RenderedPingResult(PingResult pingResult, byte[] json, byte[] html) {
+        this.pingResult = pingResult;
+        this.json = new Representation(JSON_CONTENT_TYPE, json, "j");
+        this.html = new Representation(HTML_CONTENT_TYPE, html, "h");
+    }
+
+    PingResult getPingResult() {
+        return pingResult;
+    }
+
+    Representation getJson() {
+        return json;
+    }
+
+    Representation getHtml() {
+        return html;
+    }
+
+    /**
+     * The bytes of one representation together with its content type and entity tag.
+     */
+    static class Representation {
+        private final String contentType;
+        private final byte[] bytes;
+        private final String eTag;
+
+        Representation(String contentType, byte[] bytes, String eTagPrefix) {
+            this.contentType = contentType;
+            this.bytes = bytes;
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, bytes.length);
+            this.eTag = "\"" + eTagPrefix + Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length) + "\"";
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        byte[] getBytes() {
+            return bytes;
+        }
+
+        String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Checks whether the value of an If-None-Match header matches the entity tag of this representation. The
+         * header can contain a list of tags, weak tags are compared by their value.
+         *
+         * @param ifNoneMatch value of the If-None-Match header, can be null
+         * @return true if the client already has this representation
+         */
+        boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if ("*".equals(tag) || eTag.equals(tag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class AsyncBasePingServletTest {
+    @Mock
+    PingExecutor mockPingExecutor;
+    @Mock
+    ServletConfig mockServletConfig;
+    @Mock
+    ServletContext mockServletContext;
+    @Mock
+    HttpServletRequest mockRequest;
+    @Mock
+    HttpServletResponse mockResponse;
+    @Mock
+    AsyncContext mockAsyncContext;
+
+    AsyncBasePingServlet asyncPingServlet;
+    CountDownLatch blockPing = new CountDownLatch(1);
+    ByteArrayServletOutputStream responseBody = new ByteArrayServletOutputStream();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        asyncPingServlet = new AsyncBasePingServlet() {
+            @Override
+            protected PingExecutor obtainExecutor(ServletConfig servletConfig) {
+                return mockPingExecutor;
+            }
+        };
+
+        when(mockPingExecutor.getName()).thenReturn("mock");
+        when(mockPingExecutor.execute(PingLevel.BASIC)).thenAnswer(new Answer<PingResult>() {
+            @Override
+            public PingResult answer(InvocationOnMock invocation) throws Throwable {
+                blockPing.await();
+                return new PingResult("mock", SystemStatus.OK, "We are fine.");
+            }
+        });
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        when(mockRequest.isAsyncSupported()).thenReturn(true);
+        when(mockRequest.startAsync(mockRequest, mockResponse)).thenReturn(mockAsyncContext);
+        when(mockAsyncContext.getRequest()).thenReturn(mockRequest);
+        when(mockAsyncContext.getResponse()).thenReturn(mockResponse);
+        when(mockResponse.getOutputStream()).thenReturn(responseBody);
+
+        asyncPingServlet.init(mockServletConfig);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        blockPing.countDown();
+        asyncPingServlet.destroy();
+    }
+
+    @Test
+    public void testResponseWrittenWhenPingFinishes() throws Exception {
+        asyncPingServlet.doGet(mockRequest, mockResponse);
+
+        verify(mockAsyncContext).setTimeout(AsyncBasePingServlet.DEFAULT_ASYNCTIMEOUT);
+        verify(mockAsyncContext, never()).complete();
+
+        blockPing.countDown();
+
+        verify(mockAsyncContext, timeout(1000)).complete();
+        verify(mockResponse).setStatus(HttpServletResponse.SC_OK);
+        assertTrue(responseBody.getContent().contains("We are fine."));
+    }
+
+    @Test
+    public void testTimeoutWritesTimeoutError() throws Exception {
+        ArgumentCaptor<AsyncListener> listenerCaptor = ArgumentCaptor.forClass(AsyncListener.class);
+        asyncPingServlet.doGet(mockRequest, mockResponse);
+        verify(mockAsyncContext).addListener(listenerCaptor.capture());
+
+        listenerCaptor.getValue().onTimeout(new AsyncEvent(mockAsyncContext));
+
+        verify(mockAsyncContext).complete();
+        verify(mockResponse).setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+
+        // The late result of the ping must not be written anymore
+        blockPing.countDown();
+        verify(mockPingExecutor, timeout(1000)).execute(PingLevel.BASIC);
+        Thread.sleep(100);
+        verify(mockAsyncContext, times(1)).complete();
+        verify(mockResponse, never()).setStatus(HttpServletResponse.SC_OK);
+    }
+
+    @Test
+    public void testNoAsyncSupport() throws Exception {
+        when(mockRequest.isAsyncSupported()).thenReturn(false);
+        blockPing.countDown();
+
+        asyncPingServlet.doGet(mockRequest, mockResponse);
+
+        verify(mockRequest, never()).startAsync(mockRequest, mockResponse);
+        verify(mockResponse).setStatus(HttpServletResponse.SC_OK);
+    }
+}
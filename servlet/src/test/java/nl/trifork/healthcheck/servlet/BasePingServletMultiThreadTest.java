@@ -11,6 +11,7 @@ import javax.servlet.ServletContext;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.when;
@@ -26,16 +27,18 @@ public class BasePingServletMultiThreadTest {
     ServletContext mockServletContext;
 
     BasePingServlet basePingServlet;
+    StubPingExecutor stubPingExecutor;
 
 
     @Before
     public void setUp() throws Exception {
         MockitoAnnotations.initMocks(this);
 
+        stubPingExecutor = new StubPingExecutor();
         basePingServlet = new BasePingServlet() {
             @Override
             protected PingExecutor obtainExecutor(ServletConfig servletConfig) {
-                return new StubPingExecutor();
+                return stubPingExecutor;
             }
         };
 
@@ -53,8 +56,29 @@ public class BasePingServletMultiThreadTest {
         List<Future<PingResult>> futures = executorService.invokeAll(tasks);
 
         assertEquals("We are fine.", futures.get(0).get().getMessage());
-        assertEquals("only for initialization", futures.get(1).get().getMessage());
-        assertEquals("only for initialization", futures.get(2).get().getMessage());
+        assertEquals("We are fine.", futures.get(1).get().getMessage());
+        assertEquals("We are fine.", futures.get(2).get().getMessage());
+        assertEquals(1, stubPingExecutor.numberOfExecutions.get());
+    }
+
+    @Test
+    public void checkWaitingThreadsTimeoutWithoutResult() throws Exception {
+        when(mockServletConfig.getInitParameter(BasePingServlet.PARAM_MAXWAIT)).thenReturn("100");
+        basePingServlet.init(mockServletConfig);
+
+        Callable<PingResult> task = createTask();
+        List<Callable<PingResult>> tasks = Collections.nCopies(3, task);
+        ExecutorService executorService = Executors.newFixedThreadPool(3);
+        List<Future<PingResult>> futures = executorService.invokeAll(tasks);
+
+        int numberOfTimeouts = 0;
+        for (Future<PingResult> future : futures) {
+            if (future.get().getSystemStatus() == SystemStatus.TIMEOUT_ERROR) {
+                numberOfTimeouts++;
+            }
+        }
+        assertEquals(2, numberOfTimeouts);
+        assertEquals(1, stubPingExecutor.numberOfExecutions.get());
     }
 
     Callable<PingResult> createTask() {
@@ -68,6 +92,7 @@ public class BasePingServletMultiThreadTest {
 
 
     public class StubPingExecutor implements PingExecutor {
+        final AtomicInteger numberOfExecutions = new AtomicInteger();
 
         @Override
         public String getName() {
@@ -91,6 +116,7 @@ public class BasePingServletMultiThreadTest {
 
         @Override
         public PingResult execute(PingLevel pingLevel) {
+            numberOfExecutions.incrementAndGet();
             try {
                 Thread.sleep(2000l);
             } catch (InterruptedException e) {
@@ -8,12 +8,24 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
-import static org.mockito.Mockito.when;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
 
 /**
  * @author Jettro Coenradie
@@ -25,6 +37,10 @@ public class BasePingServletTest {
     ServletConfig mockServletConfig;
     @Mock
     ServletContext mockServletContext;
+    @Mock
+    HttpServletRequest mockRequest;
+    @Mock
+    HttpServletResponse mockResponse;
 
     BasePingServlet basePingServlet;
 
@@ -49,6 +65,276 @@ public class BasePingServletTest {
         basePingServlet.init(mockServletConfig);
     }
 
+    @Test
+    public void testBackgroundRefresh() throws Exception {
+        PingResult basicResult = new PingResult("stub", SystemStatus.OK, "Background result");
+        when(mockPingExecutor.execute(PingLevel.BASIC)).thenReturn(basicResult);
+        when(mockServletConfig.getInitParameter("refreshmode")).thenReturn("background");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        final CountDownLatch published = useBackgroundPublishLatch();
+
+        basePingServlet.init(mockServletConfig);
+        try {
+            assertTrue(published.await(1, TimeUnit.SECONDS));
+
+            assertSame(basicResult, basePingServlet.obtainPingResult(PingLevel.BASIC));
+            assertSame(basicResult, basePingServlet.obtainPingResult(PingLevel.BASIC));
+            verify(mockPingExecutor, times(1)).execute(PingLevel.BASIC);
+            // Only the configured level is refreshed in the background
+            verify(mockPingExecutor, never()).execute(PingLevel.EXTENDED);
+            verify(mockPingExecutor, never()).execute(PingLevel.THOROUGH);
+        } finally {
+            basePingServlet.destroy();
+        }
+    }
+
+    @Test
+    public void testBackgroundRefresh_levelWithOwnInterval() throws Exception {
+        PingResult thoroughResult = new PingResult("stub", SystemStatus.OK, "Thorough result");
+        when(mockPingExecutor.execute(PingLevel.THOROUGH)).thenReturn(thoroughResult);
+        when(mockServletConfig.getInitParameter("refreshmode")).thenReturn("background");
+        when(mockServletConfig.getInitParameter("refreshinterval")).thenReturn("0");
+        when(mockServletConfig.getInitParameter("refreshinterval.thorough")).thenReturn("60000");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        final CountDownLatch published = useBackgroundPublishLatch();
+
+        basePingServlet.init(mockServletConfig);
+        try {
+            assertTrue(published.await(1, TimeUnit.SECONDS));
+
+            assertSame(thoroughResult, basePingServlet.obtainPingResult(PingLevel.THOROUGH));
+            verify(mockPingExecutor, times(1)).execute(PingLevel.THOROUGH);
+            verify(mockPingExecutor, never()).execute(PingLevel.BASIC);
+        } finally {
+            basePingServlet.destroy();
+        }
+    }
+
+    @Test
+    public void testBackgroundRefresh_staleResult() throws Exception {
+        when(mockPingExecutor.getName()).thenReturn("stub");
+        when(mockPingExecutor.execute(PingLevel.BASIC)).thenReturn(new PingResult("stub", SystemStatus.OK, "Old"));
+        when(mockServletConfig.getInitParameter("refreshmode")).thenReturn("background");
+        when(mockServletConfig.getInitParameter("refreshinterval")).thenReturn("60000");
+        when(mockServletConfig.getInitParameter("maxstaleness")).thenReturn("10");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        final CountDownLatch published = useBackgroundPublishLatch();
+
+        basePingServlet.init(mockServletConfig);
+        try {
+            assertTrue(published.await(1, TimeUnit.SECONDS));
+            Thread.sleep(50);
+
+            PingResult pingResult = basePingServlet.obtainPingResult(PingLevel.BASIC);
+            assertEquals(SystemStatus.TIMEOUT_ERROR, pingResult.getSystemStatus());
+            verify(mockPingExecutor, times(1)).execute(PingLevel.BASIC);
+
+            // The next requests receive the same result, its responses are not rendered again
+            Thread.sleep(5);
+            assertSame(pingResult, basePingServlet.obtainPingResult(PingLevel.BASIC));
+            assertSame(basePingServlet.obtainRenderedPingResult(PingLevel.BASIC, pingResult),
+                    basePingServlet.obtainRenderedPingResult(PingLevel.BASIC,
+                            basePingServlet.obtainPingResult(PingLevel.BASIC)));
+        } finally {
+            basePingServlet.destroy();
+        }
+    }
+
+    @Test
+    public void testBackgroundRefresh_hangingLevelDoesNotBlockOtherLevels() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        PingResult thoroughResult = new PingResult("stub", SystemStatus.OK, "Thorough result");
+        when(mockPingExecutor.execute(PingLevel.BASIC)).thenAnswer(new Answer<PingResult>() {
+            @Override
+            public PingResult answer(InvocationOnMock invocation) throws Throwable {
+                release.await();
+                return new PingResult("stub", SystemStatus.OK, "Basic result");
+            }
+        });
+        when(mockPingExecutor.execute(PingLevel.THOROUGH)).thenReturn(thoroughResult);
+        when(mockServletConfig.getInitParameter("refreshmode")).thenReturn("background");
+        when(mockServletConfig.getInitParameter("refreshinterval.thorough")).thenReturn("60000");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        final CountDownLatch published = useBackgroundPublishLatch();
+
+        basePingServlet.init(mockServletConfig);
+        try {
+            assertTrue(published.await(1, TimeUnit.SECONDS));
+            assertSame(thoroughResult, basePingServlet.obtainPingResult(PingLevel.THOROUGH));
+        } finally {
+            release.countDown();
+            basePingServlet.destroy();
+        }
+    }
+
+    @Test
+    public void testBackgroundRefresh_requestsDoNotPingBeforeFirstResult() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        when(mockPingExecutor.getName()).thenReturn("stub");
+        when(mockPingExecutor.execute(PingLevel.BASIC)).thenAnswer(new Answer<PingResult>() {
+            @Override
+            public PingResult answer(InvocationOnMock invocation) throws Throwable {
+                started.countDown();
+                release.await();
+                return new PingResult("stub", SystemStatus.OK, "Basic result");
+            }
+        });
+        when(mockServletConfig.getInitParameter("refreshmode")).thenReturn("background");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+
+        basePingServlet.init(mockServletConfig);
+        try {
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+
+            PingResult result = basePingServlet.obtainPingResult(PingLevel.BASIC);
+
+            assertEquals(SystemStatus.TIMEOUT_ERROR, result.getSystemStatus());
+            assertEquals("FAILURE - No background ping with level BASIC has finished yet.", result.getMessage());
+            assertSame(result, basePingServlet.obtainPingResult(PingLevel.BASIC));
+            assertSame(result, basePingServlet.obtainAvailablePingResult(PingLevel.BASIC));
+            // Only the background thread called the executor
+            verify(mockPingExecutor, times(1)).execute(PingLevel.BASIC);
+        } finally {
+            release.countDown();
+            basePingServlet.destroy();
+        }
+    }
+
+    /**
+     * Replaces the servlet by one that counts down the returned latch when it published a background result.
+     */
+    private CountDownLatch useBackgroundPublishLatch() {
+        final CountDownLatch published = new CountDownLatch(1);
+        basePingServlet = new BasePingServlet() {
+            @Override
+            protected PingExecutor obtainExecutor(ServletConfig servletConfig) {
+                return mockPingExecutor;
+            }
+
+            @Override
+            void publishBackgroundResult(PingLevel pingLevel, PingResult pingResult) {
+                super.publishBackgroundResult(pingLevel, pingResult);
+                published.countDown();
+            }
+        };
+        return published;
+    }
+
+    @Test
+    public void testCachePerLevel() throws Exception {
+        PingResult basicResult = new PingResult("stub", SystemStatus.OK, "Basic result");
+        PingResult thoroughResult = new PingResult("stub", SystemStatus.WARNING, "Thorough result");
+        when(mockPingExecutor.execute(PingLevel.BASIC)).thenReturn(basicResult);
+        when(mockPingExecutor.execute(PingLevel.THOROUGH)).thenReturn(thoroughResult);
+        when(mockServletConfig.getInitParameter("maxage.basic")).thenReturn("60000");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        basePingServlet.init(mockServletConfig);
+
+        assertSame(basicResult, basePingServlet.obtainPingResult(PingLevel.BASIC));
+        assertSame(thoroughResult, basePingServlet.obtainPingResult(PingLevel.THOROUGH));
+        assertSame(basicResult, basePingServlet.obtainPingResult(PingLevel.BASIC));
+        assertSame(thoroughResult, basePingServlet.obtainPingResult(PingLevel.THOROUGH));
+
+        verify(mockPingExecutor, times(1)).execute(PingLevel.BASIC);
+        verify(mockPingExecutor, times(2)).execute(PingLevel.THOROUGH);
+    }
+
+    @Test
+    public void testWriteResponse_notModified() throws Exception {
+        PingResult pingResult = new PingResult("stub", SystemStatus.OK, "The message");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        basePingServlet.init(mockServletConfig);
+        ByteArrayServletOutputStream body = new ByteArrayServletOutputStream();
+        when(mockResponse.getOutputStream()).thenReturn(body);
+        when(mockRequest.getParameter("type")).thenReturn("json");
+
+        basePingServlet.writeResponse(mockRequest, mockResponse, PingLevel.BASIC, pingResult);
+
+        RenderedPingResult rendered = basePingServlet.obtainRenderedPingResult(PingLevel.BASIC, pingResult);
+        assertSame(rendered, basePingServlet.obtainRenderedPingResult(PingLevel.BASIC, pingResult));
+        String eTag = rendered.getJson().getETag();
+        assertNotNull(eTag);
+        verify(mockResponse).setHeader("ETag", eTag);
+        verify(mockResponse).setStatus(HttpServletResponse.SC_OK);
+        verify(mockResponse).setContentType("application/json;charset=UTF-8");
+        assertEquals(new String(rendered.getJson().getBytes(), "UTF-8"), body.getContent());
+
+        reset(mockResponse);
+        when(mockRequest.getHeader("If-None-Match")).thenReturn("\"other\", " + eTag);
+
+        basePingServlet.writeResponse(mockRequest, mockResponse, PingLevel.BASIC, pingResult);
+
+        verify(mockResponse).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(mockResponse, never()).getOutputStream();
+    }
+
+    @Test
+    public void testWriteResponse_errorIsNeverNotModified() throws Exception {
+        PingResult pingResult = new PingResult("stub", SystemStatus.ERROR, "The message");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        basePingServlet.init(mockServletConfig);
+        when(mockResponse.getOutputStream()).thenReturn(new ByteArrayServletOutputStream());
+        when(mockRequest.getHeader("If-None-Match")).thenReturn("*");
+
+        basePingServlet.writeResponse(mockRequest, mockResponse, PingLevel.BASIC, pingResult);
+
+        verify(mockResponse).setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        verify(mockResponse).getOutputStream();
+    }
+
+    @Test
+    public void testWriteResponse_clientsRevalidateTheETag() throws Exception {
+        PingResult pingResult = new PingResult("stub", SystemStatus.OK, "The message");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        basePingServlet.init(mockServletConfig);
+        when(mockResponse.getOutputStream()).thenReturn(new ByteArrayServletOutputStream());
+
+        basePingServlet.writeResponse(mockRequest, mockResponse, PingLevel.BASIC, pingResult);
+
+        verify(mockResponse).setHeader("Cache-Control", "no-cache");
+        verify(mockResponse).setHeader(eq("ETag"), anyString());
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testWriteResponse_overriddenWriteMethodIsCalled() throws Exception {
+        basePingServlet = new BasePingServlet() {
+            @Override
+            protected PingExecutor obtainExecutor(ServletConfig servletConfig) {
+                return mockPingExecutor;
+            }
+
+            @Override
+            protected void writeJsonResponse(HttpServletResponse res, PingResult pingResult) throws IOException {
+                res.getWriter().print("custom " + pingResult.getMessage());
+            }
+        };
+        PingResult pingResult = new PingResult("stub", SystemStatus.OK, "The message");
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        basePingServlet.init(mockServletConfig);
+        StringWriter body = new StringWriter();
+        when(mockResponse.getWriter()).thenReturn(new PrintWriter(body));
+        when(mockResponse.getOutputStream()).thenReturn(new ByteArrayServletOutputStream());
+        when(mockRequest.getParameter("type")).thenReturn("json");
+
+        basePingServlet.writeResponse(mockRequest, mockResponse, PingLevel.BASIC, pingResult);
+
+        assertEquals("custom The message", body.toString());
+        verify(mockResponse).setStatus(HttpServletResponse.SC_OK);
+        verify(mockResponse, never()).setHeader(eq("ETag"), anyString());
+
+        // The html is not overridden and still rendered once per result
+        reset(mockResponse);
+        when(mockResponse.getOutputStream()).thenReturn(new ByteArrayServletOutputStream());
+        when(mockRequest.getParameter("type")).thenReturn(null);
+
+        basePingServlet.writeResponse(mockRequest, mockResponse, PingLevel.BASIC, pingResult);
+
+        verify(mockResponse).setHeader(eq("ETag"), anyString());
+        verify(mockResponse, never()).getWriter();
+    }
+
     @Test
     public void testObtainPingLevel() throws Exception {
         verifyObtainPingLevel("1", PingLevel.BASIC);
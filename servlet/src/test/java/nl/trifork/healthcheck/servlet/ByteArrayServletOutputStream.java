@@ -0,0 +1,21 @@
+package nl.trifork.healthcheck.servlet;
+
+import javax.servlet.ServletOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * ServletOutputStream that keeps everything written to it in memory, used to check the body of responses.
+ */
+public class ByteArrayServletOutputStream extends ServletOutputStream {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    @Override
+    public void write(int b) {
+        bytes.write(b);
+    }
+
+    public String getContent() throws UnsupportedEncodingException {
+        return bytes.toString("UTF-8");
+    }
+}
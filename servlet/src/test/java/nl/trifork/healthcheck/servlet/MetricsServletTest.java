@@ -0,0 +1,184 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MetricsServletTest {
+    @Mock
+    PingExecutor mockPingExecutor;
+    @Mock
+    ServletConfig mockServletConfig;
+    @Mock
+    ServletContext mockServletContext;
+    @Mock
+    HttpServletRequest mockRequest;
+    @Mock
+    HttpServletResponse mockResponse;
+
+    MetricsServlet metricsServlet;
+    StringWriter responseBody = new StringWriter();
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        when(mockServletConfig.getServletContext()).thenReturn(mockServletContext);
+        when(mockResponse.getWriter()).thenReturn(new PrintWriter(responseBody));
+
+        metricsServlet = new MetricsServlet();
+        metricsServlet.init(mockServletConfig);
+    }
+
+    @Test
+    public void testDoGet_noPingServlets() throws Exception {
+        metricsServlet.doGet(mockRequest, mockResponse);
+
+        verify(mockResponse).setContentType(MetricsServlet.CONTENT_TYPE);
+        assertEquals("# EOF\n", responseBody.toString());
+    }
+
+    @Test
+    public void testDoGet_pingServletMetrics() throws Exception {
+        PingMetricsRegistry registry = new PingMetricsRegistry();
+        when(mockServletContext.getAttribute(PingMetricsRegistry.ATTRIBUTE_NAME)).thenReturn(registry);
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        values.put("nodes", "12");
+        values.put("used_memory", "63 Mb");
+        when(mockPingExecutor.getName()).thenReturn("mock");
+        when(mockPingExecutor.execute(PingLevel.BASIC))
+                .thenReturn(new ThoroughPingResult("mock", SystemStatus.OK, "We are fine.", values));
+        when(mockServletConfig.getServletName()).thenReturn("ping");
+
+        BasePingServlet pingServlet = new BasePingServlet() {
+            @Override
+            protected PingExecutor obtainExecutor(ServletConfig servletConfig) {
+                return mockPingExecutor;
+            }
+        };
+        pingServlet.init(mockServletConfig);
+        pingServlet.obtainPingResult(PingLevel.BASIC);
+
+        metricsServlet.doGet(mockRequest, mockResponse);
+
+        String metrics = responseBody.toString();
+        assertTrue(metrics.contains("# TYPE healthcheck_status gauge\n"));
+        assertTrue(metrics.contains("healthcheck_status{servlet=\"ping\",executor=\"mock\",level=\"basic\",status=\"OK\"} 1\n"));
+        assertTrue(metrics.contains("healthcheck_status{servlet=\"ping\",executor=\"mock\",level=\"basic\",status=\"ERROR\"} 0\n"));
+        assertTrue(metrics.contains("healthcheck_ping_duration_seconds_count{servlet=\"ping\",executor=\"mock\",level=\"basic\"} 1\n"));
+        assertTrue(metrics.contains("healthcheck_thorough_value{servlet=\"ping\",executor=\"mock\",level=\"basic\",key=\"nodes\"} 12\n"));
+        assertFalse(metrics.contains("used_memory"));
+        assertFalse(metrics.contains("level=\"thorough\""));
+        assertTrue(metrics.endsWith("# EOF\n"));
+
+        pingServlet.destroy();
+        assertTrue(registry.getMetrics().isEmpty());
+    }
+
+    @Test
+    public void testWriteMetrics_counters() throws Exception {
+        PingMetrics pingMetrics = new PingMetrics("ping", "my \"repo\"");
+        pingMetrics.recordExecution(PingLevel.THOROUGH, new PingResult("repo", SystemStatus.ERROR, "down"), 1500000000L);
+        pingMetrics.recordCoalesced(PingLevel.THOROUGH);
+        pingMetrics.recordStale(PingLevel.THOROUGH);
+        pingMetrics.recordStale(PingLevel.THOROUGH);
+        PingMetricsRegistry registry = new PingMetricsRegistry();
+        registry.register(pingMetrics);
+        when(mockServletContext.getAttribute(PingMetricsRegistry.ATTRIBUTE_NAME)).thenReturn(registry);
+
+        metricsServlet.doGet(mockRequest, mockResponse);
+
+        String labels = "servlet=\"ping\",executor=\"my \\\"repo\\\"\",level=\"thorough\"";
+        String metrics = responseBody.toString();
+        assertTrue(metrics.contains("healthcheck_status{" + labels + ",status=\"ERROR\"} 1\n"));
+        assertTrue(metrics.contains("healthcheck_ping_duration_seconds_bucket{" + labels + ",le=\"1.0\"} 0\n"));
+        assertTrue(metrics.contains("healthcheck_ping_duration_seconds_bucket{" + labels + ",le=\"2.5\"} 1\n"));
+        assertTrue(metrics.contains("healthcheck_ping_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 1\n"));
+        assertTrue(metrics.contains("healthcheck_ping_duration_seconds_sum{" + labels + "} 1.500000000\n"));
+        assertTrue(metrics.contains("healthcheck_requests_coalesced_total{" + labels + "} 1\n"));
+        assertTrue(metrics.contains("healthcheck_requests_stale_total{" + labels + "} 2\n"));
+    }
+
+    @Test
+    public void testDoGet_servletsWithTheSameExecutor() throws Exception {
+        PingMetricsRegistry registry = new PingMetricsRegistry();
+        when(mockServletContext.getAttribute(PingMetricsRegistry.ATTRIBUTE_NAME)).thenReturn(registry);
+        when(mockPingExecutor.getName()).thenReturn("mock");
+        when(mockPingExecutor.execute(PingLevel.BASIC)).thenReturn(new PingResult("mock", SystemStatus.OK, "Fine"));
+
+        BasePingServlet pingServlet = new BasePingServlet() {
+            @Override
+            protected PingExecutor obtainExecutor(ServletConfig servletConfig) {
+                return mockPingExecutor;
+            }
+        };
+        when(mockServletConfig.getServletName()).thenReturn("ping");
+        pingServlet.init(mockServletConfig);
+        pingServlet.obtainPingResult(PingLevel.BASIC);
+
+        AsyncBasePingServlet asyncPingServlet = new AsyncBasePingServlet() {
+            @Override
+            protected PingExecutor obtainExecutor(ServletConfig servletConfig) {
+                return mockPingExecutor;
+            }
+        };
+        when(mockServletConfig.getServletName()).thenReturn("asyncping");
+        asyncPingServlet.init(mockServletConfig);
+        asyncPingServlet.obtainPingResult(PingLevel.BASIC);
+
+        metricsServlet.doGet(mockRequest, mockResponse);
+
+        String metrics = responseBody.toString();
+        assertTrue(metrics.contains(
+                "healthcheck_status{servlet=\"ping\",executor=\"mock\",level=\"basic\",status=\"OK\"} 1\n"));
+        assertTrue(metrics.contains(
+                "healthcheck_status{servlet=\"asyncping\",executor=\"mock\",level=\"basic\",status=\"OK\"} 1\n"));
+        // Every series is written once
+        String[] lines = metrics.split("\n");
+        assertEquals(lines.length, new HashSet<String>(Arrays.asList(lines)).size());
+
+        pingServlet.destroy();
+        asyncPingServlet.destroy();
+    }
+
+    @Test
+    public void testWriteMetrics_bucketBoundIsInclusive() throws Exception {
+        PingMetrics pingMetrics = new PingMetrics("ping", "repo");
+        pingMetrics.recordExecution(PingLevel.BASIC, new PingResult("repo", SystemStatus.OK, "fine"), 5000000L);
+        pingMetrics.recordExecution(PingLevel.BASIC, new PingResult("repo", SystemStatus.OK, "fine"), 5000001L);
+        PingMetricsRegistry registry = new PingMetricsRegistry();
+        registry.register(pingMetrics);
+        when(mockServletContext.getAttribute(PingMetricsRegistry.ATTRIBUTE_NAME)).thenReturn(registry);
+
+        metricsServlet.doGet(mockRequest, mockResponse);
+
+        String labels = "servlet=\"ping\",executor=\"repo\",level=\"basic\"";
+        String metrics = responseBody.toString();
+        assertTrue(metrics.contains("healthcheck_ping_duration_seconds_bucket{" + labels + ",le=\"0.001\"} 0\n"));
+        assertTrue(metrics.contains("healthcheck_ping_duration_seconds_bucket{" + labels + ",le=\"0.005\"} 1\n"));
+        assertTrue(metrics.contains("healthcheck_ping_duration_seconds_bucket{" + labels + ",le=\"0.01\"} 2\n"));
+    }
+}
@@ -0,0 +1,102 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingExecutor;
+import nl.trifork.healthcheck.api.PingLevel;
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class PingResultCacheTest {
+    @Mock
+    PingExecutor mockPingExecutor;
+
+    PingResultCache pingResultCache;
+    List<Runnable> handedOver = new ArrayList<Runnable>();
+    Executor collectingExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            handedOver.add(command);
+        }
+    };
+    Executor rejectingExecutor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            throw new RejectedExecutionException("shut down");
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        when(mockPingExecutor.getName()).thenReturn("mock");
+        when(mockPingExecutor.execute(PingLevel.BASIC)).thenReturn(new PingResult("mock", SystemStatus.OK, "Fine"));
+        pingResultCache = new PingResultCache(mockPingExecutor, Collections.<PingLevel, Long>emptyMap(),
+                Collections.<PingLevel, Long>emptyMap(), new PingMetrics("ping", "mock"));
+    }
+
+    @Test
+    public void testObtain_removedCallbackIsNotNotified() throws Exception {
+        CollectingCallback removed = new CollectingCallback();
+        CollectingCallback kept = new CollectingCallback();
+        pingResultCache.obtain(PingLevel.BASIC, collectingExecutor, removed);
+        pingResultCache.obtain(PingLevel.BASIC, collectingExecutor, kept);
+        assertEquals(1, handedOver.size());
+
+        pingResultCache.removeCallback(PingLevel.BASIC, removed);
+        handedOver.get(0).run();
+
+        assertTrue(removed.results.isEmpty());
+        assertEquals(1, kept.results.size());
+        assertEquals(SystemStatus.OK, kept.results.get(0).getSystemStatus());
+    }
+
+    @Test
+    public void testObtain_rejectedWithoutPreviousResult() throws Exception {
+        CollectingCallback callback = new CollectingCallback();
+
+        pingResultCache.obtain(PingLevel.BASIC, rejectingExecutor, callback);
+
+        assertEquals(1, callback.results.size());
+        assertEquals(SystemStatus.TIMEOUT_ERROR, callback.results.get(0).getSystemStatus());
+        verify(mockPingExecutor, never()).execute(PingLevel.BASIC);
+
+        // The rejected refresh does not block the next one
+        pingResultCache.obtain(PingLevel.BASIC, collectingExecutor, new CollectingCallback());
+        assertEquals(1, handedOver.size());
+    }
+
+    @Test
+    public void testObtain_rejectedWithPreviousResult() throws Exception {
+        PingResult previous = new PingResult("mock", SystemStatus.OK, "Previous");
+        pingResultCache.put(PingLevel.BASIC, previous);
+        CollectingCallback callback = new CollectingCallback();
+
+        pingResultCache.obtain(PingLevel.BASIC, rejectingExecutor, callback);
+
+        assertSame(previous, callback.results.get(0));
+        verify(mockPingExecutor, never()).execute(PingLevel.BASIC);
+    }
+
+    private static class CollectingCallback implements PingResultCache.PingResultCallback {
+        private final List<PingResult> results = new ArrayList<PingResult>();
+
+        @Override
+        public void onResult(PingResult pingResult) {
+            results.add(pingResult);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package nl.trifork.healthcheck.servlet;
+
+import nl.trifork.healthcheck.api.PingResult;
+import nl.trifork.healthcheck.api.SystemStatus;
+import nl.trifork.healthcheck.api.ThoroughPingResult;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class PingResultJsonWriterTest {
+
+    @Test
+    public void testWrite_basic() throws Exception {
+        StringWriter writer = new StringWriter();
+        PingResultJsonWriter.write(writer, new PingResult("mock", SystemStatus.OK, "We are fine."));
+
+        assertEquals("{\"executorName\":\"mock\",\"systemStatus\":\"OK\",\"message\":\"We are fine.\"}", writer.toString());
+    }
+
+    @Test
+    public void testWrite_thorough() throws Exception {
+        Map<String, String> values = new LinkedHashMap<String, String>();
+        values.put("used_memory", "63 Mb");
+        values.put("nodes", null);
+        StringWriter writer = new StringWriter();
+        PingResultJsonWriter.write(writer, new ThoroughPingResult("mock", SystemStatus.WARNING, "Busy", values));
+
+        assertEquals("{\"executorName\":\"mock\",\"systemStatus\":\"WARNING\",\"message\":\"Busy\"," +
+                "\"thoroughResults\":{\"used_memory\":\"63 Mb\",\"nodes\":null}}", writer.toString());
+    }
+
+    @Test
+    public void testWriteString_escaping() throws Exception {
+        StringWriter writer = new StringWriter();
+        PingResultJsonWriter.writeString(writer, "FAILURE - \"repo\" at C:\\data\nline\ttab\r\u0001\u2028end");
+
+        assertEquals("\"FAILURE - \\\"repo\\\" at C:\\\\data\\nline\\ttab\\r\\u0001\\u2028end\"", writer.toString());
+    }
+
+    @Test
+    public void testWriteString_null() throws Exception {
+        StringWriter writer = new StringWriter();
+        PingResultJsonWriter.writeString(writer, null);
+
+        assertEquals("null", writer.toString());
+    }
+}